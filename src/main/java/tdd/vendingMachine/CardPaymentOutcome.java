@@ -0,0 +1,25 @@
+package tdd.vendingMachine;
+
+/**
+ * Outcome of paying from prepaid account balance. Declined payment leaves transaction as it was, so customer
+ * can still pay with coins.
+ *
+ * @author Łukasz Gadawski
+ */
+public enum CardPaymentOutcome {
+
+    /** Amount left to pay was debited and product was returned. */
+    SALE_COMPLETED,
+
+    /** Nothing to pay for, no shelve was selected and there is no open basket. */
+    NO_SELECTION,
+
+    /** Account balance is lower than amount left to pay. */
+    INSUFFICIENT_FUNDS,
+
+    /** Ledger has no such account. */
+    UNKNOWN_ACCOUNT,
+
+    /** Debit id was already used by other payment, nothing was debited. */
+    DUPLICATE_DEBIT
+}
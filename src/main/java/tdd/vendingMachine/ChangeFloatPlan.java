@@ -0,0 +1,75 @@
+package tdd.vendingMachine;
+
+import java.math.BigDecimal;
+
+/**
+ * Coin float computed by {@link ChangeFloatPlanner}, number of coins of each denomination machine should be
+ * topped up to during service visit.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class ChangeFloatPlan {
+
+    /** Number of coins indexed by coin denomination ordinal */
+    private final int[] levels;
+
+    private final double servedFraction;
+
+    private final boolean targetMet;
+
+    private final int evaluations;
+
+    ChangeFloatPlan(int[] levels, double servedFraction, boolean targetMet, int evaluations) {
+        this.levels = levels.clone();
+        this.servedFraction = servedFraction;
+        this.targetMet = targetMet;
+        this.evaluations = evaluations;
+    }
+
+    public int getLevel(CoinDenomination cd) {
+        return levels[cd.ordinal()];
+    }
+
+    /**
+     * @return total value of coin float
+     */
+    public BigDecimal getValue() {
+        BigDecimal value = BigDecimal.ZERO;
+        for (CoinDenomination cd : CoinDenomination.values()) {
+            value = value.add(cd.getValue().multiply(BigDecimal.valueOf(levels[cd.ordinal()])));
+        }
+        return value;
+    }
+
+    /**
+     * @return fraction of simulated transactions which got change with this float
+     */
+    public double getServedFraction() {
+        return servedFraction;
+    }
+
+    /**
+     * @return false if even full tubes do not reach target fraction, plan holds full tubes then
+     */
+    public boolean isTargetMet() {
+        return targetMet;
+    }
+
+    /**
+     * @return number of simulated floats evaluated by planner
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return restock plan topping coin tubes up to this float
+     */
+    public RestockPlan toRestockPlan() {
+        RestockPlan.Builder builder = new RestockPlan.Builder();
+        for (CoinDenomination cd : CoinDenomination.values()) {
+            builder.coinLevel(cd, levels[cd.ordinal()]);
+        }
+        return builder.build();
+    }
+}
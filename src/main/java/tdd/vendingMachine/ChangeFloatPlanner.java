@@ -0,0 +1,299 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Plans coin float machine should be topped up to during service visit, instead of putting the same number of
+ * coins into every tube.
+ *
+ * Planner simulates sales until next visit, drawn from sales mix of shelves and paid with coins drawn from
+ * customers coin mix. Inserted coins go into tubes up to tube capacity and change is given the same greedy way
+ * machine gives it. Transaction which cannot get change is refunded. Simulated scenarios are drawn once, so every
+ * evaluated float faces the same sales, and are evaluated in parallel.
+ *
+ * Float is searched from full tubes down, denominations of highest value first, each with binary search for a level
+ * still serving target fraction of simulated transactions. Search is a heuristic: greedy change is not monotonic in
+ * coin levels, e.g. 0.60 is given from three 0.20 coins but not when one 0.50 coin is added, so lower levels can be
+ * skipped. Planned float always meets target when full tubes do, but it is not guaranteed to be the lowest one.
+ *
+ * Planner is immutable and thread safe, so one planner per machine can be run concurrently for whole fleet.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class ChangeFloatPlanner {
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+
+    /** Coin values in hundredths, indexed by coin denomination ordinal */
+    private static final int[] COIN_UNITS = new int[COINS.length];
+
+    static {
+        for (CoinDenomination cd : COINS) {
+            COIN_UNITS[cd.ordinal()] = toUnits(cd.getValue());
+        }
+    }
+
+    private final int scenarios;
+
+    private final int salesPerScenario;
+
+    private final int tubeCapacity;
+
+    private final double targetFraction;
+
+    private final ForkJoinPool pool;
+
+    /** Change of every simulated sale in hundredths, indexed by scenario * salesPerScenario + sale */
+    private final int[] change;
+
+    /** Coins inserted by every simulated sale, indexed by sale index * number of coins + coin ordinal */
+    private final short[] inserted;
+
+    private ChangeFloatPlanner(Builder builder) {
+        this.scenarios = builder.scenarios;
+        this.salesPerScenario = builder.salesUntilNextVisit;
+        this.tubeCapacity = builder.tubeCapacity;
+        this.targetFraction = builder.targetFraction;
+        this.pool = builder.pool;
+
+        int sales = scenarios * salesPerScenario;
+        this.change = new int[sales];
+        this.inserted = new short[sales * COINS.length];
+        drawSales(builder);
+    }
+
+    private void drawSales(Builder builder) {
+        double[] salesWeights = builder.salesWeights.stream().mapToDouble(Double::doubleValue).toArray();
+        double salesWeight = Arrays.stream(salesWeights).sum();
+        double coinWeight = Arrays.stream(builder.coinWeights).sum();
+
+        Random random = new Random(builder.seed);
+        for (int sale = 0; sale < change.length; sale++) {
+            int price = builder.prices.get(draw(random, salesWeights, salesWeight));
+            int paid = 0;
+            while (paid < price) {
+                int coin = draw(random, builder.coinWeights, coinWeight);
+                inserted[sale * COINS.length + coin]++;
+                paid += COIN_UNITS[coin];
+            }
+            change[sale] = paid - price;
+        }
+    }
+
+    /**
+     * @return index drawn with probability proportional to its weight
+     */
+    private static int draw(Random random, double[] weights, double total) {
+        double point = random.nextDouble() * total;
+        int last = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] > 0) {
+                last = i;
+                point -= weights[i];
+                if (point < 0) {
+                    return i;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * @return coin float serving target fraction of simulated transactions, found by heuristic search, or full
+     * tubes if even they do not serve it
+     */
+    public ChangeFloatPlan plan() {
+        AtomicInteger evaluations = new AtomicInteger();
+        int[] levels = new int[COINS.length];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = tubeCapacity;
+        }
+
+        double served = evaluate(levels, evaluations);
+        if (served < targetFraction) {
+            return new ChangeFloatPlan(levels, served, false, evaluations.get());
+        }
+
+        // ordinals go by descending value, so float value is cut by highest denominations first
+        for (int i = 0; i < levels.length; i++) {
+            int low = 0;
+            int high = levels[i];
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                levels[i] = middle;
+                if (evaluate(levels, evaluations) >= targetFraction) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            levels[i] = high;
+        }
+
+        return new ChangeFloatPlan(levels, evaluate(levels, evaluations), true, evaluations.get());
+    }
+
+    /**
+     * @return fraction of simulated transactions which got change with passed float
+     */
+    private double evaluate(int[] levels, AtomicInteger evaluations) {
+        evaluations.incrementAndGet();
+        long served = pool.submit(() -> IntStream.range(0, scenarios)
+            .parallel()
+            .mapToLong(scenario -> simulate(scenario, levels))
+            .sum())
+            .join();
+        return (double) served / change.length;
+    }
+
+    /**
+     * @return number of transactions of scenario which got change
+     */
+    private long simulate(int scenario, int[] levels) {
+        int[] tubes = levels.clone();
+        int[] added = new int[COINS.length];
+        int[] taken = new int[COINS.length];
+
+        long served = 0;
+        int first = scenario * salesPerScenario;
+        for (int sale = first; sale < first + salesPerScenario; sale++) {
+            for (int i = 0; i < COINS.length; i++) {
+                // coins over tube capacity go into cash box
+                added[i] = Math.min(inserted[sale * COINS.length + i], tubeCapacity - tubes[i]);
+                tubes[i] += added[i];
+            }
+            if (CoinReturningAlgorithm.takeChange(tubes, COIN_UNITS, change[sale], taken)) {
+                served++;
+            } else {
+                for (int i = 0; i < COINS.length; i++) {
+                    tubes[i] -= added[i];
+                }
+            }
+        }
+        return served;
+    }
+
+    private static int toUnits(BigDecimal amount) {
+        return amount.movePointRight(2).intValueExact();
+    }
+
+    public static class Builder {
+
+        private final List<Integer> prices = Lists.newArrayList();
+        private final List<Double> salesWeights = Lists.newArrayList();
+        private final double[] coinWeights = new double[COINS.length];
+        private int salesUntilNextVisit;
+        private int tubeCapacity;
+        private double targetFraction = 0.95;
+        private int scenarios = 200;
+        private long seed = 39;
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        public Builder() {
+            for (int i = 0; i < coinWeights.length; i++) {
+                coinWeights[i] = 1;
+            }
+        }
+
+        /**
+         * Adds product price to sales mix.
+         *
+         * @param recentSales number of recent sales of product, weight of price in sales mix
+         */
+        public Builder sale(BigDecimal price, int recentSales) {
+            Preconditions.checkArgument(price.signum() > 0);
+            Preconditions.checkArgument(recentSales >= 0);
+
+            prices.add(toUnits(price));
+            salesWeights.add((double) recentSales);
+            return this;
+        }
+
+        /**
+         * Adds products on machine shelves to sales mix, priced by effective price of machine, with its pricing
+         * engine and promotions applied. Builder is called by machine thread, like machine itself.
+         *
+         * @param recentSales number of recent sales indexed by shelve number, shelves missing in map are skipped
+         */
+        public Builder machine(VendingMachine machine, Map<Integer, Integer> recentSales) {
+            for (Map.Entry<Integer, Integer> entry : recentSales.entrySet()) {
+                BigDecimal price = machine.effectivePriceOf(entry.getKey());
+                if (price != null) {
+                    sale(price, entry.getValue());
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Sets weight of coin denomination in coins customers pay with, all denominations weigh one by default.
+         */
+        public Builder paymentCoin(CoinDenomination cd, double weight) {
+            Preconditions.checkArgument(weight >= 0);
+
+            coinWeights[cd.ordinal()] = weight;
+            return this;
+        }
+
+        public Builder salesUntilNextVisit(int sales) {
+            this.salesUntilNextVisit = sales;
+            return this;
+        }
+
+        public Builder tubeCapacity(int tubeCapacity) {
+            this.tubeCapacity = tubeCapacity;
+            return this;
+        }
+
+        /**
+         * @param targetFraction fraction of transactions which should get change, 0.95 by default
+         */
+        public Builder targetFraction(double targetFraction) {
+            this.targetFraction = targetFraction;
+            return this;
+        }
+
+        /**
+         * @param scenarios number of simulated periods until next visit, 200 by default
+         */
+        public Builder scenarios(int scenarios) {
+            this.scenarios = scenarios;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param pool pool running simulations, common pool by default
+         */
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public ChangeFloatPlanner build() {
+            Preconditions.checkState(salesWeights.stream().anyMatch(weight -> weight > 0), "Empty sales mix");
+            Preconditions.checkState(Arrays.stream(coinWeights).anyMatch(weight -> weight > 0), "Empty coin mix");
+            Preconditions.checkState(salesUntilNextVisit > 0, "Number of sales until next visit not set");
+            Preconditions.checkState(tubeCapacity > 0, "Tube capacity not set");
+            Preconditions.checkState(targetFraction > 0 && targetFraction <= 1, "Invalid target fraction");
+            Preconditions.checkState(scenarios > 0, "Invalid number of scenarios");
+            Preconditions.checkNotNull(pool);
+
+            return new ChangeFloatPlanner(this);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Routing policy keeping change tubes filled up to target levels, so as many future sales as possible can get
+ * change. Surplus goes into cash box.
+ *
+ * Change is always lower than last inserted coin, so coins of highest denomination are never returned as change.
+ * Their target level is zero and they always go into cash box, leaving tube capacity to useful denominations.
+ *
+ * @author Łukasz Gadawski
+ */
+public class ChangePreservingRoutingPolicy implements CoinRoutingPolicy {
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+
+    /** Target tube levels indexed by coin denomination ordinal */
+    private final int[] targetLevels;
+
+    /**
+     * @param targetLevel target level of tubes of all denominations which can be returned as change
+     */
+    public ChangePreservingRoutingPolicy(int targetLevel) {
+        Preconditions.checkArgument(targetLevel >= 0);
+
+        this.targetLevels = new int[COINS.length];
+        CoinDenomination highest = highestDenomination();
+        for (CoinDenomination cd : COINS) {
+            targetLevels[cd.ordinal()] = cd == highest ? 0 : targetLevel;
+        }
+    }
+
+    /**
+     * Overrides target level of passed denomination.
+     */
+    public ChangePreservingRoutingPolicy withTargetLevel(CoinDenomination cd, int targetLevel) {
+        Preconditions.checkArgument(targetLevel >= 0);
+
+        targetLevels[cd.ordinal()] = targetLevel;
+        return this;
+    }
+
+    public int getTargetLevel(CoinDenomination cd) {
+        return targetLevels[cd.ordinal()];
+    }
+
+    @Override
+    public boolean routeToTube(CoinDenomination cd, int tubeLevel) {
+        return tubeLevel < targetLevels[cd.ordinal()];
+    }
+
+    private static CoinDenomination highestDenomination() {
+        CoinDenomination highest = COINS[0];
+        for (CoinDenomination cd : COINS) {
+            if (cd.getValue().compareTo(highest.getValue()) > 0) {
+                highest = cd;
+            }
+        }
+        return highest;
+    }
+}
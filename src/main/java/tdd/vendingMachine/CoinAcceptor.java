@@ -0,0 +1,169 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Classifies raw readings of coin acceptor board, diameter, weight and alloy signature, to coin denomination
+ * or rejects them, before coin is passed to {@link VendingMachine#insertCoin(CoinDenomination)}.
+ *
+ * Every measured property is quantized with fixed resolution and looked up in precomputed table holding for each
+ * quantized value bit mask of denominations which tolerance covers it. Reading is classified by intersecting masks
+ * of its three properties, so classification costs three array lookups regardless of number of coins. Reading
+ * matching no coin, or more coins when their tolerances overlap, is rejected.
+ *
+ * Acceptor is immutable and thread safe. Buffered readings, i.e. of fast coin drops or from sensor log, are
+ * classified in batch by {@link #classifyAll(double[], double[], double[], int, CoinDenomination[])}.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class CoinAcceptor {
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+
+    static {
+        Preconditions.checkState(COINS.length <= Integer.SIZE, "Coin denominations do not fit int mask");
+    }
+
+    private final Axis diameters;
+    private final Axis weights;
+    private final Axis alloys;
+
+    private CoinAcceptor(Builder builder) {
+        this.diameters = new Axis(builder.coins, CoinSpec::getDiameter, CoinSpec::getDiameterTolerance,
+            builder.diameterResolution);
+        this.weights = new Axis(builder.coins, CoinSpec::getWeight, CoinSpec::getWeightTolerance,
+            builder.weightResolution);
+        this.alloys = new Axis(builder.coins, CoinSpec::getAlloy, CoinSpec::getAlloyTolerance,
+            builder.alloyResolution);
+    }
+
+    /**
+     * @param diameter diameter in millimeters
+     * @param weight   weight in grams
+     * @param alloy    alloy signature
+     * @return denomination of coin or null if reading is rejected
+     */
+    public CoinDenomination classify(double diameter, double weight, double alloy) {
+        int mask = diameters.mask(diameter) & weights.mask(weight) & alloys.mask(alloy);
+        // accepted only when exactly one denomination matches
+        return mask != 0 && (mask & (mask - 1)) == 0 ? COINS[Integer.numberOfTrailingZeros(mask)] : null;
+    }
+
+    /**
+     * Classifies first count buffered readings, passed as parallel arrays, into result array.
+     *
+     * @param result denomination of every reading or null if reading is rejected
+     * @return number of accepted readings
+     */
+    public int classifyAll(double[] diameters, double[] weights, double[] alloys, int count,
+                           CoinDenomination[] result) {
+        Preconditions.checkArgument(count >= 0 && count <= diameters.length && count <= weights.length
+            && count <= alloys.length && count <= result.length, "Arrays hold less than %s readings", count);
+
+        int accepted = 0;
+        for (int i = 0; i < count; i++) {
+            result[i] = classify(diameters[i], weights[i], alloys[i]);
+            if (result[i] != null) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Quantized table of one measured property.
+     */
+    private static final class Axis {
+
+        private final double min;
+
+        private final double inverseResolution;
+
+        /** Bit mask of coin denomination ordinals indexed by quantized value, one int bit per denomination */
+        private final int[] masks;
+
+        private Axis(List<CoinSpec> coins, ToDoubleFunction<CoinSpec> nominal, ToDoubleFunction<CoinSpec> tolerance,
+                     double resolution) {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (CoinSpec coin : coins) {
+                min = Math.min(min, nominal.applyAsDouble(coin) - tolerance.applyAsDouble(coin));
+                max = Math.max(max, nominal.applyAsDouble(coin) + tolerance.applyAsDouble(coin));
+            }
+            this.min = min;
+            this.inverseResolution = 1 / resolution;
+            this.masks = new int[(int) Math.ceil((max - min) * inverseResolution) + 1];
+
+            // quantized value matches coin when middle of its range lies within tolerance of coin
+            for (int i = 0; i < masks.length; i++) {
+                double middle = min + (i + 0.5) * resolution;
+                for (CoinSpec coin : coins) {
+                    if (Math.abs(middle - nominal.applyAsDouble(coin)) <= tolerance.applyAsDouble(coin)) {
+                        masks[i] |= 1 << coin.getDenomination().ordinal();
+                    }
+                }
+            }
+        }
+
+        private int mask(double value) {
+            double offset = (value - min) * inverseResolution;
+            // also rejects NaN
+            if (!(offset >= 0 && offset < masks.length)) {
+                return 0;
+            }
+            return masks[(int) offset];
+        }
+    }
+
+    public static class Builder {
+
+        private List<CoinSpec> coins = CoinSpec.PLN;
+        private double diameterResolution = 0.01;
+        private double weightResolution = 0.01;
+        private double alloyResolution = 0.005;
+
+        /**
+         * @param coins accepted coins, {@link CoinSpec#PLN} by default
+         */
+        public Builder coins(List<CoinSpec> coins) {
+            this.coins = ImmutableList.copyOf(coins);
+            return this;
+        }
+
+        /**
+         * @param diameterResolution width of quantized diameter in millimeters, 0.01 by default
+         */
+        public Builder diameterResolution(double diameterResolution) {
+            this.diameterResolution = diameterResolution;
+            return this;
+        }
+
+        /**
+         * @param weightResolution width of quantized weight in grams, 0.01 by default
+         */
+        public Builder weightResolution(double weightResolution) {
+            this.weightResolution = weightResolution;
+            return this;
+        }
+
+        /**
+         * @param alloyResolution width of quantized alloy signature, 0.005 by default
+         */
+        public Builder alloyResolution(double alloyResolution) {
+            this.alloyResolution = alloyResolution;
+            return this;
+        }
+
+        public CoinAcceptor build() {
+            Preconditions.checkArgument(!coins.isEmpty(), "Acceptor must accept any coin");
+            Preconditions.checkArgument(diameterResolution > 0 && weightResolution > 0 && alloyResolution > 0,
+                "Resolutions must be positive");
+
+            return new CoinAcceptor(this);
+        }
+    }
+}
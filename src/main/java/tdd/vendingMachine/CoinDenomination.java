@@ -4,6 +4,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Comparator;
 import java.util.Map;
 
@@ -31,6 +32,15 @@ public enum CoinDenomination {
         return value;
     }
 
+    /**
+     * Rounds amount to nearest multiple of smallest coin value, but not below smallest coin value, so machine
+     * is able to accept exact amount.
+     */
+    public static BigDecimal roundToSmallestCoin(BigDecimal amount) {
+        BigDecimal smallest = values()[values().length - 1].getValue();
+        return amount.divide(smallest, 0, RoundingMode.HALF_UP).max(BigDecimal.ONE).multiply(smallest);
+    }
+
     /**
      * Descending order comparator by CoinDenomination value.
      */
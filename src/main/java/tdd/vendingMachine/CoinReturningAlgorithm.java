@@ -35,6 +35,23 @@ class CoinReturningAlgorithm {
      * @throws NotEnoughCoinsToReturnException - when there is not enough coins to return properly change
      */
     public Map<CoinDenomination, Integer> getChange(final BigDecimal overFlow) throws NotEnoughCoinsToReturnException {
+        Map<CoinDenomination, Integer> change = findChange(overFlow);
+        if (change == null) {
+            throw new NotEnoughCoinsToReturnException();
+        }
+
+        return change;
+    }
+
+    /**
+     * For given overflow amount gives change base on provided map of coins. Lack of coins is ordinary outcome
+     * of vending, so it is reported by null result instead of exception.
+     *
+     * @param overFlow - amount to return in coins
+     * @return - map of coins needed to return change based on provided initially coins
+     * or null when there is not enough coins to return properly change
+     */
+    public Map<CoinDenomination, Integer> findChange(final BigDecimal overFlow) {
         Preconditions.checkNotNull(overFlow);
 
         int zeroToOverflow = BigDecimal.ZERO.compareTo(overFlow);
@@ -44,7 +61,7 @@ class CoinReturningAlgorithm {
             return Collections.emptyMap();
         }
         if (availableCoins.isEmpty()) {
-            throw new NotEnoughCoinsToReturnException();
+            return null;
         }
 
         BigDecimal leftToReturn = overFlow;
@@ -77,6 +94,32 @@ class CoinReturningAlgorithm {
             return result;
         }
 
-        throw new NotEnoughCoinsToReturnException();
+        return null;
+    }
+
+    /**
+     * Gives change in the same greedy way as {@link #findChange(BigDecimal)}, but on primitive counts, for
+     * simulations running it millions of times.
+     *
+     * @param counts    available coins indexed by coin denomination ordinal, ordinals go by descending value
+     * @param coinUnits value of coins in the same units as amount, indexed by coin denomination ordinal
+     * @param amount    amount to return
+     * @param taken     array receiving number of coins of change, indexed by coin denomination ordinal
+     * @return true if change was given and taken out of counts, false if counts were left untouched
+     */
+    static boolean takeChange(int[] counts, int[] coinUnits, int amount, int[] taken) {
+        int left = amount;
+        for (int i = 0; i < counts.length; i++) {
+            int coins = Math.min(counts[i], left / coinUnits[i]);
+            taken[i] = coins;
+            left -= coins * coinUnits[i];
+        }
+        if (left != 0) {
+            return false;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] -= taken[i];
+        }
+        return true;
     }
 }
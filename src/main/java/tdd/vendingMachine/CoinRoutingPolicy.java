@@ -0,0 +1,18 @@
+package tdd.vendingMachine;
+
+/**
+ * Decides whether inserted coin goes into change tube of its denomination or into cash box. Coins in tubes are
+ * used to return change, coins in cash box are not. Tubes are bounded by
+ * {@link VendingMachineConfig#getMaxCoinNumberOfEachTypeInVendingMachine()}, cash box is unbounded, so coin is
+ * routed to cash box whenever its tube is full, regardless of policy.
+ *
+ * @author Łukasz Gadawski
+ */
+public interface CoinRoutingPolicy {
+
+    /**
+     * @param tubeLevel number of coins in tube of inserted coin denomination
+     * @return true if coin should go into change tube, false if it should go into cash box
+     */
+    boolean routeToTube(CoinDenomination cd, int tubeLevel);
+}
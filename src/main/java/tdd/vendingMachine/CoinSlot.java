@@ -0,0 +1,44 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Driver of coin slot of vending machine. Classifies raw readings of coin acceptor board with {@link CoinAcceptor}
+ * and inserts accepted coins into machine. Rejected reading is reported to event listener of machine
+ * configuration, its coin drops back to customer and never reaches machine.
+ *
+ * Slot is called by machine thread, like machine itself.
+ *
+ * @author Łukasz Gadawski
+ */
+public class CoinSlot {
+
+    private final CoinAcceptor acceptor;
+
+    private final VendingMachine machine;
+
+    public CoinSlot(CoinAcceptor acceptor, VendingMachine machine) {
+        this.acceptor = Preconditions.checkNotNull(acceptor);
+        this.machine = Preconditions.checkNotNull(machine);
+    }
+
+    /**
+     * @param diameter diameter in millimeters
+     * @param weight   weight in grams
+     * @param alloy    alloy signature
+     * @return outcome of inserting classified coin or null if reading was rejected
+     */
+    public InsertCoinOutcome insert(double diameter, double weight, double alloy) {
+        CoinDenomination cd = acceptor.classify(diameter, weight, alloy);
+        if (cd != null) {
+            return machine.insertCoin(cd);
+        }
+
+        VendingMachineConfig config = machine.getConfig();
+        MachineEventListener listener = config.getEventListener();
+        if (listener != null) {
+            listener.coinRejected(config.getClock().millis());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,97 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Physical properties of coin of one denomination as measured by coin acceptor board: diameter, weight and alloy
+ * signature, each with accepted tolerance. Alloy signature is normalized response of eddy current sensor, between
+ * 0 and 1, boards are calibrated so coins of the same alloy give the same signature.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class CoinSpec {
+
+    /** Polish coins, bimetallic 2 and 5 zł coins have distinct signatures, others are copper-nickel */
+    public static final List<CoinSpec> PLN = ImmutableList.of(
+        new CoinSpec(CoinDenomination.FIVE, 24.0, 6.54, 0.45),
+        new CoinSpec(CoinDenomination.TWO, 21.5, 5.21, 0.55),
+        new CoinSpec(CoinDenomination.ONE, 23.0, 5.0, 0.2),
+        new CoinSpec(CoinDenomination.HALF, 20.5, 3.94, 0.2),
+        new CoinSpec(CoinDenomination.ONE_FIFTH, 18.5, 3.22, 0.2),
+        new CoinSpec(CoinDenomination.ONE_TENTH, 16.5, 2.51, 0.2));
+
+    private static final double DEFAULT_DIAMETER_TOLERANCE = 0.15;
+    private static final double DEFAULT_WEIGHT_TOLERANCE = 0.15;
+    private static final double DEFAULT_ALLOY_TOLERANCE = 0.04;
+
+    private final CoinDenomination denomination;
+
+    private final double diameter;
+    private final double diameterTolerance;
+
+    private final double weight;
+    private final double weightTolerance;
+
+    private final double alloy;
+    private final double alloyTolerance;
+
+    /**
+     * Creates spec with default tolerances: 0.15 mm of diameter, 0.15 g of weight and 0.04 of alloy signature.
+     *
+     * @param diameter diameter in millimeters
+     * @param weight   weight in grams
+     * @param alloy    alloy signature
+     */
+    public CoinSpec(CoinDenomination denomination, double diameter, double weight, double alloy) {
+        this(denomination, diameter, DEFAULT_DIAMETER_TOLERANCE, weight, DEFAULT_WEIGHT_TOLERANCE, alloy,
+            DEFAULT_ALLOY_TOLERANCE);
+    }
+
+    public CoinSpec(CoinDenomination denomination, double diameter, double diameterTolerance, double weight,
+                    double weightTolerance, double alloy, double alloyTolerance) {
+        Preconditions.checkNotNull(denomination);
+        Preconditions.checkArgument(diameter > 0 && weight > 0, "Diameter and weight must be positive");
+        Preconditions.checkArgument(alloy >= 0 && alloy <= 1, "Alloy signature must be between 0 and 1: %s", alloy);
+        Preconditions.checkArgument(diameterTolerance >= 0 && weightTolerance >= 0 && alloyTolerance >= 0,
+            "Tolerances must not be negative");
+
+        this.denomination = denomination;
+        this.diameter = diameter;
+        this.diameterTolerance = diameterTolerance;
+        this.weight = weight;
+        this.weightTolerance = weightTolerance;
+        this.alloy = alloy;
+        this.alloyTolerance = alloyTolerance;
+    }
+
+    public CoinDenomination getDenomination() {
+        return denomination;
+    }
+
+    public double getDiameter() {
+        return diameter;
+    }
+
+    public double getDiameterTolerance() {
+        return diameterTolerance;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public double getWeightTolerance() {
+        return weightTolerance;
+    }
+
+    public double getAlloy() {
+        return alloy;
+    }
+
+    public double getAlloyTolerance() {
+        return alloyTolerance;
+    }
+}
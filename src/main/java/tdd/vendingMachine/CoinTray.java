@@ -0,0 +1,126 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Tray coins are returned to, change as well as refunded coins. Coins stay in tray until customer collects them.
+ *
+ * Tray has capacity, machine does not start new transaction while tray is full. Coins of transaction already
+ * started are always returned to tray, so number of coins in tray may exceed capacity by coins of one
+ * transaction.
+ *
+ * Tray is thread safe, collecting coins drains tray atomically.
+ *
+ * @author Łukasz Gadawski
+ */
+public class CoinTray {
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+
+    private int capacity;
+
+    /** Number of coins in tray indexed by coin denomination ordinal */
+    private final int[] counts = new int[COINS.length];
+
+    private int size;
+
+    public CoinTray(int capacity) {
+        Preconditions.checkArgument(capacity > 0, "Coin tray capacity must be positive: %s", capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return independent copy of tray holding the same coins
+     */
+    synchronized CoinTray copy() {
+        CoinTray copy = new CoinTray(capacity);
+        System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+        copy.size = size;
+        return copy;
+    }
+
+    synchronized void put(CoinDenomination cd, int count) {
+        counts[cd.ordinal()] += count;
+        size += count;
+    }
+
+    synchronized void put(Map<CoinDenomination, Integer> coins) {
+        for (Map.Entry<CoinDenomination, Integer> entry : coins.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Changes capacity, coins already in tray are kept even if there is more of them than new capacity.
+     */
+    synchronized void setCapacity(int capacity) {
+        Preconditions.checkArgument(capacity > 0, "Coin tray capacity must be positive: %s", capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return number of all coins in tray
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isFull() {
+        return size >= capacity;
+    }
+
+    public synchronized int count(CoinDenomination cd) {
+        return counts[cd.ordinal()];
+    }
+
+    /**
+     * Copies number of coins in tray into passed array indexed by coin denomination ordinal.
+     */
+    public synchronized void copyCounts(int[] target) {
+        Preconditions.checkArgument(target.length == counts.length);
+        System.arraycopy(counts, 0, target, 0, counts.length);
+    }
+
+    /**
+     * @return copy of coins in tray, tray is left untouched
+     */
+    public synchronized Map<CoinDenomination, Integer> snapshot() {
+        return toMap(counts);
+    }
+
+    /**
+     * Takes all coins out of tray.
+     *
+     * @return collected coins
+     */
+    public synchronized Map<CoinDenomination, Integer> collect() {
+        Map<CoinDenomination, Integer> collected = toMap(counts);
+        clear();
+        return collected;
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        size = 0;
+    }
+
+    private static Map<CoinDenomination, Integer> toMap(int[] counts) {
+        Map<CoinDenomination, Integer> result = new EnumMap<>(CoinDenomination.class);
+        for (CoinDenomination cd : COINS) {
+            if (counts[cd.ordinal()] > 0) {
+                result.put(cd, counts[cd.ordinal()]);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+}
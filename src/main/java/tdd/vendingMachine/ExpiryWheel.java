@@ -0,0 +1,256 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel firing callbacks when their deadlines pass, used to take expired products out of sale.
+ * Scheduling, canceling and firing a callback cost O(1), independently of number of scheduled callbacks.
+ *
+ * Wheel has {@link #LEVELS} levels of {@link #SLOTS} slots. Slot of the lowest level spans one tick, slot of every
+ * next level spans whole previous level. Callback is put into the lowest level which range covers its deadline and
+ * moves to lower levels while time passes, until it fires from the lowest level. Deadlines further than the
+ * highest level covers wait in the highest level and are placed again when it turns.
+ *
+ * Wheel does not run any thread, its time is moved by {@link #advanceTo(long)}, i.e. by vending machines before
+ * they read shelves. One wheel can be shared by all machines in a process, see {@link #shared()}. Machines sharing
+ * wheel must use the same clock, machine moving wheel ahead of time of other machines fires their callbacks early
+ * and machine behind wheel time gets its callbacks run immediately, see {@link #forClock(Clock)}. Callbacks are
+ * run outside of wheel lock by thread which moved the time, so they should only hand over work to their owners.
+ *
+ * @author Łukasz Gadawski
+ */
+public class ExpiryWheel {
+
+    static final int SLOTS_BITS = 6;
+    static final int SLOTS = 1 << SLOTS_BITS;
+    static final int LEVELS = 4;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /** Number of ticks covered by all levels */
+    private static final long RANGE = 1L << (SLOTS_BITS * LEVELS);
+
+    private static final long DEFAULT_TICK_MILLIS = 1000;
+
+    private static final ExpiryWheel SHARED = new ExpiryWheel(DEFAULT_TICK_MILLIS, System.currentTimeMillis());
+
+    /** Class of clocks returned by {@link Clock#system(java.time.ZoneId)}, which share wall clock time */
+    private static final Class<?> SYSTEM_CLOCK = Clock.systemUTC().getClass();
+
+    private final long tickMillis;
+
+    /** Heads of doubly linked lists of timeouts, indexed by level and slot */
+    private final Timeout[][] slots = new Timeout[LEVELS][SLOTS];
+
+    /** Last processed tick */
+    private long currentTick;
+
+    private int size;
+
+    /**
+     * @param tickMillis  precision of wheel, callbacks fire at most one tick after their deadline
+     * @param startMillis epoch millis wheel time starts from
+     */
+    public ExpiryWheel(long tickMillis, long startMillis) {
+        Preconditions.checkArgument(tickMillis > 0, "Tick must be positive: %s", tickMillis);
+
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * @return wheel with one second tick shared by all vending machines in process
+     */
+    public static ExpiryWheel shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return shared wheel for system clock in any zone, new wheel with one second tick starting at current time
+     * of other clock, i.e. virtual one
+     */
+    public static ExpiryWheel forClock(Clock clock) {
+        if (SYSTEM_CLOCK.isInstance(clock)) {
+            return SHARED;
+        }
+        return new ExpiryWheel(DEFAULT_TICK_MILLIS, clock.millis());
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * @return number of scheduled callbacks which did not fire and were not canceled yet
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Schedules callback run once wheel time passes deadline. Callback with deadline which has already passed
+     * is run immediately.
+     *
+     * @param deadlineMillis epoch millis
+     * @return handle canceling callback
+     */
+    public Timeout schedule(long deadlineMillis, Runnable callback) {
+        Preconditions.checkNotNull(callback);
+
+        // rounded up, so callback never fires before its deadline
+        long deadlineTick = deadlineMillis / tickMillis + (deadlineMillis % tickMillis > 0 ? 1 : 0);
+        Timeout timeout = new Timeout(this, deadlineMillis, deadlineTick, callback);
+        synchronized (this) {
+            if (deadlineTick > currentTick) {
+                size++;
+                insert(timeout);
+                return timeout;
+            }
+        }
+        callback.run();
+        return timeout;
+    }
+
+    /**
+     * Moves wheel time forward to passed epoch millis and runs callbacks which deadlines passed. Moving time back
+     * is ignored.
+     */
+    public void advanceTo(long epochMillis) {
+        List<Runnable> due = null;
+        synchronized (this) {
+            long tick = epochMillis / tickMillis;
+            while (currentTick < tick) {
+                if (size == 0) {
+                    // nothing to fire, skips idle ticks
+                    currentTick = tick;
+                    break;
+                }
+                currentTick++;
+                cascade();
+                due = fire(due);
+            }
+        }
+        if (due != null) {
+            for (Runnable callback : due) {
+                callback.run();
+            }
+        }
+    }
+
+    /**
+     * Moves timeouts of higher level slots, which range starts at current tick, to lower levels.
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = SLOTS_BITS * level;
+            if ((currentTick & ((1L << shift) - 1)) != 0) {
+                return;
+            }
+            int slot = (int) (currentTick >>> shift) & SLOT_MASK;
+            Timeout timeout = slots[level][slot];
+            slots[level][slot] = null;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                insert(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    private List<Runnable> fire(List<Runnable> due) {
+        int slot = (int) currentTick & SLOT_MASK;
+        Timeout timeout = slots[0][slot];
+        slots[0][slot] = null;
+        while (timeout != null) {
+            if (due == null) {
+                due = new ArrayList<>();
+            }
+            due.add(timeout.callback);
+            Timeout next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.level = -1;
+            size--;
+            timeout = next;
+        }
+        return due;
+    }
+
+    private void insert(Timeout timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        long placedTick = delta < RANGE ? timeout.deadlineTick : currentTick + RANGE - 1;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOTS_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) (placedTick >>> (SLOTS_BITS * level)) & SLOT_MASK;
+
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = slots[level][slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        slots[level][slot] = timeout;
+    }
+
+    private synchronized boolean cancel(Timeout timeout) {
+        if (timeout.level < 0) {
+            return false;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+        size--;
+        return true;
+    }
+
+    /**
+     * Handle of scheduled callback.
+     */
+    public static final class Timeout {
+
+        private final ExpiryWheel wheel;
+        private final long deadlineMillis;
+        private final long deadlineTick;
+        private final Runnable callback;
+
+        /** Level of slot holding timeout, -1 when timeout fired or was canceled */
+        private int level = -1;
+        private int slot;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(ExpiryWheel wheel, long deadlineMillis, long deadlineTick, Runnable callback) {
+            this.wheel = wheel;
+            this.deadlineMillis = deadlineMillis;
+            this.deadlineTick = deadlineTick;
+            this.callback = callback;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        /**
+         * @return true if callback was canceled, false if it already fired or was canceled before
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+}
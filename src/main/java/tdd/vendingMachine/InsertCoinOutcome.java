@@ -0,0 +1,25 @@
+package tdd.vendingMachine;
+
+/**
+ * Outcome of inserting coin into vending machine. Ordinary business outcomes, like full coin tube or lack
+ * of coins to return change, are reported by outcome instead of exception.
+ *
+ * @author Łukasz Gadawski
+ */
+public enum InsertCoinOutcome {
+
+    /** Coin accepted, transaction is open and waits for more coins. */
+    ACCEPTED,
+
+    /** Coin covered product price, product and change were returned. */
+    SALE_COMPLETED,
+
+    /** Coin returned, because no shelve was selected before inserting it. */
+    RETURNED_NO_SELECTION,
+
+    /** Machine cannot hold more coins of inserted denomination, transaction canceled and coins returned. */
+    REJECTED_CAPACITY,
+
+    /** Machine does not have coins to return change, transaction canceled and coins returned. */
+    REFUNDED_NO_CHANGE
+}
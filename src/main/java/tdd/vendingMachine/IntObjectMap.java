@@ -0,0 +1,183 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Map of non-negative int keys to objects, stored in open addressing table with linear probing. Keys are kept
+ * as primitives, so entry costs one int and one reference and lookups do not allocate. Removed entries are
+ * closed by shifting following entries back, so table holds no tombstones.
+ *
+ * Map is not thread safe, {@link #copy()} creates independent map for readers.
+ *
+ * @author Łukasz Gadawski
+ */
+class IntObjectMap<V> {
+
+    private static final int FREE = -1;
+
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    IntObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    private IntObjectMap(int capacity) {
+        this.keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        this.values = new Object[capacity];
+    }
+
+    private IntObjectMap(IntObjectMap<V> source) {
+        this.keys = source.keys.clone();
+        this.values = source.values.clone();
+        this.size = source.size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int slot = find(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /**
+     * @return previous value or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        Preconditions.checkArgument(key >= 0, "Key must not be negative: %s", key);
+        Preconditions.checkNotNull(value);
+
+        int slot = find(key);
+        if (slot >= 0) {
+            V previous = (V) values[slot];
+            values[slot] = value;
+            return previous;
+        }
+
+        // keeps load factor at most 1/2, so probe sequences stay short
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+            slot = freeSlot(key);
+        } else {
+            slot = -slot - 1;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * @return removed value or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        V removed = (V) values[slot];
+        size--;
+
+        int mask = keys.length - 1;
+        int free = slot;
+        for (int next = (free + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = home(keys[next]);
+            // entry moves to freed slot unless its home slot lies cyclically between freed slot and entry
+            boolean stays = free <= next ? free < home && home <= next : free < home || home <= next;
+            if (!stays) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = FREE;
+        values[free] = null;
+        return removed;
+    }
+
+    /**
+     * @return independent copy of map
+     */
+    IntObjectMap<V> copy() {
+        return new IntObjectMap<>(this);
+    }
+
+    /**
+     * @return keys of map in ascending order
+     */
+    int[] keys() {
+        int[] result = new int[size];
+        int i = 0;
+        for (int key : keys) {
+            if (key != FREE) {
+                result[i++] = key;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * @return slot holding key or -(slot where key would be put) - 1 if map does not contain key
+     */
+    private int find(int key) {
+        if (key < 0) {
+            return -1;
+        }
+        int mask = keys.length - 1;
+        for (int slot = home(key); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            if (keys[slot] == FREE) {
+                return -slot - 1;
+            }
+        }
+    }
+
+    private int freeSlot(int key) {
+        int mask = keys.length - 1;
+        int slot = home(key);
+        while (keys[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int home(int key) {
+        // spreads consecutive slot ids over table
+        return (key * 0x9E3779B9) >>> (Integer.numberOfLeadingZeros(keys.length) + 1);
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        values = new Object[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = freeSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package tdd.vendingMachine;
+
+/**
+ * Receives stream of customer events of vending machine, i.e. to monitor machine for abuse. Listener is called
+ * synchronously by machine thread, so it must return quickly and must not call back into machine.
+ *
+ * Listener may keep state of monitored machine, so it is registered with one machine. Machines created from
+ * template and forks do not inherit listener of their source machine.
+ *
+ * @author Łukasz Gadawski
+ */
+public interface MachineEventListener {
+
+    /**
+     * Called after coin was inserted into machine.
+     *
+     * @param outcome outcome of inserting coin
+     */
+    default void coinInserted(CoinDenomination cd, InsertCoinOutcome outcome, long epochMillis) {
+    }
+
+    /**
+     * Called after sale was paid from prepaid balance, sales paid with coins are reported by
+     * {@link #coinInserted(CoinDenomination, InsertCoinOutcome, long)}.
+     */
+    default void prepaidSaleCompleted(long epochMillis) {
+    }
+
+    /**
+     * Called after customer canceled open transaction.
+     */
+    default void transactionCanceled(long epochMillis) {
+    }
+
+    /**
+     * Called by {@link CoinSlot} when reading was rejected by {@link CoinAcceptor}, such coins never reach machine.
+     */
+    default void coinRejected(long epochMillis) {
+    }
+}
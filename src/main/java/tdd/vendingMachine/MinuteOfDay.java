@@ -0,0 +1,85 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Resolves local minute of day of instants in time zone, i.e. for time of day bands of pricing and promotions.
+ *
+ * Zone offset is cached together with range of time between zone transitions it is valid for, so lookup costs
+ * a comparison and division, and offset is resolved again only when looked up time leaves the range, i.e. after
+ * daylight saving time change. Time is passed by caller, so machines on virtual clock get their own local time.
+ *
+ * Resolver is thread safe.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class MinuteOfDay {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final long MILLIS_PER_MINUTE = 60_000;
+
+    private final ZoneRules rules;
+
+    /** Offset valid for range of time of last lookup, replaced as a whole */
+    private volatile OffsetRange range;
+
+    public MinuteOfDay(ZoneId zone) {
+        this.rules = Preconditions.checkNotNull(zone).getRules();
+        this.range = resolve(0);
+    }
+
+    /**
+     * @return minute of day, from 0 to {@link #MINUTES_PER_DAY} - 1, local in zone at passed time
+     */
+    public int of(long epochMillis) {
+        OffsetRange current = range;
+        if (!current.contains(epochMillis)) {
+            current = resolve(epochMillis);
+            range = current;
+        }
+        return (int) Math.floorMod(Math.floorDiv(epochMillis + current.offsetMillis, MILLIS_PER_MINUTE),
+            MINUTES_PER_DAY);
+    }
+
+    private OffsetRange resolve(long epochMillis) {
+        if (rules.isFixedOffset()) {
+            return new OffsetRange(offsetMillis(Instant.EPOCH), Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        Instant instant = Instant.ofEpochMilli(epochMillis);
+        // transition at passed instant itself is reported as previous one only for later instant
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        return new OffsetRange(offsetMillis(instant),
+            previous == null ? Long.MIN_VALUE : previous.getInstant().toEpochMilli(),
+            next == null ? Long.MAX_VALUE : next.getInstant().toEpochMilli());
+    }
+
+    private long offsetMillis(Instant instant) {
+        return rules.getOffset(instant).getTotalSeconds() * 1000L;
+    }
+
+    private static final class OffsetRange {
+
+        private final long offsetMillis;
+
+        /** Range of time offset is valid for, from inclusive and until exclusive */
+        private final long fromMillis;
+        private final long untilMillis;
+
+        private OffsetRange(long offsetMillis, long fromMillis, long untilMillis) {
+            this.offsetMillis = offsetMillis;
+            this.fromMillis = fromMillis;
+            this.untilMillis = untilMillis;
+        }
+
+        private boolean contains(long epochMillis) {
+            return epochMillis >= fromMillis && epochMillis < untilMillis;
+        }
+    }
+}
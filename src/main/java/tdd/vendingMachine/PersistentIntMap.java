@@ -0,0 +1,173 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Immutable map of non-negative int keys to objects, stored in trie of 32 slot nodes indexed by 5 bit chunks of key.
+ * Change of map copies only nodes on path from root to key, so it costs O(log32 of largest key) and new map shares
+ * all other nodes with previous one. Subtrees without keys are not allocated.
+ *
+ * Map is immutable and can be read from any thread.
+ *
+ * @author Łukasz Gadawski
+ */
+final class PersistentIntMap<V> {
+
+    private static final int BITS = 5;
+
+    private static final int WIDTH = 1 << BITS;
+
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null, 0, 0);
+
+    /** Nodes are arrays of children, nodes at shift 0 hold values, null for empty subtree */
+    private final Object[] root;
+
+    /** Number of key bits below root level */
+    private final int shift;
+
+    private final int size;
+
+    private PersistentIntMap(Object[] root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        if (key < 0 || root == null || !fits(key, shift)) {
+            return null;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(key >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (V) node[key & MASK];
+    }
+
+    /**
+     * @return map with key mapped to passed value
+     */
+    PersistentIntMap<V> put(int key, V value) {
+        Preconditions.checkArgument(key >= 0, "Key must not be negative: %s", key);
+        Preconditions.checkNotNull(value);
+
+        Object[] node = root;
+        int level = shift;
+        if (node == null) {
+            level = 0;
+            while (!fits(key, level)) {
+                level += BITS;
+            }
+        } else {
+            // adds levels above root until key fits, old root becomes first child
+            while (!fits(key, level)) {
+                Object[] parent = new Object[WIDTH];
+                parent[0] = node;
+                node = parent;
+                level += BITS;
+            }
+        }
+        boolean[] added = new boolean[1];
+        Object[] changed = put(node, level, key, value, added);
+        return new PersistentIntMap<>(changed, level, added[0] ? size + 1 : size);
+    }
+
+    private static Object[] put(Object[] node, int level, int key, Object value, boolean[] added) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int slot = (key >>> level) & MASK;
+        if (level == 0) {
+            added[0] = copy[slot] == null;
+            copy[slot] = value;
+        } else {
+            copy[slot] = put((Object[]) copy[slot], level - BITS, key, value, added);
+        }
+        return copy;
+    }
+
+    /**
+     * @return map without passed key, this map if it does not contain key
+     */
+    PersistentIntMap<V> remove(int key) {
+        if (get(key) == null) {
+            return this;
+        }
+        if (size == 1) {
+            return empty();
+        }
+        return new PersistentIntMap<>(remove(root, shift, key), shift, size - 1);
+    }
+
+    /**
+     * @return copy of node without key or null when node gets empty
+     */
+    private static Object[] remove(Object[] node, int level, int key) {
+        int slot = (key >>> level) & MASK;
+        Object child = level == 0 ? null : remove((Object[]) node[slot], level - BITS, key);
+        if (child == null && isOnlyChild(node, slot)) {
+            return null;
+        }
+        Object[] copy = node.clone();
+        copy[slot] = child;
+        return copy;
+    }
+
+    private static boolean isOnlyChild(Object[] node, int slot) {
+        for (int i = 0; i < WIDTH; i++) {
+            if (i != slot && node[i] != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return keys of map in ascending order
+     */
+    int[] keys() {
+        int[] result = new int[size];
+        if (root != null) {
+            collectKeys(root, shift, 0, result, 0);
+        }
+        return result;
+    }
+
+    private static int collectKeys(Object[] node, int level, int prefix, int[] result, int next) {
+        for (int slot = 0; slot < WIDTH; slot++) {
+            if (node[slot] != null) {
+                int key = prefix | slot << level;
+                if (level == 0) {
+                    result[next++] = key;
+                } else {
+                    next = collectKeys((Object[]) node[slot], level - BITS, key, result, next);
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return true if key is addressed by trie which root is at passed level
+     */
+    private static boolean fits(int key, int level) {
+        return level + BITS >= Integer.SIZE - 1 || key >>> (level + BITS) == 0;
+    }
+}
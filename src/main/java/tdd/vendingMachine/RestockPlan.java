@@ -0,0 +1,107 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import tdd.vendingMachine.products.Product;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Target levels of coins and products which vending machine should be topped up to during service visit.
+ * Denominations and shelves not mentioned in plan are left untouched. Levels below current ones do not remove
+ * anything, so the same plan can be applied on every visit.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class RestockPlan {
+
+    static final int UNCHANGED = -1;
+
+    /** Target number of coins indexed by coin denomination ordinal, {@link #UNCHANGED} if not planned */
+    private final int[] coinLevels;
+
+    private final Map<Integer, ShelveLevel> shelveLevels;
+
+    private RestockPlan(Builder builder) {
+        this.coinLevels = builder.coinLevels.clone();
+        this.shelveLevels = ImmutableMap.copyOf(builder.shelveLevels);
+    }
+
+    /**
+     * @return target number of coins or {@link #UNCHANGED} if coin denomination is not planned to top up
+     */
+    int getCoinLevel(CoinDenomination cd) {
+        return coinLevels[cd.ordinal()];
+    }
+
+    Map<Integer, ShelveLevel> getShelveLevels() {
+        return shelveLevels;
+    }
+
+    static final class ShelveLevel {
+
+        private final Product product;
+        private final int level;
+
+        private ShelveLevel(Product product, int level) {
+            this.product = product;
+            this.level = level;
+        }
+
+        Product getProduct() {
+            return product;
+        }
+
+        int getLevel() {
+            return level;
+        }
+    }
+
+    public static class Builder {
+
+        private final int[] coinLevels = new int[CoinDenomination.values().length];
+        private final Map<Integer, ShelveLevel> shelveLevels = Maps.newHashMap();
+
+        public Builder() {
+            Arrays.fill(coinLevels, UNCHANGED);
+        }
+
+        /**
+         * Plans topping up coins of passed denomination to passed level.
+         */
+        public Builder coinLevel(CoinDenomination cd, int level) {
+            Preconditions.checkNotNull(cd);
+            Preconditions.checkArgument(level >= 0);
+
+            coinLevels[cd.ordinal()] = level;
+            return this;
+        }
+
+        /**
+         * Plans topping up coins of every denomination to passed level.
+         */
+        public Builder coinLevelEachType(int level) {
+            for (CoinDenomination cd : CoinDenomination.values()) {
+                coinLevel(cd, level);
+            }
+            return this;
+        }
+
+        /**
+         * Plans topping up shelve to passed level with copies of passed product.
+         */
+        public Builder shelveLevel(int shelveNumber, Product product, int level) {
+            Preconditions.checkNotNull(product);
+            Preconditions.checkArgument(level >= 0);
+
+            shelveLevels.put(shelveNumber, new ShelveLevel(product, level));
+            return this;
+        }
+
+        public RestockPlan build() {
+            return new RestockPlan(this);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+/**
+ * Report of applied {@link RestockPlan}: number of coins and products added to vending machine.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class RestockReport {
+
+    /** Number of added coins indexed by coin denomination ordinal */
+    private final int[] addedCoins;
+
+    /** Number of added products by shelve number, contains only shelves which were topped up */
+    private final Map<Integer, Integer> addedProducts;
+
+    RestockReport(int[] addedCoins, Map<Integer, Integer> addedProducts) {
+        this.addedCoins = addedCoins;
+        this.addedProducts = ImmutableMap.copyOf(addedProducts);
+    }
+
+    public int getAddedCoins(CoinDenomination cd) {
+        return addedCoins[cd.ordinal()];
+    }
+
+    public int getAddedProducts(int shelveNumber) {
+        return addedProducts.getOrDefault(shelveNumber, 0);
+    }
+
+    /**
+     * @return number of added products by shelve number, only for shelves which were topped up
+     */
+    public Map<Integer, Integer> getAddedProducts() {
+        return addedProducts;
+    }
+}
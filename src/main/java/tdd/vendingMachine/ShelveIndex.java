@@ -0,0 +1,191 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.ProductCategory;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes of non-empty shelves by product type and by price band, so shelves holding product can be
+ * found without looking at every shelve. Shelve is indexed by product which is sold from it next.
+ *
+ * Index is updated by vending machine whenever product sold next from shelve could change. Update costs O(1),
+ * apart from O(log number of price bands) band lookup, and does nothing when next product has the same type and
+ * price as indexed one. Only non-empty shelves and price bands holding any shelve are stored, so copy of index
+ * does not depend on prices of products. Index is not thread safe.
+ *
+ * @author Łukasz Gadawski
+ */
+public class ShelveIndex {
+
+    /** Width of price band in hundredths */
+    private static final long PRICE_BAND_WIDTH = 100;
+
+    /** Non-empty shelves indexed by global product type index */
+    private final BitSet[] shelvesByType = new BitSet[ProductCategory.typeCount()];
+
+    /** Non-empty shelves by price band, bands without shelves are not stored */
+    private final NavigableMap<Integer, BitSet> shelvesByPriceBand = new TreeMap<>();
+
+    /** Type and price of product indexed for non-empty shelves, persistent so copies of index share it */
+    private PersistentIntMap<Entry> entries;
+
+    public ShelveIndex() {
+        entries = PersistentIntMap.empty();
+        for (int i = 0; i < shelvesByType.length; i++) {
+            shelvesByType[i] = new BitSet();
+        }
+    }
+
+    private ShelveIndex(ShelveIndex source) {
+        for (int i = 0; i < shelvesByType.length; i++) {
+            shelvesByType[i] = (BitSet) source.shelvesByType[i].clone();
+        }
+        for (Map.Entry<Integer, BitSet> band : source.shelvesByPriceBand.entrySet()) {
+            shelvesByPriceBand.put(band.getKey(), (BitSet) band.getValue().clone());
+        }
+        entries = source.entries;
+    }
+
+    /**
+     * @return independent copy of index
+     */
+    public ShelveIndex copy() {
+        return new ShelveIndex(this);
+    }
+
+    /**
+     * Indexes shelve by product sold from it next.
+     *
+     * @param next product sold next from shelve or null if shelve is empty
+     */
+    public void update(int shelveNumber, Product next) {
+        Entry indexed = entries.get(shelveNumber);
+        if (next == null ? indexed == null : indexed != null && indexed.matches(next)) {
+            return;
+        }
+
+        if (indexed != null) {
+            shelvesByType[indexed.type].clear(shelveNumber);
+            int band = band(indexed.priceMinor);
+            BitSet shelves = shelvesByPriceBand.get(band);
+            shelves.clear(shelveNumber);
+            if (shelves.isEmpty()) {
+                shelvesByPriceBand.remove(band);
+            }
+        }
+        if (next == null) {
+            entries = entries.remove(shelveNumber);
+            return;
+        }
+
+        Entry entry = new Entry(next);
+        entries = entries.put(shelveNumber, entry);
+        shelvesByType[entry.type].set(shelveNumber);
+        shelvesByPriceBand.computeIfAbsent(band(entry.priceMinor), band -> new BitSet()).set(shelveNumber);
+    }
+
+    /**
+     * Removes all shelves from index.
+     */
+    public void clear() {
+        for (int shelveNumber : entries.keys()) {
+            update(shelveNumber, null);
+        }
+    }
+
+    /**
+     * @return copy of set of non-empty shelves holding products of passed type
+     */
+    public BitSet shelvesOfType(Enum<?> type) {
+        return (BitSet) shelvesByType[ProductCategory.typeIndex(type)].clone();
+    }
+
+    /**
+     * @return first non-empty shelve holding products of passed type with number not lower than passed one
+     * or -1 if there is none
+     */
+    public int nextShelveOfType(Enum<?> type, int fromShelveNumber) {
+        return shelvesByType[ProductCategory.typeIndex(type)].nextSetBit(fromShelveNumber);
+    }
+
+    /**
+     * @return non-empty shelve holding products of passed type for the lowest price, the lowest shelve number
+     * if there are more such shelves, or -1 if type is sold out
+     */
+    public int cheapestShelveOfType(Enum<?> type) {
+        BitSet shelves = shelvesByType[ProductCategory.typeIndex(type)];
+        int cheapest = -1;
+        for (int i = shelves.nextSetBit(0); i >= 0; i = shelves.nextSetBit(i + 1)) {
+            if (cheapest == -1 || entries.get(i).priceMinor < entries.get(cheapest).priceMinor) {
+                cheapest = i;
+            }
+        }
+        return cheapest;
+    }
+
+    /**
+     * @return set of non-empty shelves which products cost between passed prices, both inclusive
+     */
+    public BitSet shelvesInPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        Preconditions.checkArgument(minPrice.compareTo(maxPrice) <= 0, "Empty price range: %s - %s", minPrice,
+            maxPrice);
+
+        long min = minPrice.movePointRight(2).setScale(0, RoundingMode.CEILING).longValueExact();
+        long max = maxPrice.movePointRight(2).setScale(0, RoundingMode.FLOOR).longValueExact();
+        BitSet result = new BitSet();
+        if (max < 0 || min > max) {
+            return result;
+        }
+        for (Map.Entry<Integer, BitSet> entry : shelvesByPriceBand.subMap(band(Math.max(min, 0)), true, band(max),
+            true).entrySet()) {
+            int band = entry.getKey();
+            BitSet shelves = entry.getValue();
+            boolean wholeBand = band * PRICE_BAND_WIDTH >= min && (band + 1) * PRICE_BAND_WIDTH - 1 <= max;
+            if (wholeBand) {
+                result.or(shelves);
+                continue;
+            }
+            for (int i = shelves.nextSetBit(0); i >= 0; i = shelves.nextSetBit(i + 1)) {
+                long priceMinor = entries.get(i).priceMinor;
+                if (priceMinor >= min && priceMinor <= max) {
+                    result.set(i);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int band(long priceMinor) {
+        return (int) (priceMinor / PRICE_BAND_WIDTH);
+    }
+
+    /**
+     * Type and price of product indexed for shelve.
+     */
+    private static final class Entry {
+
+        /** Global type index */
+        private final int type;
+        private final BigDecimal price;
+
+        /** Price in hundredths */
+        private final long priceMinor;
+
+        private Entry(Product product) {
+            this.type = ProductCategory.typeIndex(product.getType());
+            this.price = product.getPrice();
+            this.priceMinor = price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+
+        private boolean matches(Product product) {
+            return type == ProductCategory.typeIndex(product.getType()) && price.equals(product.getPrice());
+        }
+    }
+}
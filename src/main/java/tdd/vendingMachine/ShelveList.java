@@ -0,0 +1,159 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.products.Product;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable list of products on shelve, sorted so soonest expiring product is first. Every change returns new list
+ * sharing all products behind changed position with previous list, so taking first product or putting product
+ * on front costs O(1) and old versions stay valid for readers.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class ShelveList extends AbstractList<Product> {
+
+    private static final ShelveList EMPTY = new ShelveList(null, null);
+
+    private final Product first;
+    private final ShelveList rest;
+    private final int size;
+
+    private ShelveList(Product first, ShelveList rest) {
+        this.first = first;
+        this.rest = rest;
+        this.size = rest == null ? 0 : rest.size + 1;
+    }
+
+    public static ShelveList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return product sold next from shelve
+     * @throws NoSuchElementException when list is empty
+     */
+    public Product first() {
+        if (rest == null) {
+            throw new NoSuchElementException();
+        }
+        return first;
+    }
+
+    /**
+     * @return list without first product
+     * @throws NoSuchElementException when list is empty
+     */
+    public ShelveList rest() {
+        if (rest == null) {
+            throw new NoSuchElementException();
+        }
+        return rest;
+    }
+
+    /**
+     * @return list with passed product before all products expiring not sooner than it
+     */
+    public ShelveList insertInExpiryOrder(Product product) {
+        Preconditions.checkNotNull(product);
+
+        if (rest == null || first.getExpiresAt() >= product.getExpiresAt()) {
+            return new ShelveList(product, this);
+        }
+        return insertAllInExpiryOrder(Collections.singletonList(product));
+    }
+
+    /**
+     * Merges passed products, sorted by expiry, into list in one pass. Products up to the last inserted one are
+     * copied, the rest is shared.
+     *
+     * @return list with passed products, each before all products expiring not sooner than it
+     */
+    public ShelveList insertAllInExpiryOrder(List<Product> products) {
+        List<Product> merged = new ArrayList<>();
+        ShelveList shared = this;
+        for (Product product : products) {
+            while (shared.rest != null && shared.first.getExpiresAt() < product.getExpiresAt()) {
+                merged.add(shared.first);
+                shared = shared.rest;
+            }
+            merged.add(product);
+        }
+
+        ShelveList result = shared;
+        for (int i = merged.size() - 1; i >= 0; i--) {
+            result = new ShelveList(merged.get(i), result);
+        }
+        return result;
+    }
+
+    @Override
+    public Product get(int index) {
+        Preconditions.checkElementIndex(index, size);
+
+        ShelveList node = this;
+        for (int i = 0; i < index; i++) {
+            node = node.rest;
+        }
+        return node.first;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        return new Iterator<Product>() {
+
+            private ShelveList next = ShelveList.this;
+
+            @Override
+            public boolean hasNext() {
+                return next.rest != null;
+            }
+
+            @Override
+            public Product next() {
+                if (next.rest == null) {
+                    throw new NoSuchElementException();
+                }
+                Product product = next.first;
+                next = next.rest;
+                return product;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof List)) return false;
+
+        List<?> that = (List<?>) o;
+        if (size != that.size()) return false;
+
+        Iterator<?> thatIterator = that.iterator();
+        for (Product product : this) {
+            if (!product.equals(thatIterator.next())) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
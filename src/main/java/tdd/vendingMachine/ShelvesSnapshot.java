@@ -0,0 +1,112 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.products.Product;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable version of all shelves of vending machine, read only map of shelve number to products on shelve.
+ * Machine publishes new snapshot after every change of shelves. Snapshot shares unchanged shelves with previous
+ * versions, so it is published without copying products and can be read from any thread without locking.
+ * Only occupied shelves are stored in persistent map, so publishing snapshot costs O(1) and change of shelve
+ * copies O(log number of shelves) nodes of map.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class ShelvesSnapshot extends AbstractMap<Integer, List<Product>> {
+
+    private final long version;
+
+    /** Occupied shelves, empty shelves are not stored */
+    private final PersistentIntMap<ShelveList> shelves;
+
+    private final int numberOfShelves;
+
+    ShelvesSnapshot(long version, PersistentIntMap<ShelveList> shelves, int numberOfShelves) {
+        Preconditions.checkNotNull(shelves);
+
+        this.version = version;
+        this.shelves = shelves;
+        this.numberOfShelves = numberOfShelves;
+    }
+
+    /**
+     * @return number of snapshot, incremented by every change of shelves
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return products on shelve or null if shelve does not exist
+     */
+    public ShelveList shelve(int shelveNumber) {
+        if (shelveNumber < 0 || shelveNumber >= numberOfShelves) {
+            return null;
+        }
+        ShelveList shelve = shelves.get(shelveNumber);
+        return shelve == null ? ShelveList.empty() : shelve;
+    }
+
+    /**
+     * @return numbers of shelves holding any product in ascending order
+     */
+    public int[] occupiedShelveNumbers() {
+        return shelves.keys();
+    }
+
+    @Override
+    public List<Product> get(Object key) {
+        return key instanceof Integer ? shelve((Integer) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return numberOfShelves;
+    }
+
+    @Override
+    public Set<Entry<Integer, List<Product>>> entrySet() {
+        return new AbstractSet<Entry<Integer, List<Product>>>() {
+            @Override
+            public Iterator<Entry<Integer, List<Product>>> iterator() {
+                return new Iterator<Entry<Integer, List<Product>>>() {
+
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < numberOfShelves;
+                    }
+
+                    @Override
+                    public Entry<Integer, List<Product>> next() {
+                        if (next >= numberOfShelves) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<Integer, List<Product>> entry = new SimpleImmutableEntry<>(next, shelve(next));
+                        next++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return numberOfShelves;
+            }
+        };
+    }
+}
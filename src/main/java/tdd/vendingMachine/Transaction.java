@@ -1,14 +1,21 @@
 package tdd.vendingMachine;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.promotions.PromotionSession;
+import tdd.vendingMachine.promotions.Promotions;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
- * Represents transaction instance.
+ * Represents transaction instance. Transaction holds basket of products reserved from shelves, coins are accepted
+ * against total price of basket and change is computed once for whole basket.
  *
  * @author Łukasz Gadawski
  */
@@ -16,7 +23,14 @@ class Transaction {
 
     private boolean isOpen;
 
-    private Product product;
+    /** Number of transaction within machine, increased whenever transaction opens */
+    private long number;
+
+    /** Reserved products, in order they were added */
+    private final List<Product> products;
+
+    /** Shelve numbers products were reserved from, parallel to products */
+    private final List<Integer> shelveNumbers;
 
     private Map<CoinDenomination, Integer> coins;
 
@@ -24,32 +38,123 @@ class Transaction {
 
     private BigDecimal leftAmountToBuy;
 
+    /** Inserted coins routed into cash box instead of change tubes, indexed by coin denomination ordinal */
+    private final int[] cashBoxCoins = new int[CoinDenomination.values().length];
+
+    /** Amount paid from prepaid account */
+    private BigDecimal paidFromBalance;
+
+    /** Compiled promotions, null if there are none */
+    private Promotions promotions;
+
+    /** Customer session spanning consecutive transactions, used by promotions */
+    private final PromotionSession promotionSession;
+
 
-    Transaction() {
-        coins = Maps.newHashMap();
+    Transaction(Promotions promotions) {
+        this.coins = Maps.newHashMap();
+        this.products = Lists.newArrayList();
+        this.shelveNumbers = Lists.newArrayList();
+        this.promotions = promotions;
+        this.promotionSession = new PromotionSession();
+    }
+
+    private Transaction(Transaction source) {
+        this.isOpen = source.isOpen;
+        this.number = source.number;
+        this.products = Lists.newArrayList(source.products);
+        this.shelveNumbers = Lists.newArrayList(source.shelveNumbers);
+        this.coins = Maps.newHashMap(source.coins);
+        this.insertedAmount = source.insertedAmount;
+        this.leftAmountToBuy = source.leftAmountToBuy;
+        System.arraycopy(source.cashBoxCoins, 0, cashBoxCoins, 0, cashBoxCoins.length);
+        this.paidFromBalance = source.paidFromBalance;
+        this.promotions = source.promotions;
+        this.promotionSession = source.promotionSession.copy();
+    }
+
+    /**
+     * @return independent copy of transaction with the same basket, inserted coins and customer session
+     */
+    Transaction copy() {
+        return new Transaction(this);
+    }
+
+    /**
+     * Replaces promotions evaluated by next transactions, customer session is kept.
+     */
+    void setPromotions(Promotions promotions) {
+        Preconditions.checkState(!isOpen, "Cannot change promotions during transaction");
+        this.promotions = promotions;
     }
 
     void open() {
         isOpen = true;
+        number++;
         insertedAmount = BigDecimal.ZERO;
         leftAmountToBuy = BigDecimal.ZERO;
+        paidFromBalance = BigDecimal.ZERO;
     }
 
     void close() {
         isOpen = false;
-        product = null;
+        Arrays.fill(cashBoxCoins, 0);
+        products.clear();
+        shelveNumbers.clear();
         coins.clear();
         insertedAmount = BigDecimal.ZERO;
         leftAmountToBuy = BigDecimal.ZERO;
+        paidFromBalance = BigDecimal.ZERO;
     }
 
     boolean isOpen() {
         return isOpen;
     }
 
-    protected void setProduct(Product product) {
-        this.product = product;
-        this.leftAmountToBuy = product.getPrice();
+    long getNumber() {
+        return number;
+    }
+
+    /**
+     * Adds product reserved from shelve to basket. Product counts as bought in customer session until
+     * {@link #revertSales()} is called.
+     *
+     * @param price effective price product is sold for in this transaction
+     */
+    void addProduct(int shelveNumber, Product product, BigDecimal price, long epochMillis) {
+        products.add(product);
+        shelveNumbers.add(shelveNumber);
+        leftAmountToBuy = leftAmountToBuy.add(price);
+
+        if (promotions != null) {
+            promotionSession.recordSale(product.getType(), epochMillis);
+        }
+    }
+
+    /**
+     * Evaluates promotions for product bought at passed time in current customer session.
+     *
+     * @param price effective price of product before promotions
+     * @return price lowered by best applicable promotion
+     */
+    BigDecimal promotionalPrice(Product product, BigDecimal price, long epochMillis) {
+        if (promotions == null) {
+            return price;
+        }
+        promotionSession.expireIfIdle(epochMillis, promotions.getSessionTimeoutMillis());
+        int percent = promotions.discountPercent(product.getType(), epochMillis, promotionSession);
+        return Promotions.discountedPrice(price, percent);
+    }
+
+    /**
+     * Removes products of basket from current customer session, when they are not sold after all.
+     */
+    void revertSales() {
+        if (promotions != null) {
+            for (Product product : products) {
+                promotionSession.revertSale(product.getType());
+            }
+        }
     }
 
     /**
@@ -65,6 +170,29 @@ class Transaction {
 
     }
 
+    /**
+     * Pays amount debited from prepaid account, next to inserted coins.
+     */
+    void payFromBalance(BigDecimal amount) {
+        paidFromBalance = paidFromBalance.add(amount);
+        leftAmountToBuy = leftAmountToBuy.subtract(amount);
+    }
+
+    BigDecimal getPaidFromBalance() {
+        return paidFromBalance;
+    }
+
+    /**
+     * Records that inserted coin was routed into cash box, so it is taken from there when transaction is canceled.
+     */
+    void routedToCashBox(CoinDenomination cd) {
+        cashBoxCoins[cd.ordinal()]++;
+    }
+
+    int getCashBoxCoinCount(CoinDenomination cd) {
+        return cashBoxCoins[cd.ordinal()];
+    }
+
     BigDecimal getInsertedAmount() {
         return insertedAmount;
     }
@@ -81,8 +209,19 @@ class Transaction {
         return ImmutableMap.copyOf(coins);
     }
 
+    /**
+     * @return last product added to basket or null if basket is empty
+     */
     public Product getProduct() {
-        return product;
+        return products.isEmpty() ? null : products.get(products.size() - 1);
+    }
+
+    List<Product> getProducts() {
+        return products;
+    }
+
+    List<Integer> getShelveNumbers() {
+        return shelveNumbers;
     }
 
 }
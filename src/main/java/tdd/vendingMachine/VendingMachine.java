@@ -1,6 +1,7 @@
 package tdd.vendingMachine;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -8,11 +9,17 @@ import org.apache.commons.lang3.SerializationUtils;
 import tdd.vendingMachine.display.Display;
 import tdd.vendingMachine.display.DisplayMessages;
 import tdd.vendingMachine.exceptions.MaximumCoinCapacityExceedException;
-import tdd.vendingMachine.exceptions.NotEnoughCoinsToReturnException;
+import tdd.vendingMachine.payment.DebitRecord;
+import tdd.vendingMachine.payment.DebitStatus;
+import tdd.vendingMachine.payment.PrepaidLedger;
+import tdd.vendingMachine.pricing.PricingEngine;
 import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.promotions.PromotionSession;
+import tdd.vendingMachine.promotions.Promotions;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 
 /**
@@ -22,37 +29,127 @@ import java.util.*;
  */
 public class VendingMachine {
 
-    private final VendingMachineConfig config;
+    private VendingMachineConfig config;
+
+    /** Configuration applied when current transaction closes, null if there is none */
+    private VendingMachineConfig pendingConfig;
 
     private final Transaction tx;
 
-    private final Map<Integer, List<Product>> shelves;
+    /**
+     * Products on occupied shelves by shelve number, empty shelves are not stored. Every shelve is sorted so
+     * soonest expiring product is first. Map is persistent, so it is shared with published snapshots, template and
+     * forks, and change of shelve copies only path to it.
+     */
+    private PersistentIntMap<ShelveList> shelves;
+
+    /** Last published version of shelves, read by other threads */
+    private volatile ShelvesSnapshot shelvesSnapshot;
+
+    /** Indexes of non-empty shelves by type and price of product sold next from them */
+    private ShelveIndex shelveIndex;
+
+    /** True when shelve index is shared with template, so it is copied before next change */
+    private boolean shelveIndexShared;
+
+    /**
+     * Expiry timeouts of occupied shelves, one for every distinct expiry time of their products, canceled when
+     * shelve gets empty
+     */
+    private final IntObjectMap<List<ExpiryWheel.Timeout>> expiryTimeouts = new IntObjectMap<>();
+
+    /** Numbers of shelves which products expired, filled by expiry wheel possibly from other thread */
+    private final Queue<Integer> expiredShelves = new ConcurrentLinkedQueue<>();
+
+    /** Template which expiry deadlines machine follows, null when none is left or machine holds no products */
+    private VendingMachineTemplate expiryTemplate;
+
+    /** Index of next template deadline to report */
+    private int nextTemplateDeadline;
 
-    /** Contains product returned after transaction */
+    /** Timeout of next template deadline, null if there is none */
+    private ExpiryWheel.Timeout templateTimeout;
+
+    /** Indexes of template deadlines which passed, filled by expiry wheel possibly from other thread */
+    private final Queue<Integer> passedTemplateDeadlines = new ConcurrentLinkedQueue<>();
+
+    /** Products taken out of sale after they expired, until service collects them */
+    private List<Product> expiredProducts = Lists.newArrayList();
+
+    /** True when expired products are shared with fork, so they are copied before next change */
+    private boolean expiredProductsShared;
+
+    /** True once any product with expiry was put on shelve, machines with no such product skip eviction */
+    private boolean perishable;
+
+    /**
+     * True for forks, which get no reports from expiry wheel and check first products of occupied shelves
+     * instead
+     */
+    private boolean scansExpiry;
+
+    /** Contains product returned after transaction, last product of basket */
     private Product returnedProduct;
 
+    /** Contains all products returned after transaction */
+    private List<Product> returnedProducts = Collections.emptyList();
+
     /** Map of coins inserted into machine. Maps is sorted that higher value denomination are first. */
     private final Map<CoinDenomination, Integer> coins;
 
-    /** Contains coins returned after transaction */
-    private Map<CoinDenomination, Integer> returnedChange;
+    /** Coins routed into cash box, indexed by coin denomination ordinal, never used for change */
+    private final int[] cashBox = new int[CoinDenomination.values().length];
+
+    /** Contains coins returned after transactions until customer collects them */
+    private final CoinTray coinTray;
 
     private final Display display;
 
+    /** Key of message shown on display, null when display shows amount */
+    private String displayMessageKey;
+
     private int selectedShelveNumber = -1;
 
+    /** Effective price of product on selected shelve, resolved when shelve was selected */
+    private BigDecimal selectedProductPrice;
+
     private ResourceBundle bundle;
 
+    /** Random id of machine in payment references, created with first prepaid payment */
+    private String machineReference;
+
 
     public VendingMachine(VendingMachineConfig config) {
-        Preconditions.checkNotNull(config);
+        this(config, ResourceBundle.getBundle(Preconditions.checkNotNull(config).getBundle()), PersistentIntMap.empty(),
+            new ShelveIndex());
+    }
 
-        this.config = config;
+    /**
+     * Creates machine stocked as passed template. Machine shares shelves, shelve index, configuration and bundle
+     * with template and copies them only when it diverges from template, so creating machine costs the same for
+     * any stock of template.
+     */
+    public VendingMachine(VendingMachineTemplate template) {
+        this(template.getConfig(), template.getBundle(), template.getShelves(), template.getShelveIndex());
+        this.shelveIndexShared = true;
 
-        this.shelves = Maps.newHashMapWithExpectedSize(config.getNumberOfShelves());
-        for (int i = 0; i < config.getNumberOfShelves(); ++i) {
-            this.shelves.put(i, Lists.newLinkedList());
+        for (CoinDenomination cd : CoinDenomination.values()) {
+            this.coins.put(cd, template.getCoinCount(cd));
+        }
+        if (template.getExpiryDeadlineCount() > 0) {
+            perishable = true;
+            expiryTemplate = template;
+            followTemplateExpiry();
         }
+    }
+
+    private VendingMachine(VendingMachineConfig config, ResourceBundle bundle, PersistentIntMap<ShelveList> shelves,
+                           ShelveIndex shelveIndex) {
+        this.config = config;
+
+        this.shelves = shelves;
+        this.shelvesSnapshot = new ShelvesSnapshot(0, shelves, config.getNumberOfShelves());
+        this.shelveIndex = shelveIndex;
 
         // coins will be sorted in descending order by coin denomination value
         this.coins = Maps.newTreeMap(CoinDenomination.valueDescendingComparator);
@@ -60,23 +157,77 @@ public class VendingMachine {
             this.coins.put(cd, 0);
         }
 
-        this.returnedChange = Maps.newHashMap();
+        this.coinTray = new CoinTray(config.getCoinTrayCapacity());
 
-        this.tx = new Transaction();
+        this.tx = new Transaction(config.getPromotions());
 
-        this.bundle = ResourceBundle.getBundle(config.getBundle());
+        this.bundle = bundle;
 
         this.display = new Display();
         setDisplayMessage(DisplayMessages.HELLO_MESSAGE);
     }
 
+    private VendingMachine(VendingMachine source) {
+        // listener monitors source machine, events of fork must not reach it
+        this.config = source.config.withoutEventListener();
+        this.pendingConfig = source.pendingConfig == null ? null : source.pendingConfig.withoutEventListener();
+        this.tx = source.tx.copy();
+
+        source.shelveIndexShared = true;
+        this.shelves = source.shelves;
+        this.shelvesSnapshot = source.shelvesSnapshot;
+        this.shelveIndex = source.shelveIndex;
+        this.shelveIndexShared = true;
+
+        source.expiredProductsShared = true;
+        this.expiredProducts = source.expiredProducts;
+        this.expiredProductsShared = true;
+        this.perishable = source.perishable;
+        this.scansExpiry = true;
+
+        this.returnedProduct = source.returnedProduct;
+        this.returnedProducts = source.returnedProducts;
+        this.coins = Maps.newTreeMap(CoinDenomination.valueDescendingComparator);
+        this.coins.putAll(source.coins);
+        System.arraycopy(source.cashBox, 0, cashBox, 0, cashBox.length);
+        this.coinTray = source.coinTray.copy();
+        this.display = new Display(source.display);
+        this.displayMessageKey = source.displayMessageKey;
+        this.selectedShelveNumber = source.selectedShelveNumber;
+        this.selectedProductPrice = source.selectedProductPrice;
+        this.bundle = source.bundle;
+    }
+
+    /**
+     * Creates independent copy of machine state, including open transaction, for what-if simulations. Shelves
+     * are persistent, shelve index and uncollected expired products are shared until either machine changes
+     * them, other state has fixed size or is bounded by basket, so fork costs the same for any stock.
+     * Services of configuration, like prepaid ledger or pricing engine, are shared, fork used for simulation
+     * should be reconfigured without ones it must not call. Event listener monitors this machine only, so fork
+     * gets configuration without it.
+     *
+     * Fork gets no reports from expiry wheel, it checks first products of occupied shelves when evicting
+     * expired products.
+     *
+     * @return new machine in the same state as this one
+     */
+    public VendingMachine fork() {
+        return new VendingMachine(this);
+    }
+
     protected void reset() {
         setDisplayMessage(DisplayMessages.HELLO_MESSAGE);
-        this.shelves.clear();
+        clearProductsFromShelves();
         this.coins.clear();
-        this.returnedChange.clear();
+        Arrays.fill(this.cashBox, 0);
+        this.coinTray.clear();
         this.returnedProduct = null;
+        this.returnedProducts = Collections.emptyList();
+        this.expiredShelves.clear();
+        this.expiredProducts = Lists.newArrayList();
+        this.expiredProductsShared = false;
         this.tx.close();
+        this.pendingConfig = null;
     }
 
     /**
@@ -85,50 +236,485 @@ public class VendingMachine {
      * @param coinNumber number of coins of each type inserted into vending machine.
      */
     public void feedWithCoinsEachType(int coinNumber) {
+        // checks all denominations first, so machine is not fed partially
+        for (Map.Entry<CoinDenomination, Integer> entry : coins.entrySet()) {
+            if (entry.getValue() + coinNumber > maxCoinsInTube()) {
+                setDisplayMessage(DisplayMessages.MAX_MACHINE_COIN_CAPACITY_REACHED);
+                throw new MaximumCoinCapacityExceedException();
+            }
+        }
         for (Map.Entry<CoinDenomination, Integer> entry : coins.entrySet()) {
             putCoinIntoMachine(entry.getKey(), entry.getValue(), coinNumber);
         }
     }
 
-    private void putCoinIntoMachine(CoinDenomination cd, Integer cdCurrentCount, int coinNumber) {
-        if (cdCurrentCount + coinNumber > config.getMaxCoinNumberOfEachTypeInVendingMachine()) {
+    /**
+     * Takes coins of passed denomination out of machine down to passed level, i.e. during service visit.
+     *
+     * @return number of coins taken out
+     * @throws IllegalStateException when transaction is open
+     */
+    public int reduceCoinLevel(CoinDenomination cd, int level) {
+        Preconditions.checkNotNull(cd);
+        Preconditions.checkArgument(level >= 0, "Coin level must not be negative: %s", level);
+        Preconditions.checkState(!tx.isOpen(), "Cannot take coins out during transaction");
+
+        int taken = Math.max(coins.get(cd) - level, 0);
+        coins.put(cd, coins.get(cd) - taken);
+        return taken;
+    }
+
+    /**
+     * Tops up coins and shelves to levels from passed plan. Plan is validated as a whole before anything is
+     * added, so either whole plan is applied or machine is left untouched. Only missing coins and products
+     * are added.
+     *
+     * @return number of added coins and products
+     * @throws IllegalStateException    when transaction is open
+     * @throws IllegalArgumentException when plan exceeds machine capacity, refers to not existing shelve
+     *                                  or to shelve holding other product
+     */
+    public RestockReport restock(RestockPlan plan) {
+        Preconditions.checkNotNull(plan);
+        Preconditions.checkState(!tx.isOpen(), "Cannot restock machine during transaction");
+        evictExpiredProducts();
+
+        for (CoinDenomination cd : CoinDenomination.values()) {
+            Preconditions.checkArgument(plan.getCoinLevel(cd) <= config.getMaxCoinNumberOfEachTypeInVendingMachine(),
+                "Coin level of %s exceeds machine capacity", cd);
+        }
+        for (Map.Entry<Integer, RestockPlan.ShelveLevel> entry : plan.getShelveLevels().entrySet()) {
+            List<Product> shelve = shelve(entry.getKey());
+            RestockPlan.ShelveLevel shelveLevel = entry.getValue();
+
+            Preconditions.checkArgument(shelve != null, "Shelve %s does not exist", entry.getKey());
+            Preconditions.checkArgument(shelveLevel.getLevel() <= config.getMaxProductsOnShelve(),
+                "Product level of shelve %s exceeds shelve capacity", entry.getKey());
+            Preconditions.checkArgument(shelve.isEmpty() || shelve.get(0).equals(shelveLevel.getProduct()),
+                "Shelve %s holds other product", entry.getKey());
+        }
+
+        int[] addedCoins = new int[CoinDenomination.values().length];
+        for (CoinDenomination cd : CoinDenomination.values()) {
+            int missing = plan.getCoinLevel(cd) - coins.get(cd);
+            if (plan.getCoinLevel(cd) != RestockPlan.UNCHANGED && missing > 0) {
+                putCoinIntoMachine(cd, missing);
+                addedCoins[cd.ordinal()] = missing;
+            }
+        }
+
+        Map<Integer, Integer> addedProducts = Maps.newHashMap();
+        for (Map.Entry<Integer, RestockPlan.ShelveLevel> entry : plan.getShelveLevels().entrySet()) {
+            int missing = entry.getValue().getLevel() - shelve(entry.getKey()).size();
+            if (missing > 0) {
+                putOnShelve(entry.getKey(), entry.getValue().getProduct(), missing);
+                addedProducts.put(entry.getKey(), missing);
+            }
+        }
+        publishShelves();
+
+        return new RestockReport(addedCoins, addedProducts);
+    }
+
+    /**
+     * Replaces machine configuration without rebuilding machine. Stock and coins are kept in place and only
+     * shrinking capacities are checked: occupied shelves when shelve capacity shrinks, removed shelves when number
+     * of shelves shrinks and coin tubes when tube capacity shrinks, so growing machine checks nothing. When
+     * transaction is open new configuration is applied as soon as transaction closes, so every transaction runs
+     * with one configuration.
+     *
+     * New configuration is validated against current stock and coins, including products reserved by open
+     * transaction, before anything is changed. While configuration waits for transaction to close, coin tubes
+     * accept coins only up to capacity of both configurations.
+     *
+     * @return true if configuration was applied, false if it will be applied when current transaction closes
+     * @throws IllegalArgumentException when removed shelve holds products, when products on shelve or coins
+     *                                  in tube exceed new capacity or when expiry wheel of machine selling
+     *                                  perishable products is changed
+     */
+    public boolean reconfigure(VendingMachineConfig newConfig) {
+        Preconditions.checkNotNull(newConfig);
+        // forks get no reports from expiry wheel, so they can change it
+        boolean sameWheel = newConfig.getExpiryWheel() == config.getExpiryWheel();
+        Preconditions.checkArgument(!perishable || scansExpiry || sameWheel,
+            "Cannot change expiry wheel of machine with perishable products");
+
+        // stock and coins fit current configuration, so only capacities which shrink are checked
+        List<Integer> reserved = tx.isOpen() ? tx.getShelveNumbers() : Collections.emptyList();
+        if (newConfig.getMaxProductsOnShelve() < config.getMaxProductsOnShelve()) {
+            for (int shelveNumber : shelves.keys()) {
+                checkStock(newConfig, shelveNumber, reserved);
+            }
+            for (int shelveNumber : reserved) {
+                checkStock(newConfig, shelveNumber, reserved);
+            }
+        } else if (newConfig.getNumberOfShelves() < config.getNumberOfShelves()) {
+            for (int shelveNumber = newConfig.getNumberOfShelves(); shelveNumber < config.getNumberOfShelves();
+                 shelveNumber++) {
+                checkStock(newConfig, shelveNumber, reserved);
+            }
+        }
+        if (newConfig.getMaxCoinNumberOfEachTypeInVendingMachine()
+            < config.getMaxCoinNumberOfEachTypeInVendingMachine()) {
+            for (Map.Entry<CoinDenomination, Integer> entry : coins.entrySet()) {
+                Preconditions.checkArgument(
+                    entry.getValue() <= newConfig.getMaxCoinNumberOfEachTypeInVendingMachine(),
+                    "Coins %s exceed new tube capacity", entry.getKey());
+            }
+        }
+
+        if (tx.isOpen()) {
+            pendingConfig = newConfig;
+            return false;
+        }
+        applyConfig(newConfig);
+        return true;
+    }
+
+    /**
+     * Checks products on shelve together with products reserved from it fit new configuration.
+     */
+    private void checkStock(VendingMachineConfig newConfig, int shelveNumber, List<Integer> reserved) {
+        int stock = shelve(shelveNumber).size() + Collections.frequency(reserved, shelveNumber);
+        Preconditions.checkArgument(shelveNumber < newConfig.getNumberOfShelves() || stock == 0,
+            "Removed shelve %s holds products", shelveNumber);
+        Preconditions.checkArgument(stock <= newConfig.getMaxProductsOnShelve(),
+            "Products on shelve %s exceed new shelve capacity", shelveNumber);
+    }
+
+    private void applyConfig(VendingMachineConfig newConfig) {
+        boolean shelvesChanged = newConfig.getNumberOfShelves() != config.getNumberOfShelves();
+        boolean bundleChanged = !newConfig.getBundle().equals(config.getBundle());
+        coinTray.setCapacity(newConfig.getCoinTrayCapacity());
+        tx.setPromotions(newConfig.getPromotions());
+        config = newConfig;
+        pendingConfig = null;
+
+        if (shelvesChanged) {
+            if (selectedShelveNumber >= newConfig.getNumberOfShelves()) {
+                resetSelectedShelve();
+            }
+            publishShelves();
+        }
+        if (bundleChanged) {
+            bundle = ResourceBundle.getBundle(newConfig.getBundle());
+            if (displayMessageKey != null) {
+                setDisplayMessage(displayMessageKey);
+            }
+        }
+    }
+
+    /**
+     * @return configuration machine runs with
+     */
+    public VendingMachineConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Closes transaction and applies configuration which waited for it.
+     */
+    private void closeTransaction() {
+        tx.close();
+        if (pendingConfig != null) {
+            applyConfig(pendingConfig);
+        }
+    }
+
+    /**
+     * @return capacity of coin tubes, the lower of current and pending configuration, so coins inserted while
+     * configuration waits for transaction to close never exceed capacity it was validated against
+     */
+    private int maxCoinsInTube() {
+        int max = config.getMaxCoinNumberOfEachTypeInVendingMachine();
+        if (pendingConfig == null) {
+            return max;
+        }
+        return Math.min(max, pendingConfig.getMaxCoinNumberOfEachTypeInVendingMachine());
+    }
+
+    /**
+     * @return true if coins were put into machine, false if machine coin capacity would be exceeded
+     */
+    private boolean putCoinIntoMachine(CoinDenomination cd, Integer cdCurrentCount, int coinNumber) {
+        if (cdCurrentCount + coinNumber > maxCoinsInTube()) {
             setDisplayMessage(DisplayMessages.MAX_MACHINE_COIN_CAPACITY_REACHED);
-            throw new MaximumCoinCapacityExceedException();
+            return false;
         }
 
         coins.put(cd, cdCurrentCount + coinNumber);
+        return true;
     }
 
-    private void putCoinIntoMachine(CoinDenomination cd, int coinNumber) {
-        putCoinIntoMachine(cd, coins.get(cd), coinNumber);
+    private boolean putCoinIntoMachine(CoinDenomination cd, int coinNumber) {
+        return putCoinIntoMachine(cd, coins.get(cd), coinNumber);
+    }
+
+    /**
+     * Puts coin inserted in transaction into change tube or cash box, as decided by routing policy.
+     *
+     * @return true if coin was accepted, false if machine has no routing policy and tube is full
+     */
+    private boolean acceptCoin(CoinDenomination cd) {
+        CoinRoutingPolicy policy = config.getCoinRoutingPolicy();
+        if (policy == null) {
+            return putCoinIntoMachine(cd, 1);
+        }
+
+        int tubeLevel = coins.get(cd);
+        if (tubeLevel < maxCoinsInTube() && policy.routeToTube(cd, tubeLevel)) {
+            coins.put(cd, tubeLevel + 1);
+        } else {
+            cashBox[cd.ordinal()]++;
+            tx.routedToCashBox(cd);
+        }
+        return true;
     }
 
     public void feedWithProducts(Map<Integer, Product> products) {
-        shelves.entrySet().stream()
-            .forEach(entry -> {
-                for (int i = 0; i < config.getMaxProductsOnShelve(); i++) {
-                    entry.getValue().add(SerializationUtils.clone(products.get(entry.getKey())));
-                }
-            });
+        for (Map.Entry<Integer, Product> entry : products.entrySet()) {
+            if (shelve(entry.getKey()) != null) {
+                putOnShelve(entry.getKey(), entry.getValue(), config.getMaxProductsOnShelve());
+            }
+        }
+        publishShelves();
     }
 
     protected void putRandomProductsOnShelves(List<Product> possibleProductList) {
         Random random = new Random();
-        shelves.entrySet().stream()
-            .forEach(entry -> {
-                Product product = possibleProductList.get(random.nextInt(possibleProductList.size()));
-                for (int i = 0; i < config.getMaxProductsOnShelve(); i++) {
-                    entry.getValue().add(SerializationUtils.clone(product));
-                }
-            });
+        for (int i = 0; i < config.getNumberOfShelves(); i++) {
+            Product product = possibleProductList.get(random.nextInt(possibleProductList.size()));
+            putOnShelve(i, product, config.getMaxProductsOnShelve());
+        }
+        publishShelves();
+    }
+
+    /**
+     * Puts copies of new product on shelve in expiry order and schedules their eviction if they can expire.
+     * Caller publishes shelves.
+     */
+    private void putOnShelve(int shelveNumber, Product product, int count) {
+        List<Product> batch = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(SerializationUtils.clone(product));
+        }
+        storeShelve(shelveNumber, shelve(shelveNumber).insertAllInExpiryOrder(batch));
+        scheduleExpiry(shelveNumber, product);
+    }
+
+    /**
+     * Schedules report of shelve when passed product expires, unless products of shelve expiring at the same
+     * time are already scheduled.
+     */
+    private void scheduleExpiry(int shelveNumber, Product product) {
+        long expiresAt = product.getExpiresAt();
+        if (expiresAt == Product.NEVER_EXPIRES) {
+            return;
+        }
+        perishable = true;
+        if (scansExpiry) {
+            return;
+        }
+        List<ExpiryWheel.Timeout> timeouts = expiryTimeouts.get(shelveNumber);
+        if (timeouts == null) {
+            timeouts = Lists.newArrayListWithCapacity(2);
+            expiryTimeouts.put(shelveNumber, timeouts);
+        }
+        for (ExpiryWheel.Timeout timeout : timeouts) {
+            if (timeout.getDeadlineMillis() == expiresAt) {
+                return;
+            }
+        }
+        timeouts.add(config.getExpiryWheel().schedule(expiresAt, () -> expiredShelves.offer(shelveNumber)));
+    }
+
+    /**
+     * Forgets expiry timeouts of shelve which passed by now and cancels all of them when shelve is empty, so
+     * wheel does not keep machine reachable for products it no longer holds.
+     */
+    private void releaseExpiryTimeouts(int shelveNumber, boolean empty, long now) {
+        List<ExpiryWheel.Timeout> timeouts = expiryTimeouts.get(shelveNumber);
+        if (timeouts == null) {
+            return;
+        }
+        if (empty) {
+            for (ExpiryWheel.Timeout timeout : timeouts) {
+                timeout.cancel();
+            }
+            expiryTimeouts.remove(shelveNumber);
+            return;
+        }
+        timeouts.removeIf(timeout -> timeout.getDeadlineMillis() <= now);
+    }
+
+    /**
+     * Takes expired products out of sale. Machine moves expiry wheel to its current time and removes expired
+     * products from shelves reported by wheel. Expired products are always first on their shelves, so each of
+     * them is removed in constant time.
+     */
+    public void evictExpiredProducts() {
+        if (!perishable) {
+            return;
+        }
+        long now = config.getClock().millis();
+        if (scansExpiry) {
+            for (int occupied : shelves.keys()) {
+                evictExpiredProducts(occupied, now);
+            }
+            return;
+        }
+        config.getExpiryWheel().advanceTo(now);
+
+        Integer deadline;
+        while ((deadline = passedTemplateDeadlines.poll()) != null) {
+            if (expiryTemplate != null && deadline == nextTemplateDeadline) {
+                // reported even when wheel runs ahead of machine clock, so every timeout moves to next deadline
+                reportTemplateDeadline();
+                followTemplateExpiry();
+            }
+        }
+
+        Integer shelveNumber;
+        while ((shelveNumber = expiredShelves.poll()) != null) {
+            evictExpiredProducts(shelveNumber, now);
+        }
     }
 
-    private void putProductOnShelve(Product product) {
-        shelves.get(getSelectedShelveNumber()).add(product);
+    private void evictExpiredProducts(int shelveNumber, long now) {
+        ShelveList shelve = shelve(shelveNumber);
+        if (shelve == null || shelve.isEmpty() || !shelve.first().isExpiredAt(now)) {
+            return;
+        }
+        if (expiredProductsShared) {
+            expiredProducts = Lists.newArrayList(expiredProducts);
+            expiredProductsShared = false;
+        }
+        do {
+            expiredProducts.add(shelve.first());
+            shelve = shelve.rest();
+        } while (!shelve.isEmpty() && shelve.first().isExpiredAt(now));
+        setShelve(shelveNumber, shelve);
+        releaseExpiryTimeouts(shelveNumber, shelve.isEmpty(), now);
+    }
+
+    /**
+     * @return products on shelve, empty list for shelve which is not occupied, or null if shelve does not exist
+     */
+    private ShelveList shelve(int shelveNumber) {
+        if (shelveNumber < 0 || shelveNumber >= config.getNumberOfShelves()) {
+            return null;
+        }
+        ShelveList shelve = shelves.get(shelveNumber);
+        return shelve == null ? ShelveList.empty() : shelve;
+    }
+
+    /**
+     * Replaces products on shelve, updates shelve indexes and publishes new version of shelves.
+     */
+    private void setShelve(int shelveNumber, ShelveList shelve) {
+        storeShelve(shelveNumber, shelve);
+        publishShelves();
+    }
+
+    /**
+     * Replaces products on shelve and updates shelve indexes, shelve is allocated when it gets first product
+     * and released when it gets empty.
+     */
+    private void storeShelve(int shelveNumber, ShelveList shelve) {
+        if (shelveIndexShared) {
+            shelveIndex = shelveIndex.copy();
+            shelveIndexShared = false;
+        }
+        if (shelve.isEmpty()) {
+            shelves = shelves.remove(shelveNumber);
+            shelveIndex.update(shelveNumber, null);
+            releaseExpiryTimeouts(shelveNumber, true, 0);
+            if (shelves.isEmpty()) {
+                releaseTemplateExpiry();
+            }
+        } else {
+            shelves = shelves.put(shelveNumber, shelve);
+            shelveIndex.update(shelveNumber, shelve.first());
+        }
+    }
+
+    /**
+     * Publishes current shelves without copying them, shelves map is persistent.
+     */
+    private void publishShelves() {
+        shelvesSnapshot = new ShelvesSnapshot(shelvesSnapshot.getVersion() + 1, shelves, config.getNumberOfShelves());
+    }
+
+    /**
+     * Creates template of machine stock: configuration, products on shelves and coins for change. Template shares
+     * shelves and shelve index with machine, which copies shelve index on its next change. Configuration of
+     * template has no event listener, machines created from template register listeners of their own.
+     *
+     * @throws IllegalStateException when transaction is open
+     */
+    public VendingMachineTemplate toTemplate() {
+        Preconditions.checkState(!tx.isOpen(), "Cannot create template during transaction");
+        evictExpiredProducts();
+
+        int[] coinCounts = new int[CoinDenomination.values().length];
+        for (CoinDenomination cd : CoinDenomination.values()) {
+            coinCounts[cd.ordinal()] = coins.get(cd);
+        }
+        shelveIndexShared = true;
+        return new VendingMachineTemplate(config.withoutEventListener(), bundle, shelves, shelveIndex, coinCounts);
+    }
+
+    /**
+     * Reports template shelves which products expired by now and schedules timeout of next template deadline, so
+     * machine keeps one expiry timeout for whole template stock. Timeout only queues its deadline, which is
+     * followed by machine thread when it evicts expired products.
+     */
+    private void followTemplateExpiry() {
+        long now = config.getClock().millis();
+        while (nextTemplateDeadline < expiryTemplate.getExpiryDeadlineCount()
+            && expiryTemplate.getExpiryDeadline(nextTemplateDeadline) <= now) {
+            reportTemplateDeadline();
+        }
+        if (nextTemplateDeadline == expiryTemplate.getExpiryDeadlineCount()) {
+            expiryTemplate = null;
+            templateTimeout = null;
+            return;
+        }
+        int deadline = nextTemplateDeadline;
+        templateTimeout = config.getExpiryWheel().schedule(expiryTemplate.getExpiryDeadline(deadline),
+            () -> passedTemplateDeadlines.offer(deadline));
+    }
+
+    private void reportTemplateDeadline() {
+        for (int shelveNumber : expiryTemplate.getExpiringShelves(nextTemplateDeadline++)) {
+            expiredShelves.offer(shelveNumber);
+        }
+    }
+
+    /**
+     * Stops following template deadlines once machine holds no products, so wheel does not keep machine reachable.
+     */
+    private void releaseTemplateExpiry() {
+        if (templateTimeout != null) {
+            templateTimeout.cancel();
+        }
+        expiryTemplate = null;
+        templateTimeout = null;
+        passedTemplateDeadlines.clear();
     }
 
     public Product selectShelveNumber(int selectedShelveNumber) {
-        List<Product> productFromShelve = shelves.get(selectedShelveNumber);
+        if (!tx.isOpen() && coinTray.isFull()) {
+            setDisplayMessage(DisplayMessages.COIN_TRAY_FULL);
+            setSelectedShelveNumber(-1);
+            return null;
+        }
+        evictExpiredProducts();
+        if (perishable) {
+            // wheel fires up to one tick late, product expired within last tick must not be sold
+            evictExpiredProducts(selectedShelveNumber, config.getClock().millis());
+        }
+        List<Product> productFromShelve = shelve(selectedShelveNumber);
         if (productFromShelve == null) {
             setDisplayMessage(DisplayMessages.SELECTED_SHELVE_NO_OUT_OF_POSSIBLE_SHELVE_NUMBERS);
             setSelectedShelveNumber(-1);
@@ -141,98 +727,307 @@ public class VendingMachine {
         }
 
         Product product = productFromShelve.get(0);
-        setDisplayMessageExact(String.valueOf(product.getPrice()));
         setSelectedShelveNumber(selectedShelveNumber);
+        long now = config.getClock().millis();
+        selectedProductPrice = tx.promotionalPrice(product, priceOf(selectedShelveNumber, product, now), now);
+        setDisplayAmount(selectedProductPrice);
+
+        return product;
+    }
+
+    /**
+     * Selects shelve holding product of passed type for the lowest effective price, shelve with the lowest number
+     * if there are more such shelves.
+     *
+     * @return product from selected shelve or null if type is sold out
+     */
+    public Product selectProductType(Enum<?> type) {
+        Preconditions.checkNotNull(type);
+
+        evictExpiredProducts();
+        int shelveNumber = cheapestShelveOfType(type);
+        if (shelveNumber == -1) {
+            setDisplayMessage(DisplayMessages.PRODUCT_TYPE_SOLD_OUT);
+            setSelectedShelveNumber(-1);
+            return null;
+        }
+        return selectShelveNumber(shelveNumber);
+    }
+
+    private int cheapestShelveOfType(Enum<?> type) {
+        if (config.getPricingEngine() == null) {
+            return shelveIndex.cheapestShelveOfType(type);
+        }
+
+        // effective prices can differ from indexed product prices, only candidate shelves are priced
+        long now = config.getClock().millis();
+        int cheapest = -1;
+        BigDecimal cheapestPrice = null;
+        for (int i = shelveIndex.nextShelveOfType(type, 0); i >= 0; i = shelveIndex.nextShelveOfType(type, i + 1)) {
+            BigDecimal price = priceOf(i, shelves.get(i).first(), now);
+            if (cheapestPrice == null || price.compareTo(cheapestPrice) < 0) {
+                cheapest = i;
+                cheapestPrice = price;
+            }
+        }
+        return cheapest;
+    }
+
+    /**
+     * Reserves product from shelve and adds it to basket of transaction, opening transaction if there is none.
+     * Coins inserted later are accepted against total price of basket and change is returned once, when total
+     * is paid. Canceled basket returns all reserved products on their shelves.
+     *
+     * @return product added to basket or null if shelve does not exist or is empty
+     */
+    public Product addToBasket(int shelveNumber) {
+        Product product = selectShelveNumber(shelveNumber);
+        if (product == null) {
+            return null;
+        }
+
+        if (!tx.isOpen()) {
+            tx.open();
+        }
+        tx.addProduct(shelveNumber, getProductFromSelectedShelve(), selectedProductPrice, config.getClock().millis());
+        resetSelectedShelve();
+        setDisplayAmount(tx.getLeftAmountToBuy());
 
         return product;
     }
 
     private void resetSelectedShelve() {
-        this.selectedShelveNumber = -1;
+        setSelectedShelveNumber(-1);
+    }
+
+    /**
+     * @return effective price of product on shelve, resolved by pricing engine if machine has any
+     */
+    private BigDecimal priceOf(int shelveNumber, Product product, long epochMillis) {
+        PricingEngine pricingEngine = config.getPricingEngine();
+        if (pricingEngine == null) {
+            return product.getPrice();
+        }
+        return pricingEngine.priceOf(shelveNumber, product, epochMillis);
+    }
+
+    /**
+     * @return effective price of next product on shelve paid now by customer starting new session, with pricing
+     * engine and promotions applied, or null if shelve does not exist or is empty
+     */
+    public BigDecimal effectivePriceOf(int shelveNumber) {
+        evictExpiredProducts();
+        List<Product> shelve = shelve(shelveNumber);
+        if (shelve == null || shelve.isEmpty()) {
+            return null;
+        }
+
+        Product product = shelve.get(0);
+        long now = config.getClock().millis();
+        BigDecimal price = priceOf(shelveNumber, product, now);
+        Promotions promotions = config.getPromotions();
+        if (promotions == null) {
+            return price;
+        }
+        return Promotions.discountedPrice(price, promotions.discountPercent(product.getType(), now,
+            new PromotionSession()));
     }
 
     public String getDisplayMessage() {
         return display.getMessage();
     }
 
+    /**
+     * @return bundle key of message shown on display or null if display shows amount
+     */
+    public String getDisplayMessageKey() {
+        return displayMessageKey;
+    }
+
     private void setSelectedShelveNumber(int selectedShelveNumber) {
         this.selectedShelveNumber = selectedShelveNumber;
+        this.selectedProductPrice = null;
     }
 
     public int getSelectedShelveNumber() {
         return selectedShelveNumber;
     }
 
+    /**
+     * @return effective price of product on selected shelve or null if there is no selected shelve
+     */
+    public BigDecimal getSelectedProductPrice() {
+        return selectedProductPrice;
+    }
+
     protected void clearProductsFromShelves() {
-        for (int i = 0; i < config.getNumberOfShelves(); i++) {
-            shelves.get(i).clear();
+        for (int shelveNumber : shelves.keys()) {
+            storeShelve(shelveNumber, ShelveList.empty());
         }
+        publishShelves();
     }
 
     /**
-     * Inserting coin opening transaction. If before inserting coin there wasn't selected any shelve coin will
-     * be put into returnChange collection.
+     * Inserting coin opening transaction. If before inserting coin there wasn't selected any shelve and there is
+     * no open basket, coin will be put into returnChange collection.
      *
      * @param cd inserted coin denomination
+     * @return outcome of inserting coin
      */
-    public void insertCoin(CoinDenomination cd) {
-        if (getSelectedShelveNumber() == -1) {
-            putReturnedChange(Collections.singletonMap(cd, 1));
-            return;
+    public InsertCoinOutcome insertCoin(CoinDenomination cd) {
+        InsertCoinOutcome outcome = acceptInsertedCoin(cd);
+        MachineEventListener listener = config.getEventListener();
+        if (listener != null) {
+            listener.coinInserted(cd, outcome, config.getClock().millis());
+        }
+        return outcome;
+    }
+
+    private InsertCoinOutcome acceptInsertedCoin(CoinDenomination cd) {
+        if (getSelectedShelveNumber() == -1 && !tx.isOpen()) {
+            coinTray.put(cd, 1);
+            return InsertCoinOutcome.RETURNED_NO_SELECTION;
         }
 
         if (!tx.isOpen()) {
             tx.open();
-            tx.setProduct(getProductFromSelectedShelve());
+            tx.addProduct(getSelectedShelveNumber(), getProductFromSelectedShelve(), selectedProductPrice,
+                config.getClock().millis());
         }
 
-        try {
-            putCoinIntoMachine(cd, 1);
-        } catch (MaximumCoinCapacityExceedException e) {
+        if (!acceptCoin(cd)) {
             beforeTransactionCancelClose(tx);
-            tx.close();
+            closeTransaction();
+            // rejected coin was not added to transaction, so it is returned on its own
+            coinTray.put(cd, 1);
 
-            return;
+            return InsertCoinOutcome.REJECTED_CAPACITY;
         }
 
         if (tx.insertCoin(cd)) {
-            try {
-                returnChange(tx.getLeftAmountToBuy());
-            } catch (NotEnoughCoinsToReturnException e) {
-                putProductOnShelve(tx.getProduct());
-                putReturnedChange(tx.coins());
+            if (!returnChange(tx.getLeftAmountToBuy())) {
+                returnProductsOnShelves(tx);
+                returnTransactionCoins(tx);
                 resetSelectedShelve();
-                tx.close();
+                closeTransaction();
                 setDisplayMessage(DisplayMessages.NO_COINS_TO_RETURN);
 
-                return;
+                return InsertCoinOutcome.REFUNDED_NO_CHANGE;
             }
             returnProduct(tx);
             resetSelectedShelve();
-            tx.close();
+            closeTransaction();
             setDisplayMessage(DisplayMessages.HELLO_MESSAGE);
 
-            return;
+            return InsertCoinOutcome.SALE_COMPLETED;
+        }
+        setDisplayAmount(tx.getLeftAmountToBuy());
+
+        return InsertCoinOutcome.ACCEPTED;
+    }
+
+    /**
+     * Pays amount left to buy selected product or basket from prepaid account of ledger configured for machine.
+     * Coins inserted before are kept as partial payment. Declined payment leaves transaction as it was.
+     *
+     * Debit is made for current transaction, so debit id already used by other payment, also retried after
+     * its sale completed, is declined as duplicate and nothing is debited or sold.
+     *
+     * @param debitId unique id of payment, payment retried with the same id is debited once
+     * @return outcome of payment
+     * @throws IllegalStateException when machine has no prepaid ledger
+     */
+    public CardPaymentOutcome payFromBalance(String accountId, String debitId) {
+        Preconditions.checkNotNull(accountId);
+        Preconditions.checkNotNull(debitId);
+        PrepaidLedger ledger = config.getPrepaidLedger();
+        Preconditions.checkState(ledger != null, "Machine does not accept prepaid payments");
+
+        if (getSelectedShelveNumber() == -1 && !tx.isOpen()) {
+            return CardPaymentOutcome.NO_SELECTION;
+        }
+        if (ledger.isDebited(debitId)) {
+            setDisplayMessage(DisplayMessages.PREPAID_PAYMENT_DECLINED);
+            return CardPaymentOutcome.DUPLICATE_DEBIT;
+        }
+
+        boolean opened = !tx.isOpen();
+        if (opened) {
+            tx.open();
+            tx.addProduct(getSelectedShelveNumber(), getProductFromSelectedShelve(), selectedProductPrice,
+                config.getClock().millis());
+        }
+
+        DebitRecord record = ledger.debit(debitId, accountId, tx.getLeftAmountToBuy(), paymentReference());
+        if (!record.isApproved()) {
+            if (opened) {
+                returnProductsOnShelves(tx);
+                closeTransaction();
+            }
+            setDisplayMessage(DisplayMessages.PREPAID_PAYMENT_DECLINED);
+
+            return declinedOutcome(record.getStatus());
+        }
+
+        tx.payFromBalance(record.getAmount());
+        returnProduct(tx);
+        resetSelectedShelve();
+        closeTransaction();
+        setDisplayMessage(DisplayMessages.HELLO_MESSAGE);
+
+        MachineEventListener listener = config.getEventListener();
+        if (listener != null) {
+            listener.prepaidSaleCompleted(config.getClock().millis());
         }
-        setDisplayMessageExact(String.valueOf(tx.getLeftAmountToBuy()));
+        return CardPaymentOutcome.SALE_COMPLETED;
     }
 
-    private void returnChange(BigDecimal leftAmountToBuy) {
+    /**
+     * @return reference of current transaction, unique among machines sharing prepaid ledger
+     */
+    private String paymentReference() {
+        if (machineReference == null) {
+            machineReference = UUID.randomUUID().toString();
+        }
+        return machineReference + "/" + tx.getNumber();
+    }
+
+    private static CardPaymentOutcome declinedOutcome(DebitStatus status) {
+        switch (status) {
+            case INSUFFICIENT_FUNDS:
+                return CardPaymentOutcome.INSUFFICIENT_FUNDS;
+            case UNKNOWN_ACCOUNT:
+                return CardPaymentOutcome.UNKNOWN_ACCOUNT;
+            case DUPLICATE:
+                return CardPaymentOutcome.DUPLICATE_DEBIT;
+            default:
+                throw new IllegalStateException("Debit was not declined: " + status);
+        }
+    }
+
+    /**
+     * @return true if change was returned, false if there is not enough coins in machine to return change
+     */
+    private boolean returnChange(BigDecimal leftAmountToBuy) {
         CoinReturningAlgorithm algorithm = new CoinReturningAlgorithm(coins());
-        Map<CoinDenomination, Integer> change = algorithm.getChange(leftAmountToBuy.negate());
+        Map<CoinDenomination, Integer> change = algorithm.findChange(leftAmountToBuy.negate());
+        if (change == null) {
+            return false;
+        }
         removeCoinsFromMachine(change);
         putReturnedChange(change);
+        return true;
     }
 
     private void beforeTransactionCancelClose(Transaction t) {
-        returnProductOnShelve(t.getProduct());
-        removeCoinsFromMachine(t.coins());
-        putReturnedChange(t.coins());
+        returnProductsOnShelves(t);
+        returnTransactionCoins(t);
         resetSelectedShelve();
     }
 
     private void returnProduct(Transaction t) {
         this.returnedProduct = t.getProduct();
+        this.returnedProducts = ImmutableList.copyOf(t.getProducts());
     }
 
     /**
@@ -243,11 +1038,30 @@ public class VendingMachine {
     public void cancel() {
         if (tx.isOpen()) {
             beforeTransactionCancelClose(tx);
-            tx.close();
+            closeTransaction();
             setDisplayMessage(DisplayMessages.HELLO_MESSAGE);
+
+            MachineEventListener listener = config.getEventListener();
+            if (listener != null) {
+                listener.transactionCanceled(config.getClock().millis());
+            }
         }
     }
 
+    /**
+     * Takes coins inserted in transaction out of change tubes and cash box and returns them to coin tray.
+     */
+    private void returnTransactionCoins(Transaction t) {
+        Map<CoinDenomination, Integer> insertedCoins = t.coins();
+        for (Map.Entry<CoinDenomination, Integer> entry : insertedCoins.entrySet()) {
+            CoinDenomination cd = entry.getKey();
+            int inCashBox = t.getCashBoxCoinCount(cd);
+            cashBox[cd.ordinal()] -= inCashBox;
+            coins.put(cd, coins.get(cd) - (entry.getValue() - inCashBox));
+        }
+        putReturnedChange(insertedCoins);
+    }
+
     private void removeCoinsFromMachine(Map<CoinDenomination, Integer> insertedCoins) {
         Preconditions.checkNotNull(insertedCoins);
 
@@ -260,43 +1074,141 @@ public class VendingMachine {
             });
     }
 
-    private void returnProductOnShelve(Product product) {
-        Preconditions.checkNotNull(product);
-
-        shelves.get(getSelectedShelveNumber()).add(product);
+    /**
+     * Returns all products of transaction basket on shelves they were reserved from. Products which expired
+     * meanwhile are taken out of sale.
+     */
+    private void returnProductsOnShelves(Transaction t) {
+        for (int i = 0; i < t.getProducts().size(); i++) {
+            int shelveNumber = t.getShelveNumbers().get(i);
+            setShelve(shelveNumber, shelve(shelveNumber).insertInExpiryOrder(t.getProducts().get(i)));
+            // timeouts are canceled when reservation empties shelve
+            scheduleExpiry(shelveNumber, t.getProducts().get(i));
+            if (perishable) {
+                evictExpiredProducts(shelveNumber, config.getClock().millis());
+            }
+        }
+        t.revertSales();
     }
 
     private Product getProductFromSelectedShelve() {
-        List<Product> products = shelves.get(getSelectedShelveNumber());
+        ShelveList shelve = shelve(getSelectedShelveNumber());
+        setShelve(getSelectedShelveNumber(), shelve.rest());
 
-        return products.remove(0);
+        return shelve.first();
     }
 
     protected Map<CoinDenomination, Integer> coins() {
         return ImmutableMap.copyOf(coins);
     }
 
-    public Map<Integer, List<Product>> shelves() {
-        return ImmutableMap.copyOf(shelves);
+    /**
+     * @return copy of coins in cash box
+     */
+    public Map<CoinDenomination, Integer> getCashBox() {
+        Map<CoinDenomination, Integer> result = new EnumMap<>(CoinDenomination.class);
+        for (CoinDenomination cd : CoinDenomination.values()) {
+            if (cashBox[cd.ordinal()] > 0) {
+                result.put(cd, cashBox[cd.ordinal()]);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Takes all coins out of cash box.
+     *
+     * @return coins taken out
+     * @throws IllegalStateException when transaction is open
+     */
+    public Map<CoinDenomination, Integer> emptyCashBox() {
+        Preconditions.checkState(!tx.isOpen(), "Cannot empty cash box during transaction");
+
+        Map<CoinDenomination, Integer> emptied = getCashBox();
+        Arrays.fill(cashBox, 0);
+        return emptied;
+    }
+
+    /**
+     * Returns last published version of shelves, which does not change anymore. Snapshot is read without copying
+     * or locking, so it can be read from any thread. Products which expired since last operation of machine can
+     * be still present in snapshot.
+     *
+     * @return snapshot of shelves, map of shelve number to products on shelve
+     */
+    public ShelvesSnapshot shelves() {
+        return shelvesSnapshot;
+    }
+
+    /**
+     * @return numbers of non-empty shelves which next sold product is of passed type
+     */
+    public BitSet shelvesOfType(Enum<?> type) {
+        evictExpiredProducts();
+        return shelveIndex.shelvesOfType(type);
+    }
+
+    /**
+     * @return numbers of non-empty shelves which next sold product costs between passed prices, both inclusive,
+     * before pricing engine and promotions are applied
+     */
+    public BitSet shelvesInPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        evictExpiredProducts();
+        return shelveIndex.shelvesInPriceRange(minPrice, maxPrice);
     }
 
     protected int getNumberOfProductsOnShelve(int shelveNo) {
-        return shelves.get(shelveNo).size();
+        evictExpiredProducts();
+        return shelve(shelveNo).size();
+    }
+
+    /**
+     * Takes all expired products out of machine.
+     *
+     * @return products taken out of sale after they expired
+     */
+    public List<Product> collectExpiredProducts() {
+        evictExpiredProducts();
+        // shared list is still read by other machine, so caller gets its copy
+        List<Product> collected = expiredProductsShared ? Lists.newArrayList(expiredProducts) : expiredProducts;
+        expiredProducts = Lists.newArrayList();
+        expiredProductsShared = false;
+        return collected;
     }
 
     public Product getReturnedProduct() {
         return returnedProduct;
     }
 
+    /**
+     * @return all products returned after last completed transaction
+     */
+    public List<Product> getReturnedProducts() {
+        return returnedProducts;
+    }
+
+    /**
+     * @return copy of coins waiting in coin tray
+     */
     public Map<CoinDenomination, Integer> getReturnedChange() {
-        return returnedChange;
+        return coinTray.snapshot();
+    }
+
+    /**
+     * Takes all coins out of coin tray.
+     *
+     * @return collected coins
+     */
+    public Map<CoinDenomination, Integer> collectReturnedChange() {
+        return coinTray.collect();
+    }
+
+    public CoinTray getCoinTray() {
+        return coinTray;
     }
 
     private void putReturnedChange(Map<CoinDenomination, Integer> returnedChange) {
-        for (Map.Entry<CoinDenomination, Integer> entry : returnedChange.entrySet()) {
-            CoinDenomination cd = entry.getKey();
-            this.returnedChange.put(cd, this.returnedChange.getOrDefault(cd, 0) + entry.getValue());
-        }
+        coinTray.put(returnedChange);
     }
 
     protected Transaction transaction() {
@@ -307,13 +1219,15 @@ public class VendingMachine {
      * Set display message from bundle by passed property key.
      */
     private void setDisplayMessage(String displayMessageKey) {
+        this.displayMessageKey = displayMessageKey;
         display.setMessage(bundle.getString(displayMessageKey));
     }
 
     /**
-     * Set display message exactly as passed arg.
+     * Set display to show passed amount.
      */
-    private void setDisplayMessageExact(String s) {
-        display.setMessage(s);
+    private void setDisplayAmount(BigDecimal amount) {
+        this.displayMessageKey = null;
+        display.setAmount(amount);
     }
 }
@@ -2,6 +2,11 @@ package tdd.vendingMachine;
 
 import com.google.common.base.Preconditions;
 import org.apache.commons.lang3.StringUtils;
+import tdd.vendingMachine.payment.PrepaidLedger;
+import tdd.vendingMachine.pricing.PricingEngine;
+import tdd.vendingMachine.promotions.Promotions;
+
+import java.time.Clock;
 
 /**
  * Vending machine configuration.
@@ -13,15 +18,35 @@ public class VendingMachineConfig {
     private final int maxCoinNumberOfEachTypeInVendingMachine;
     private final int maxProductsOnShelve;
     private final int numberOfShelves;
+    private final int coinTrayCapacity;
     private final String bundle;
+    private final Clock clock;
+    private final PricingEngine pricingEngine;
+    private final Promotions promotions;
+    private final PrepaidLedger prepaidLedger;
+    private final CoinRoutingPolicy coinRoutingPolicy;
+    private final ExpiryWheel expiryWheel;
+    /** True when expiry wheel was chosen for clock instead of set explicitly */
+    private final boolean defaultExpiryWheel;
+    private final MachineEventListener eventListener;
 
     private VendingMachineConfig(Builder builder) {
         Preconditions.checkArgument(!StringUtils.isBlank(builder.bundle));
+        Preconditions.checkNotNull(builder.clock);
 
         this.maxCoinNumberOfEachTypeInVendingMachine = builder.maxCoinNumberOfEachTypeInVendingMachine;
         this.maxProductsOnShelve = builder.maxProductsOnShelve;
         this.numberOfShelves = builder.numberOfShelves;
+        this.coinTrayCapacity = builder.coinTrayCapacity;
         this.bundle = builder.bundle;
+        this.clock = builder.clock;
+        this.pricingEngine = builder.pricingEngine;
+        this.promotions = builder.promotions;
+        this.prepaidLedger = builder.prepaidLedger;
+        this.coinRoutingPolicy = builder.coinRoutingPolicy;
+        this.defaultExpiryWheel = builder.expiryWheel == null;
+        this.expiryWheel = builder.resolveExpiryWheel();
+        this.eventListener = builder.eventListener;
     }
 
     public int getMaxCoinNumberOfEachTypeInVendingMachine() {
@@ -36,16 +61,120 @@ public class VendingMachineConfig {
         return numberOfShelves;
     }
 
+    /**
+     * @return maximum number of coins in coin return tray, unbounded by default
+     */
+    public int getCoinTrayCapacity() {
+        return coinTrayCapacity;
+    }
+
     public String getBundle() {
         return bundle;
     }
 
+    /**
+     * @return source of current time for vending machine, system clock by default
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return engine resolving effective product prices or null if products are sold for their own price
+     */
+    public PricingEngine getPricingEngine() {
+        return pricingEngine;
+    }
+
+    /**
+     * @return promotions applied to effective prices or null if machine runs no promotions
+     */
+    public Promotions getPromotions() {
+        return promotions;
+    }
+
+    /**
+     * @return ledger of prepaid accounts customers can pay from or null if machine accepts coins only
+     */
+    public PrepaidLedger getPrepaidLedger() {
+        return prepaidLedger;
+    }
+
+    /**
+     * @return policy routing inserted coins between change tubes and cash box or null if machine has no cash box
+     * and cancels transaction when tube of inserted coin is full
+     */
+    public CoinRoutingPolicy getCoinRoutingPolicy() {
+        return coinRoutingPolicy;
+    }
+
+    /**
+     * @return timing wheel taking expired products out of sale, by default wheel shared by all machines when
+     * machine runs on system clock and wheel of its own otherwise, see {@link ExpiryWheel#forClock(Clock)}
+     */
+    public ExpiryWheel getExpiryWheel() {
+        return expiryWheel;
+    }
+
+    /**
+     * @return listener of customer events or null if machine is not monitored
+     */
+    public MachineEventListener getEventListener() {
+        return eventListener;
+    }
+
+    /**
+     * @return this configuration if it has no event listener, otherwise its copy without listener
+     */
+    VendingMachineConfig withoutEventListener() {
+        return eventListener == null ? this : new Builder(this).setEventListener(null).build();
+    }
+
     public static class Builder {
 
         private int maxCoinNumberOfEachTypeInVendingMachine = 0;
         private int numberOfShelves = 0;
         private int maxProductsOnShelve = 0;
+        private int coinTrayCapacity = Integer.MAX_VALUE;
         private String bundle;
+        private Clock clock = Clock.systemDefaultZone();
+        private PricingEngine pricingEngine;
+        private Promotions promotions;
+        private PrepaidLedger prepaidLedger;
+        private CoinRoutingPolicy coinRoutingPolicy;
+        private ExpiryWheel expiryWheel;
+        private MachineEventListener eventListener;
+
+        /** Default wheel of copied configuration, kept as long as clock is not changed */
+        private ExpiryWheel copiedDefaultExpiryWheel;
+        private Clock copiedClock;
+
+        public Builder() {
+            // defaults
+        }
+
+        /**
+         * Creates builder initialized with all settings of passed configuration.
+         */
+        public Builder(VendingMachineConfig config) {
+            this.maxCoinNumberOfEachTypeInVendingMachine = config.maxCoinNumberOfEachTypeInVendingMachine;
+            this.numberOfShelves = config.numberOfShelves;
+            this.maxProductsOnShelve = config.maxProductsOnShelve;
+            this.coinTrayCapacity = config.coinTrayCapacity;
+            this.bundle = config.bundle;
+            this.clock = config.clock;
+            this.pricingEngine = config.pricingEngine;
+            this.promotions = config.promotions;
+            this.prepaidLedger = config.prepaidLedger;
+            this.coinRoutingPolicy = config.coinRoutingPolicy;
+            if (config.defaultExpiryWheel) {
+                this.copiedDefaultExpiryWheel = config.expiryWheel;
+                this.copiedClock = config.clock;
+            } else {
+                this.expiryWheel = config.expiryWheel;
+            }
+            this.eventListener = config.eventListener;
+        }
 
         public Builder setMaxCoinNumberOfEachTypeInVendingMachine(int maxCoinNumberOfEachTypeInVendingMachine) {
             this.maxCoinNumberOfEachTypeInVendingMachine = maxCoinNumberOfEachTypeInVendingMachine;
@@ -62,6 +191,11 @@ public class VendingMachineConfig {
             return this;
         }
 
+        public Builder setCoinTrayCapacity(int coinTrayCapacity) {
+            this.coinTrayCapacity = coinTrayCapacity;
+            return this;
+        }
+
         public VendingMachineConfig build() {
             return new VendingMachineConfig(this);
         }
@@ -70,5 +204,58 @@ public class VendingMachineConfig {
             this.bundle = bundle;
             return this;
         }
+
+        public Builder setClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public Builder setPricingEngine(PricingEngine pricingEngine) {
+            this.pricingEngine = pricingEngine;
+            return this;
+        }
+
+        public Builder setPromotions(Promotions promotions) {
+            this.promotions = promotions;
+            return this;
+        }
+
+        public Builder setPrepaidLedger(PrepaidLedger prepaidLedger) {
+            this.prepaidLedger = prepaidLedger;
+            return this;
+        }
+
+        public Builder setCoinRoutingPolicy(CoinRoutingPolicy coinRoutingPolicy) {
+            this.coinRoutingPolicy = coinRoutingPolicy;
+            return this;
+        }
+
+        /**
+         * @param expiryWheel wheel driven by the same clock as machine, null to choose wheel for clock
+         */
+        public Builder setExpiryWheel(ExpiryWheel expiryWheel) {
+            this.expiryWheel = expiryWheel;
+            return this;
+        }
+
+        /**
+         * @param eventListener listener of customer events of one machine, null if machine is not monitored.
+         *                      Machines created from template of machine and forks of machine get configuration
+         *                      without listener, they are monitored once reconfigured with listener of their own.
+         */
+        public Builder setEventListener(MachineEventListener eventListener) {
+            this.eventListener = eventListener;
+            return this;
+        }
+
+        private ExpiryWheel resolveExpiryWheel() {
+            if (expiryWheel != null) {
+                return expiryWheel;
+            }
+            if (copiedDefaultExpiryWheel != null && copiedClock == clock) {
+                return copiedDefaultExpiryWheel;
+            }
+            return ExpiryWheel.forClock(clock);
+        }
     }
 }
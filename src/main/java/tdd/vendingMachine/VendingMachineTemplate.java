@@ -0,0 +1,128 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import tdd.vendingMachine.products.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.TreeMap;
+
+/**
+ * Immutable template of vending machine: configuration, products on shelves and coins for change. Machines created
+ * from template share its persistent shelves and copy its shelve index only when they change it, so stamping out
+ * machine costs the same for any stock and products of template are not cloned. Products are immutable, so sharing
+ * them is safe.
+ *
+ * Template is created by {@link VendingMachine#toTemplate()} and can be used from any thread.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class VendingMachineTemplate {
+
+    private final VendingMachineConfig config;
+
+    private final ResourceBundle bundle;
+
+    /** Occupied shelves, never changed after template is created */
+    private final PersistentIntMap<ShelveList> shelves;
+
+    /** Index of shelves, never changed after template is created */
+    private final ShelveIndex shelveIndex;
+
+    /** Coins for change indexed by coin denomination ordinal */
+    private final int[] coinCounts;
+
+    /** Distinct expiry times of products on shelves in ascending order */
+    private final long[] expiryDeadlines;
+
+    /** Shelves holding products expiring at deadline with the same index */
+    private final int[][] expiringShelves;
+
+    VendingMachineTemplate(VendingMachineConfig config, ResourceBundle bundle, PersistentIntMap<ShelveList> shelves,
+                           ShelveIndex shelveIndex, int[] coinCounts) {
+        Preconditions.checkNotNull(config);
+        Preconditions.checkNotNull(bundle);
+        Preconditions.checkNotNull(shelves);
+        Preconditions.checkNotNull(shelveIndex);
+        Preconditions.checkArgument(coinCounts.length == CoinDenomination.values().length);
+
+        this.config = config;
+        this.bundle = bundle;
+        this.shelves = shelves;
+        this.shelveIndex = shelveIndex;
+        this.coinCounts = coinCounts.clone();
+
+        // groups shelves by expiry of their products once, so machines schedule one timeout per deadline
+        TreeMap<Long, List<Integer>> deadlines = new TreeMap<>();
+        for (int shelveNumber : shelves.keys()) {
+            long last = Long.MIN_VALUE;
+            for (Product product : shelves.get(shelveNumber)) {
+                long expiresAt = product.getExpiresAt();
+                if (expiresAt == Product.NEVER_EXPIRES) {
+                    break;
+                }
+                if (expiresAt != last) {
+                    deadlines.computeIfAbsent(expiresAt, deadline -> new ArrayList<>()).add(shelveNumber);
+                    last = expiresAt;
+                }
+            }
+        }
+        this.expiryDeadlines = new long[deadlines.size()];
+        this.expiringShelves = new int[deadlines.size()][];
+        int i = 0;
+        for (Map.Entry<Long, List<Integer>> entry : deadlines.entrySet()) {
+            expiryDeadlines[i] = entry.getKey();
+            expiringShelves[i] = Ints.toArray(entry.getValue());
+            i++;
+        }
+    }
+
+    /**
+     * @return new machine stocked as template
+     */
+    public VendingMachine newMachine() {
+        return new VendingMachine(this);
+    }
+
+    public VendingMachineConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return products on shelves of template
+     */
+    public ShelvesSnapshot shelves() {
+        return new ShelvesSnapshot(0, shelves, config.getNumberOfShelves());
+    }
+
+    public int getCoinCount(CoinDenomination coinDenomination) {
+        return coinCounts[coinDenomination.ordinal()];
+    }
+
+    ResourceBundle getBundle() {
+        return bundle;
+    }
+
+    PersistentIntMap<ShelveList> getShelves() {
+        return shelves;
+    }
+
+    ShelveIndex getShelveIndex() {
+        return shelveIndex;
+    }
+
+    int getExpiryDeadlineCount() {
+        return expiryDeadlines.length;
+    }
+
+    long getExpiryDeadline(int deadline) {
+        return expiryDeadlines[deadline];
+    }
+
+    int[] getExpiringShelves(int deadline) {
+        return expiringShelves[deadline];
+    }
+}
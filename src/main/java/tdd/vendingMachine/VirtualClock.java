@@ -0,0 +1,84 @@
+package tdd.vendingMachine;
+
+import com.google.common.base.Preconditions;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Clock which time is moved explicitly, used to replay recorded events and to simulate machines faster than
+ * real time. Time can only move forward.
+ *
+ * @author Łukasz Gadawski
+ */
+public class VirtualClock extends Clock {
+
+    private final ZoneId zone;
+
+    private volatile long millis;
+
+    public VirtualClock(long millis, ZoneId zone) {
+        Preconditions.checkNotNull(zone);
+
+        this.millis = millis;
+        this.zone = zone;
+    }
+
+    /**
+     * Moves clock to passed epoch millis.
+     *
+     * @throws IllegalArgumentException if passed time is before current clock time
+     */
+    public void advanceTo(long millis) {
+        Preconditions.checkArgument(millis >= this.millis, "Virtual clock cannot move back: %s", millis);
+        this.millis = millis;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * @return clock in passed zone, which time moves together with this clock
+     */
+    @Override
+    public Clock withZone(ZoneId zone) {
+        if (zone.equals(this.zone)) {
+            return this;
+        }
+        VirtualClock parent = this;
+        return new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return zone;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return parent.withZone(zone);
+            }
+
+            @Override
+            public long millis() {
+                return parent.millis();
+            }
+
+            @Override
+            public Instant instant() {
+                return parent.instant();
+            }
+        };
+    }
+}
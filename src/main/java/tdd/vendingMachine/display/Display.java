@@ -1,23 +1,54 @@
 package tdd.vendingMachine.display;
 
+import java.math.BigDecimal;
+
 /**
  * Represents vending machine display.
  *
+ * Display can show either text message or amount. Amount is converted into text lazily, only when message
+ * is read, so machine operations do not create intermediate strings nobody reads.
+ *
  * @author Łukasz Gadawski
  */
 public class Display {
 
     private String message;
 
+    private BigDecimal amount;
+
     public Display() {
         // empty
     }
 
+    /**
+     * Creates display showing the same as passed one.
+     */
+    public Display(Display source) {
+        this.message = source.message;
+        this.amount = source.amount;
+    }
+
     public void setMessage(String message) {
         this.message = message;
+        this.amount = null;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+        this.message = null;
     }
 
     public String getMessage() {
+        if (message == null && amount != null) {
+            message = String.valueOf(amount);
+        }
         return message;
     }
+
+    /**
+     * @return amount shown on display or null if display shows text message
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
 }
@@ -12,5 +12,8 @@ public interface DisplayMessages {
     String SELECTED_SHELVE_NO_OUT_OF_POSSIBLE_SHELVE_NUMBERS = "selected_shelve_out_of_possible_shelve_number";
     String MAX_MACHINE_COIN_CAPACITY_REACHED = "max_machine_coin_capacity_reached";
     String NO_COINS_TO_RETURN = "no_coins_to_return";
+    String PREPAID_PAYMENT_DECLINED = "prepaid_payment_declined";
+    String COIN_TRAY_FULL = "coin_tray_full";
+    String PRODUCT_TYPE_SOLD_OUT = "product_type_sold_out";
 
 }
@@ -0,0 +1,63 @@
+package tdd.vendingMachine.facade;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executor running tasks one at a time, in order of submission, on threads of shared delegate executor.
+ *
+ * One serial executor should be created per vending machine and shared by all facades of that machine,
+ * so operations on the machine never overlap and keep submission order, while many machines share small
+ * thread pool. Thread is occupied only while task is running, idle machines do not hold any thread.
+ *
+ * @author Łukasz Gadawski
+ */
+public class SerialExecutor implements Executor {
+
+    private final Executor delegate;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /** True when drain task is submitted to delegate executor or running */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public SerialExecutor(Executor delegate) {
+        Preconditions.checkNotNull(delegate);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Preconditions.checkNotNull(task);
+
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                delegate.execute(this::drain);
+            } catch (RuntimeException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+                task.run();
+            }
+        } finally {
+            scheduled.set(false);
+            // task could be added after last poll but before flag was cleared
+            schedule();
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package tdd.vendingMachine.facade.admin;
 
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.RestockPlan;
+import tdd.vendingMachine.RestockReport;
+import tdd.vendingMachine.VendingMachineConfig;
 import tdd.vendingMachine.products.Product;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -23,4 +28,34 @@ public interface AdminVendingMachineFacade {
      *                 values are product type to put on shelve.
      */
     void feedWithProducts(Map<Integer, Product> products);
+
+    /**
+     * Tops up coins and shelves to target levels in one atomic call. Only missing coins and products are added,
+     * nothing is removed.
+     *
+     * @return number of added coins and products
+     */
+    RestockReport restock(RestockPlan plan);
+
+    /**
+     * Takes all coins out of cash box.
+     *
+     * @return coins taken out
+     */
+    Map<CoinDenomination, Integer> emptyCashBox();
+
+    /**
+     * Takes all expired products out of machine.
+     *
+     * @return products taken out of sale after they expired
+     */
+    List<Product> collectExpiredProducts();
+
+    /**
+     * Replaces machine configuration keeping stock and coins. When transaction is open configuration is applied
+     * as soon as transaction closes.
+     *
+     * @return true if configuration was applied, false if it will be applied when current transaction closes
+     */
+    boolean reconfigure(VendingMachineConfig config);
 }
@@ -1,8 +1,13 @@
 package tdd.vendingMachine.facade.admin;
 
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.RestockPlan;
+import tdd.vendingMachine.RestockReport;
 import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.VendingMachineConfig;
 import tdd.vendingMachine.products.Product;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -27,4 +32,24 @@ public class AdminVendingMachineFacadeImpl implements AdminVendingMachineFacade
     public void feedWithProducts(Map<Integer, Product> products) {
         vendingMachine.feedWithProducts(products);
     }
+
+    @Override
+    public RestockReport restock(RestockPlan plan) {
+        return vendingMachine.restock(plan);
+    }
+
+    @Override
+    public Map<CoinDenomination, Integer> emptyCashBox() {
+        return vendingMachine.emptyCashBox();
+    }
+
+    @Override
+    public List<Product> collectExpiredProducts() {
+        return vendingMachine.collectExpiredProducts();
+    }
+
+    @Override
+    public boolean reconfigure(VendingMachineConfig config) {
+        return vendingMachine.reconfigure(config);
+    }
 }
@@ -0,0 +1,49 @@
+package tdd.vendingMachine.facade.admin;
+
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.RestockPlan;
+import tdd.vendingMachine.RestockReport;
+import tdd.vendingMachine.VendingMachineConfig;
+import tdd.vendingMachine.products.Product;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variant of {@link AdminVendingMachineFacade}. Operations are executed in order of calls.
+ *
+ * @author Łukasz Gadawski
+ */
+public interface AsyncAdminVendingMachineFacade {
+
+    /**
+     * @see AdminVendingMachineFacade#feedWithCoinEachType(int)
+     */
+    CompletableFuture<Void> feedWithCoinEachType(int coinNumber);
+
+    /**
+     * @see AdminVendingMachineFacade#feedWithProducts(Map)
+     */
+    CompletableFuture<Void> feedWithProducts(Map<Integer, Product> products);
+
+    /**
+     * @see AdminVendingMachineFacade#restock(RestockPlan)
+     */
+    CompletableFuture<RestockReport> restock(RestockPlan plan);
+
+    /**
+     * @see AdminVendingMachineFacade#emptyCashBox()
+     */
+    CompletableFuture<Map<CoinDenomination, Integer>> emptyCashBox();
+
+    /**
+     * @see AdminVendingMachineFacade#collectExpiredProducts()
+     */
+    CompletableFuture<List<Product>> collectExpiredProducts();
+
+    /**
+     * @see AdminVendingMachineFacade#reconfigure(VendingMachineConfig)
+     */
+    CompletableFuture<Boolean> reconfigure(VendingMachineConfig config);
+}
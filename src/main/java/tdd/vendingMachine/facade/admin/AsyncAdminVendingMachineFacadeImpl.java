@@ -0,0 +1,67 @@
+package tdd.vendingMachine.facade.admin;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.RestockPlan;
+import tdd.vendingMachine.RestockReport;
+import tdd.vendingMachine.VendingMachineConfig;
+import tdd.vendingMachine.facade.SerialExecutor;
+import tdd.vendingMachine.products.Product;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Implementation of asynchronous administration interface, delegating to synchronous facade.
+ *
+ * Passed machine executor must run tasks one at a time in submission order, i.e. {@link SerialExecutor}
+ * shared with all other facades of the same vending machine.
+ *
+ * @author Łukasz Gadawski
+ */
+public class AsyncAdminVendingMachineFacadeImpl implements AsyncAdminVendingMachineFacade {
+
+    private final AdminVendingMachineFacade admin;
+
+    private final Executor machineExecutor;
+
+    public AsyncAdminVendingMachineFacadeImpl(AdminVendingMachineFacade admin, Executor machineExecutor) {
+        Preconditions.checkNotNull(admin);
+        Preconditions.checkNotNull(machineExecutor);
+
+        this.admin = admin;
+        this.machineExecutor = machineExecutor;
+    }
+
+    @Override
+    public CompletableFuture<Void> feedWithCoinEachType(int coinNumber) {
+        return CompletableFuture.runAsync(() -> admin.feedWithCoinEachType(coinNumber), machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> feedWithProducts(Map<Integer, Product> products) {
+        return CompletableFuture.runAsync(() -> admin.feedWithProducts(products), machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<RestockReport> restock(RestockPlan plan) {
+        return CompletableFuture.supplyAsync(() -> admin.restock(plan), machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Map<CoinDenomination, Integer>> emptyCashBox() {
+        return CompletableFuture.supplyAsync(admin::emptyCashBox, machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<List<Product>> collectExpiredProducts() {
+        return CompletableFuture.supplyAsync(admin::collectExpiredProducts, machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> reconfigure(VendingMachineConfig config) {
+        return CompletableFuture.supplyAsync(() -> admin.reconfigure(config), machineExecutor);
+    }
+}
@@ -0,0 +1,54 @@
+package tdd.vendingMachine.facade.user;
+
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.InsertCoinOutcome;
+import tdd.vendingMachine.products.Product;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variant of {@link UserVendingMachineFacade}. Operations are executed in order of calls
+ * and completed futures hold results of corresponding synchronous operations.
+ *
+ * @author Łukasz Gadawski
+ */
+public interface AsyncUserVendingMachineFacade {
+
+    /**
+     * @see UserVendingMachineFacade#selectShelveNumber(int)
+     */
+    CompletableFuture<Product> selectShelveNumber(int selectedShelveNumber);
+
+    /**
+     * @see UserVendingMachineFacade#insertCoin(CoinDenomination)
+     */
+    CompletableFuture<InsertCoinOutcome> insertCoin(CoinDenomination cd);
+
+    /**
+     * @see UserVendingMachineFacade#cancel()
+     */
+    CompletableFuture<Void> cancel();
+
+    CompletableFuture<String> getDisplayMessage();
+
+    CompletableFuture<Integer> getSelectedShelveNumber();
+
+    /**
+     * @see UserVendingMachineFacade#getShelves()
+     */
+    CompletableFuture<Map<Integer, List<Product>>> getShelves();
+
+    CompletableFuture<Product> getReturnedProduct();
+
+    /**
+     * @return copy of returned change taken when operation was executed
+     */
+    CompletableFuture<Map<CoinDenomination, Integer>> getReturnedChange();
+
+    /**
+     * @see UserVendingMachineFacade#execute(PurchaseScript)
+     */
+    CompletableFuture<PurchaseResult> execute(PurchaseScript script);
+}
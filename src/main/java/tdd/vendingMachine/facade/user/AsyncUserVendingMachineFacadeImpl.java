@@ -0,0 +1,80 @@
+package tdd.vendingMachine.facade.user;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.InsertCoinOutcome;
+import tdd.vendingMachine.facade.SerialExecutor;
+import tdd.vendingMachine.products.Product;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Implementation of asynchronous user vending machine facade, delegating to synchronous facade.
+ *
+ * Passed machine executor must run tasks one at a time in submission order, i.e. {@link SerialExecutor}
+ * shared with all other facades of the same vending machine.
+ *
+ * @author Łukasz Gadawski
+ */
+public class AsyncUserVendingMachineFacadeImpl implements AsyncUserVendingMachineFacade {
+
+    private final UserVendingMachineFacade user;
+
+    private final Executor machineExecutor;
+
+    public AsyncUserVendingMachineFacadeImpl(UserVendingMachineFacade user, Executor machineExecutor) {
+        Preconditions.checkNotNull(user);
+        Preconditions.checkNotNull(machineExecutor);
+
+        this.user = user;
+        this.machineExecutor = machineExecutor;
+    }
+
+    @Override
+    public CompletableFuture<Product> selectShelveNumber(int selectedShelveNumber) {
+        return CompletableFuture.supplyAsync(() -> user.selectShelveNumber(selectedShelveNumber), machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<InsertCoinOutcome> insertCoin(CoinDenomination cd) {
+        return CompletableFuture.supplyAsync(() -> user.insertCoin(cd), machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> cancel() {
+        return CompletableFuture.runAsync(user::cancel, machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<String> getDisplayMessage() {
+        return CompletableFuture.supplyAsync(user::getDisplayMessage, machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> getSelectedShelveNumber() {
+        return CompletableFuture.supplyAsync(user::getSelectedShelveNumber, machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, List<Product>>> getShelves() {
+        return CompletableFuture.supplyAsync(user::getShelves, machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Product> getReturnedProduct() {
+        return CompletableFuture.supplyAsync(user::getReturnedProduct, machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Map<CoinDenomination, Integer>> getReturnedChange() {
+        return CompletableFuture.supplyAsync(user::getReturnedChange, machineExecutor);
+    }
+
+    @Override
+    public CompletableFuture<PurchaseResult> execute(PurchaseScript script) {
+        return CompletableFuture.supplyAsync(() -> user.execute(script), machineExecutor);
+    }
+}
@@ -0,0 +1,69 @@
+package tdd.vendingMachine.facade.user;
+
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.products.Product;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Result of executed {@link PurchaseScript}.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class PurchaseResult {
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+
+    private final Product vendedProduct;
+
+    private final int vendedProductsCount;
+
+    /** Number of returned coins indexed by coin denomination ordinal */
+    private final int[] returnedChange;
+
+    private final String displayMessageKey;
+
+    PurchaseResult(Product vendedProduct, int vendedProductsCount, int[] returnedChange, String displayMessageKey) {
+        this.vendedProduct = vendedProduct;
+        this.vendedProductsCount = vendedProductsCount;
+        this.returnedChange = returnedChange;
+        this.displayMessageKey = displayMessageKey;
+    }
+
+    /**
+     * @return last product vended by script or null if script did not complete any purchase
+     */
+    public Product getVendedProduct() {
+        return vendedProduct;
+    }
+
+    public int getVendedProductsCount() {
+        return vendedProductsCount;
+    }
+
+    public int getReturnedCoinCount(CoinDenomination cd) {
+        return returnedChange[cd.ordinal()];
+    }
+
+    /**
+     * @return coins returned while executing script, change as well as refunded coins
+     */
+    public Map<CoinDenomination, Integer> getReturnedChange() {
+        Map<CoinDenomination, Integer> result = new EnumMap<>(CoinDenomination.class);
+        for (CoinDenomination cd : COINS) {
+            if (returnedChange[cd.ordinal()] > 0) {
+                result.put(cd, returnedChange[cd.ordinal()]);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @return bundle key of message displayed after script execution or null if display shows amount
+     */
+    public String getDisplayMessageKey() {
+        return displayMessageKey;
+    }
+}
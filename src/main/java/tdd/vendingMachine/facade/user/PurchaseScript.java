@@ -0,0 +1,152 @@
+package tdd.vendingMachine.facade.user;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.CoinDenomination;
+
+import java.util.Arrays;
+
+/**
+ * Encoded sequence of user operations executed by {@link UserVendingMachineFacade#execute(PurchaseScript)}
+ * in one pass.
+ *
+ * Every operation is encoded as single int. Highest byte holds operation code, lower three bytes
+ * hold operation argument: shelve number for {@link #SELECT_SHELVE}, coin denomination ordinal
+ * for {@link #INSERT_COIN}, nothing for {@link #CANCEL}.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class PurchaseScript {
+
+    public static final int SELECT_SHELVE = 1;
+    public static final int INSERT_COIN = 2;
+    public static final int CANCEL = 3;
+
+    private static final int OPERATION_SHIFT = 24;
+    private static final int ARGUMENT_MASK = (1 << OPERATION_SHIFT) - 1;
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+
+    private final int[] operations;
+
+    private PurchaseScript(int[] operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * Creates script from already encoded operations, i.e. read from recorded customer session.
+     *
+     * @throws IllegalArgumentException when any of operations is not valid
+     */
+    public static PurchaseScript of(int... encodedOperations) {
+        Preconditions.checkNotNull(encodedOperations);
+
+        int[] operations = encodedOperations.clone();
+        for (int operation : operations) {
+            checkOperation(operation);
+        }
+        return new PurchaseScript(operations);
+    }
+
+    public int size() {
+        return operations.length;
+    }
+
+    public int operation(int index) {
+        return operationCode(operations[index]);
+    }
+
+    public int argument(int index) {
+        return operations[index] & ARGUMENT_MASK;
+    }
+
+    public CoinDenomination coin(int index) {
+        Preconditions.checkState(operation(index) == INSERT_COIN);
+        return COINS[argument(index)];
+    }
+
+    /**
+     * @return copy of encoded operations
+     */
+    public int[] encoded() {
+        return operations.clone();
+    }
+
+    public static int encodeSelectShelve(int shelveNumber) {
+        Preconditions.checkArgument(shelveNumber >= 0 && shelveNumber <= ARGUMENT_MASK);
+        return SELECT_SHELVE << OPERATION_SHIFT | shelveNumber;
+    }
+
+    public static int encodeInsertCoin(CoinDenomination cd) {
+        Preconditions.checkNotNull(cd);
+        return INSERT_COIN << OPERATION_SHIFT | cd.ordinal();
+    }
+
+    public static int encodeCancel() {
+        return CANCEL << OPERATION_SHIFT;
+    }
+
+    private static int operationCode(int operation) {
+        return operation >>> OPERATION_SHIFT;
+    }
+
+    private static void checkOperation(int operation) {
+        int argument = operation & ARGUMENT_MASK;
+        switch (operationCode(operation)) {
+            case SELECT_SHELVE:
+                break;
+            case INSERT_COIN:
+                Preconditions.checkArgument(argument < COINS.length, "Unknown coin denomination: %s", argument);
+                break;
+            case CANCEL:
+                Preconditions.checkArgument(argument == 0, "Cancel takes no argument: %s", argument);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PurchaseScript)) return false;
+
+        PurchaseScript that = (PurchaseScript) o;
+
+        return Arrays.equals(operations, that.operations);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(operations);
+    }
+
+    public static class Builder {
+
+        private int[] operations = new int[8];
+        private int size;
+
+        public Builder selectShelve(int shelveNumber) {
+            return add(encodeSelectShelve(shelveNumber));
+        }
+
+        public Builder insertCoin(CoinDenomination cd) {
+            return add(encodeInsertCoin(cd));
+        }
+
+        public Builder cancel() {
+            return add(encodeCancel());
+        }
+
+        private Builder add(int operation) {
+            if (size == operations.length) {
+                operations = Arrays.copyOf(operations, size * 2);
+            }
+            operations[size++] = operation;
+            return this;
+        }
+
+        public PurchaseScript build() {
+            return new PurchaseScript(Arrays.copyOf(operations, size));
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package tdd.vendingMachine.facade.user;
 
+import tdd.vendingMachine.CardPaymentOutcome;
 import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.InsertCoinOutcome;
 import tdd.vendingMachine.products.Product;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 
@@ -23,13 +26,40 @@ public interface UserVendingMachineFacade {
      */
     Product selectShelveNumber(int selectedShelveNumber);
 
+    /**
+     * Selects shelve holding product of passed type, {@link tdd.vendingMachine.products.liquid.LiquidType} or
+     * {@link tdd.vendingMachine.products.snack.SnackType}, for the lowest price. If type is sold out appropriate
+     * message is displayed and selected shelve number is set to default value -1.
+     *
+     * @return product from selected shelve or null if type is sold out
+     */
+    Product selectProductType(Enum<?> type);
+
+    /**
+     * Reserves product from shelve and adds it to basket of transaction. Coins are accepted against total price
+     * of basket and change is returned once, when total is paid.
+     *
+     * @return product added to basket or null if shelve does not exist or is empty
+     */
+    Product addToBasket(int shelveNumber);
+
     /**
      * Inserting coin opening transaction. If before inserting coin there wasn't selected any shelve coin will
      * be put into returnChange collection.
      *
      * @param cd inserted coin denomination
+     * @return outcome of inserting coin, i.e. whether sale was completed or transaction was canceled
      */
-    void insertCoin(CoinDenomination cd);
+    InsertCoinOutcome insertCoin(CoinDenomination cd);
+
+    /**
+     * Pays amount left to buy selected product or basket from prepaid account. Coins inserted before are kept
+     * as partial payment, declined payment leaves transaction as it was.
+     *
+     * @param debitId unique id of payment, payment retried with the same id is debited once
+     * @return outcome of payment
+     */
+    CardPaymentOutcome payFromBalance(String accountId, String debitId);
 
     /**
      * Canceling current transaction if there is any open. If so it cancel transaction, removes inserted coins
@@ -42,6 +72,11 @@ public interface UserVendingMachineFacade {
 
     int getSelectedShelveNumber();
 
+    /**
+     * @return effective price of product on selected shelve or null if there is no selected shelve
+     */
+    BigDecimal getSelectedProductPrice();
+
     /**
      * Readable collection copy of vending machine shelves.
      */
@@ -49,5 +84,28 @@ public interface UserVendingMachineFacade {
 
     Product getReturnedProduct();
 
+    /**
+     * @return all products returned after last completed transaction
+     */
+    List<Product> getReturnedProducts();
+
+    /**
+     * @return copy of coins waiting in coin tray
+     */
     Map<CoinDenomination, Integer> getReturnedChange();
+
+    /**
+     * Takes all coins out of coin tray.
+     *
+     * @return collected coins
+     */
+    Map<CoinDenomination, Integer> collectReturnedChange();
+
+    /**
+     * Executes all operations of passed script in one pass, in the same way as they would be called one by one
+     * by user. Intermediate display messages are not rendered.
+     *
+     * @return product vended, change returned and final display message key of executed script
+     */
+    PurchaseResult execute(PurchaseScript script);
 }
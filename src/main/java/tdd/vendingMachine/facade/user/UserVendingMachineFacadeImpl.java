@@ -1,9 +1,13 @@
 package tdd.vendingMachine.facade.user;
 
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.CardPaymentOutcome;
 import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.InsertCoinOutcome;
 import tdd.vendingMachine.VendingMachine;
 import tdd.vendingMachine.products.Product;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +29,16 @@ public class UserVendingMachineFacadeImpl implements UserVendingMachineFacade {
         return vendingMachine.selectShelveNumber(selectedShelveNumber);
     }
 
+    @Override
+    public Product selectProductType(Enum<?> type) {
+        return vendingMachine.selectProductType(type);
+    }
+
+    @Override
+    public Product addToBasket(int shelveNumber) {
+        return vendingMachine.addToBasket(shelveNumber);
+    }
+
     @Override
     public String getDisplayMessage() {
         return vendingMachine.getDisplayMessage();
@@ -36,8 +50,18 @@ public class UserVendingMachineFacadeImpl implements UserVendingMachineFacade {
     }
 
     @Override
-    public void insertCoin(CoinDenomination cd) {
-        vendingMachine.insertCoin(cd);
+    public BigDecimal getSelectedProductPrice() {
+        return vendingMachine.getSelectedProductPrice();
+    }
+
+    @Override
+    public InsertCoinOutcome insertCoin(CoinDenomination cd) {
+        return vendingMachine.insertCoin(cd);
+    }
+
+    @Override
+    public CardPaymentOutcome payFromBalance(String accountId, String debitId) {
+        return vendingMachine.payFromBalance(accountId, debitId);
     }
 
     @Override
@@ -55,8 +79,60 @@ public class UserVendingMachineFacadeImpl implements UserVendingMachineFacade {
         return vendingMachine.getReturnedProduct();
     }
 
+    @Override
+    public List<Product> getReturnedProducts() {
+        return vendingMachine.getReturnedProducts();
+    }
+
     @Override
     public Map<CoinDenomination, Integer> getReturnedChange() {
         return vendingMachine.getReturnedChange();
     }
+
+    @Override
+    public Map<CoinDenomination, Integer> collectReturnedChange() {
+        return vendingMachine.collectReturnedChange();
+    }
+
+    @Override
+    public PurchaseResult execute(PurchaseScript script) {
+        Preconditions.checkNotNull(script);
+
+        int[] returnedChange = returnedCoinCounts();
+        Product vendedProduct = null;
+        int vendedProductsCount = 0;
+
+        for (int i = 0; i < script.size(); i++) {
+            switch (script.operation(i)) {
+                case PurchaseScript.SELECT_SHELVE:
+                    vendingMachine.selectShelveNumber(script.argument(i));
+                    break;
+                case PurchaseScript.INSERT_COIN:
+                    if (vendingMachine.insertCoin(script.coin(i)) == InsertCoinOutcome.SALE_COMPLETED) {
+                        vendedProduct = vendingMachine.getReturnedProduct();
+                        vendedProductsCount++;
+                    }
+                    break;
+                case PurchaseScript.CANCEL:
+                    vendingMachine.cancel();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation: " + script.operation(i));
+            }
+        }
+
+        int[] returnedAfter = returnedCoinCounts();
+        for (int i = 0; i < returnedChange.length; i++) {
+            returnedChange[i] = returnedAfter[i] - returnedChange[i];
+        }
+
+        return new PurchaseResult(vendedProduct, vendedProductsCount, returnedChange,
+            vendingMachine.getDisplayMessageKey());
+    }
+
+    private int[] returnedCoinCounts() {
+        int[] counts = new int[CoinDenomination.values().length];
+        vendingMachine.getCoinTray().copyCounts(counts);
+        return counts;
+    }
 }
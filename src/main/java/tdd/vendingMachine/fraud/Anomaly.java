@@ -0,0 +1,53 @@
+package tdd.vendingMachine.fraud;
+
+/**
+ * Suspicious pattern of customer events flagged by {@link AnomalyDetector}.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class Anomaly {
+
+    public enum Type {
+
+        /** Too many transactions with inserted coins were canceled instead of completed, i.e. coin swapping */
+        CANCEL_AFTER_INSERT,
+
+        /** Mix of inserted coin denominations moved away from long term mix of machine */
+        COIN_MIX_DRIFT,
+
+        /** Too many readings were rejected by coin acceptor, i.e. slugs inserted in burst */
+        SLUG_BURST
+    }
+
+    private final Type type;
+
+    private final double value;
+
+    private final long epochMillis;
+
+    Anomaly(Type type, double value, long epochMillis) {
+        this.type = type;
+        this.value = value;
+        this.epochMillis = epochMillis;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return statistic which crossed threshold: cancel ratio, coin mix drift or number of rejected readings
+     */
+    public double getValue() {
+        return value;
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + value + ") at " + epochMillis;
+    }
+}
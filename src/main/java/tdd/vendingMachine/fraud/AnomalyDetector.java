@@ -0,0 +1,320 @@
+package tdd.vendingMachine.fraud;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.InsertCoinOutcome;
+import tdd.vendingMachine.MachineEventListener;
+
+import java.util.function.Consumer;
+
+/**
+ * Streaming detector of abuse patterns in customer events of one vending machine: insert then cancel cycles used
+ * to swap coins, drift of inserted coin mix and bursts of slugs rejected by coin acceptor.
+ *
+ * Detector keeps no event history. Sliding window is split into fixed number of time buckets, each holding
+ * counters of its events, and window totals are kept up to date as buckets expire. Long term coin mix of machine
+ * is exponentially weighted average. Memory is therefore fixed by number of buckets and every event costs O(1),
+ * apart from skipping expired buckets. Anomaly is reported once, when statistic crosses its threshold, and again
+ * only after statistic gets back below threshold and crosses it once more.
+ *
+ * Detector is registered with {@link tdd.vendingMachine.VendingMachineConfig.Builder#setEventListener} and is
+ * called by machine thread, it is not thread safe.
+ *
+ * @author Łukasz Gadawski
+ */
+public class AnomalyDetector implements MachineEventListener {
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+
+    // counters of bucket, coins inserted are counted under their coin denomination ordinals
+    private static final int CANCELS = COINS.length;
+    private static final int SALES = CANCELS + 1;
+    private static final int REJECTED = SALES + 1;
+    private static final int COUNTERS = REJECTED + 1;
+
+    private final long bucketMillis;
+
+    private final int buckets;
+
+    /** Counters of buckets, indexed by bucket slot * COUNTERS + counter */
+    private final int[] counts;
+
+    /** Counters of whole window */
+    private final int[] totals = new int[COUNTERS];
+
+    /** Number of latest bucket since epoch */
+    private long currentBucket;
+
+    /** Long term fraction of inserted coins indexed by coin denomination ordinal */
+    private final double[] baselineMix = new double[COINS.length];
+
+    private long baselineCoins;
+
+    /** True while customer has coins inserted in open transaction */
+    private boolean coinsInTransaction;
+
+    /** Anomalies which statistics are above threshold, indexed by anomaly type ordinal */
+    private final boolean[] flagged = new boolean[Anomaly.Type.values().length];
+
+    private final double maxCancelRatio;
+    private final int minCancels;
+    private final double maxCoinMixDrift;
+    private final int minWindowCoins;
+    private final double baselineWeight;
+    private final int baselineWarmUpCoins;
+    private final int maxRejectedCoins;
+
+    private final Consumer<Anomaly> sink;
+
+    private AnomalyDetector(Builder builder) {
+        this.bucketMillis = Math.max(builder.windowMillis / builder.buckets, 1);
+        this.buckets = builder.buckets;
+        this.counts = new int[buckets * COUNTERS];
+        this.maxCancelRatio = builder.maxCancelRatio;
+        this.minCancels = builder.minCancels;
+        this.maxCoinMixDrift = builder.maxCoinMixDrift;
+        this.minWindowCoins = builder.minWindowCoins;
+        this.baselineWeight = builder.baselineWeight;
+        this.baselineWarmUpCoins = builder.baselineWarmUpCoins;
+        this.maxRejectedCoins = builder.maxRejectedCoins;
+        this.sink = builder.sink;
+    }
+
+    @Override
+    public void coinInserted(CoinDenomination cd, InsertCoinOutcome outcome, long epochMillis) {
+        advanceTo(epochMillis);
+        increment(cd.ordinal());
+
+        switch (outcome) {
+            case ACCEPTED:
+                coinsInTransaction = true;
+                break;
+            case SALE_COMPLETED:
+                increment(SALES);
+                coinsInTransaction = false;
+                break;
+            case REJECTED_CAPACITY:
+            case REFUNDED_NO_CHANGE:
+                coinsInTransaction = false;
+                break;
+            default:
+                break;
+        }
+
+        checkCoinMix(epochMillis);
+        learnCoinMix(cd);
+        checkCancelRatio(epochMillis);
+    }
+
+    @Override
+    public void prepaidSaleCompleted(long epochMillis) {
+        advanceTo(epochMillis);
+        increment(SALES);
+        coinsInTransaction = false;
+        checkCancelRatio(epochMillis);
+    }
+
+    @Override
+    public void transactionCanceled(long epochMillis) {
+        advanceTo(epochMillis);
+        if (coinsInTransaction) {
+            increment(CANCELS);
+            coinsInTransaction = false;
+        }
+        checkCancelRatio(epochMillis);
+    }
+
+    @Override
+    public void coinRejected(long epochMillis) {
+        advanceTo(epochMillis);
+        increment(REJECTED);
+        flag(Anomaly.Type.SLUG_BURST, totals[REJECTED] >= maxRejectedCoins, totals[REJECTED], epochMillis);
+    }
+
+    /**
+     * @return fraction of transactions with inserted coins which were canceled within window
+     */
+    public double getCancelRatio() {
+        int finished = totals[CANCELS] + totals[SALES];
+        return finished == 0 ? 0 : (double) totals[CANCELS] / finished;
+    }
+
+    /**
+     * @return total variation distance between coin mix within window and long term coin mix, from 0 to 1
+     */
+    public double getCoinMixDrift() {
+        int windowCoins = windowCoins();
+        if (windowCoins == 0 || baselineCoins == 0) {
+            return 0;
+        }
+        double distance = 0;
+        for (int i = 0; i < COINS.length; i++) {
+            distance += Math.abs((double) totals[i] / windowCoins - baselineMix[i]);
+        }
+        return distance / 2;
+    }
+
+    /**
+     * @return number of readings rejected by coin acceptor within window
+     */
+    public int getRejectedCoins() {
+        return totals[REJECTED];
+    }
+
+    private void checkCancelRatio(long epochMillis) {
+        double ratio = getCancelRatio();
+        flag(Anomaly.Type.CANCEL_AFTER_INSERT, totals[CANCELS] >= minCancels && ratio >= maxCancelRatio, ratio,
+            epochMillis);
+    }
+
+    private void checkCoinMix(long epochMillis) {
+        if (baselineCoins < baselineWarmUpCoins || windowCoins() < minWindowCoins) {
+            flag(Anomaly.Type.COIN_MIX_DRIFT, false, 0, epochMillis);
+            return;
+        }
+        double drift = getCoinMixDrift();
+        flag(Anomaly.Type.COIN_MIX_DRIFT, drift > maxCoinMixDrift, drift, epochMillis);
+    }
+
+    private void learnCoinMix(CoinDenomination cd) {
+        baselineCoins++;
+        // plain average until baseline warms up, so first coins do not dominate it
+        double weight = Math.max(1.0 / baselineCoins, baselineWeight);
+        for (int i = 0; i < COINS.length; i++) {
+            baselineMix[i] += weight * ((i == cd.ordinal() ? 1 : 0) - baselineMix[i]);
+        }
+    }
+
+    private void flag(Anomaly.Type type, boolean anomalous, double value, long epochMillis) {
+        if (anomalous && !flagged[type.ordinal()]) {
+            sink.accept(new Anomaly(type, value, epochMillis));
+        }
+        flagged[type.ordinal()] = anomalous;
+    }
+
+    private int windowCoins() {
+        int coins = 0;
+        for (int i = 0; i < COINS.length; i++) {
+            coins += totals[i];
+        }
+        return coins;
+    }
+
+    private void increment(int counter) {
+        counts[slot(currentBucket) * COUNTERS + counter]++;
+        totals[counter]++;
+    }
+
+    /**
+     * Moves window to passed time, counters of buckets which left window are subtracted from totals. Events
+     * older than latest bucket are counted in latest bucket.
+     */
+    private void advanceTo(long epochMillis) {
+        long bucket = Math.floorDiv(epochMillis, bucketMillis);
+        if (bucket <= currentBucket) {
+            return;
+        }
+        if (bucket - currentBucket >= buckets) {
+            for (int slot = 0; slot < buckets; slot++) {
+                clear(slot);
+            }
+        } else {
+            for (long expired = currentBucket + 1; expired <= bucket; expired++) {
+                clear(slot(expired));
+            }
+        }
+        currentBucket = bucket;
+    }
+
+    private void clear(int slot) {
+        for (int counter = 0; counter < COUNTERS; counter++) {
+            totals[counter] -= counts[slot * COUNTERS + counter];
+            counts[slot * COUNTERS + counter] = 0;
+        }
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) buckets);
+    }
+
+    public static class Builder {
+
+        private long windowMillis = 10 * 60 * 1000;
+        private int buckets = 60;
+        private double maxCancelRatio = 0.5;
+        private int minCancels = 5;
+        private double maxCoinMixDrift = 0.4;
+        private int minWindowCoins = 20;
+        private double baselineWeight = 0.001;
+        private int baselineWarmUpCoins = 200;
+        private int maxRejectedCoins = 5;
+        private Consumer<Anomaly> sink;
+
+        /**
+         * @param windowMillis length of sliding window, 10 minutes by default
+         * @param buckets      number of buckets window is split into, 60 by default
+         */
+        public Builder window(long windowMillis, int buckets) {
+            this.windowMillis = windowMillis;
+            this.buckets = buckets;
+            return this;
+        }
+
+        /**
+         * Flags window where at least minCancels transactions with inserted coins were canceled and they make at
+         * least maxRatio of such transactions, 5 and 0.5 by default.
+         */
+        public Builder cancelAfterInsert(int minCancels, double maxRatio) {
+            this.minCancels = minCancels;
+            this.maxCancelRatio = maxRatio;
+            return this;
+        }
+
+        /**
+         * Flags window with at least minWindowCoins inserted coins which mix is farther than maxDrift from long
+         * term mix, 20 coins and 0.4 by default.
+         */
+        public Builder coinMixDrift(int minWindowCoins, double maxDrift) {
+            this.minWindowCoins = minWindowCoins;
+            this.maxCoinMixDrift = maxDrift;
+            return this;
+        }
+
+        /**
+         * @param warmUpCoins number of coins long term mix is learned from before drift is checked, 200 by default
+         * @param weight      weight of every next coin in long term mix, 0.001 by default
+         */
+        public Builder coinMixBaseline(int warmUpCoins, double weight) {
+            this.baselineWarmUpCoins = warmUpCoins;
+            this.baselineWeight = weight;
+            return this;
+        }
+
+        /**
+         * Flags window with at least passed number of readings rejected by coin acceptor, 5 by default.
+         */
+        public Builder slugBurst(int maxRejectedCoins) {
+            this.maxRejectedCoins = maxRejectedCoins;
+            return this;
+        }
+
+        /**
+         * @param sink receives flagged anomalies, called by machine thread
+         */
+        public Builder onAnomaly(Consumer<Anomaly> sink) {
+            this.sink = sink;
+            return this;
+        }
+
+        public AnomalyDetector build() {
+            Preconditions.checkNotNull(sink);
+            Preconditions.checkArgument(windowMillis > 0 && buckets > 0, "Window and buckets must be positive");
+            Preconditions.checkArgument(minCancels > 0 && minWindowCoins > 0 && maxRejectedCoins > 0,
+                "Minimal counts must be positive");
+            Preconditions.checkArgument(baselineWeight > 0 && baselineWeight <= 1,
+                "Baseline weight must be in (0, 1]: %s", baselineWeight);
+
+            return new AnomalyDetector(this);
+        }
+    }
+}
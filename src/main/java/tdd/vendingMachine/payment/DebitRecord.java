@@ -0,0 +1,94 @@
+package tdd.vendingMachine.payment;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Journaled record of single debit of prepaid account.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class DebitRecord {
+
+    private final long sequence;
+
+    private final String debitId;
+
+    private final String accountId;
+
+    /** Debited amount in hundredths */
+    private final long amount;
+
+    private final DebitStatus status;
+
+    /** Payment debit was made for, null if caller did not pass any */
+    private final String paymentReference;
+
+    /** Account balance in hundredths right after debit, -1 for unknown account */
+    private final long balanceAfter;
+
+    DebitRecord(long sequence, String debitId, String accountId, long amount, DebitStatus status,
+                String paymentReference, long balanceAfter) {
+        this.sequence = sequence;
+        this.debitId = debitId;
+        this.accountId = accountId;
+        this.amount = amount;
+        this.status = status;
+        this.paymentReference = paymentReference;
+        this.balanceAfter = balanceAfter;
+    }
+
+    /**
+     * @return true if debit with passed details is retry of this debit
+     */
+    boolean isRetriedBy(String accountId, long amount, String paymentReference) {
+        return this.accountId.equals(accountId) && this.amount == amount
+            && Objects.equals(this.paymentReference, paymentReference);
+    }
+
+    /**
+     * @return position of record in ledger journal
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getDebitId() {
+        return debitId;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public BigDecimal getAmount() {
+        return PrepaidLedger.toAmount(amount);
+    }
+
+    /**
+     * @return reference of payment debit was made for or null if there is none
+     */
+    public String getPaymentReference() {
+        return paymentReference;
+    }
+
+    public DebitStatus getStatus() {
+        return status;
+    }
+
+    public boolean isApproved() {
+        return status == DebitStatus.APPROVED;
+    }
+
+    /**
+     * @return account balance right after debit or null if account is unknown
+     */
+    public BigDecimal getBalanceAfter() {
+        return balanceAfter < 0 ? null : PrepaidLedger.toAmount(balanceAfter);
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + debitId + " " + accountId + " " + getAmount() + " " + status;
+    }
+}
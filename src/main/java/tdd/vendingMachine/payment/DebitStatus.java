@@ -0,0 +1,21 @@
+package tdd.vendingMachine.payment;
+
+/**
+ * Status of debit of prepaid account.
+ *
+ * @author Łukasz Gadawski
+ */
+public enum DebitStatus {
+
+    /** Amount was taken from account. */
+    APPROVED,
+
+    /** Account balance is lower than debited amount, balance left untouched. */
+    INSUFFICIENT_FUNDS,
+
+    /** Ledger has no account with passed id. */
+    UNKNOWN_ACCOUNT,
+
+    /** Debit id was already approved for other account, amount or payment, balance left untouched. */
+    DUPLICATE
+}
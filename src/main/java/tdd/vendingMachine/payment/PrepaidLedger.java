@@ -0,0 +1,223 @@
+package tdd.vendingMachine.payment;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory ledger of prepaid accounts, i.e. campus cards, shared by many vending machines.
+ *
+ * Balances are kept in hundredths and updated lock free with compare and set, so debits of different accounts
+ * never contend and debits of the same account only retry. Every debit carries id chosen by caller. Approved
+ * debit is remembered by its id, so repeated debit with the same id, account, amount and payment reference, i.e.
+ * retried after lost response, returns the original record instead of taking amount again. Other debit with
+ * the same id is declined as duplicate. Declined debits are not remembered and can be retried after account is
+ * topped up. Only given number of latest approved debits is remembered, so ledger memory does not grow with
+ * number of debits, and id of older debit can be used again.
+ *
+ * Every debit, approved or not, is appended to journal, which keeps records until they are drained.
+ *
+ * @author Łukasz Gadawski
+ */
+public class PrepaidLedger {
+
+    public static final int DEFAULT_REMEMBERED_DEBITS = 100_000;
+
+    private final ConcurrentMap<String, AtomicLong> balances = new ConcurrentHashMap<>();
+
+    private final int rememberedDebits;
+
+    /** Latest approved debits by debit id */
+    private final ConcurrentMap<String, DebitRecord> approvedDebits = new ConcurrentHashMap<>();
+
+    /** Ids of remembered approved debits in order they were approved, oldest one is forgotten first */
+    private final Queue<String> approvedOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger approvedCount = new AtomicInteger();
+
+    /** Journaled debits by sequence */
+    private final ConcurrentNavigableMap<Long, DebitRecord> journal = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    public PrepaidLedger() {
+        this(DEFAULT_REMEMBERED_DEBITS);
+    }
+
+    /**
+     * @param rememberedDebits number of latest approved debits which ids are remembered
+     */
+    public PrepaidLedger(int rememberedDebits) {
+        Preconditions.checkArgument(rememberedDebits > 0, "Remembered debits must be positive: %s",
+            rememberedDebits);
+        this.rememberedDebits = rememberedDebits;
+    }
+
+    /**
+     * Opens account with zero balance, does nothing if account already exists.
+     */
+    public void openAccount(String accountId) {
+        Preconditions.checkNotNull(accountId);
+        balances.putIfAbsent(accountId, new AtomicLong());
+    }
+
+    /**
+     * Tops up account balance.
+     *
+     * @throws IllegalArgumentException when account does not exist or amount is not positive
+     */
+    public void credit(String accountId, BigDecimal amount) {
+        Preconditions.checkArgument(amount.signum() > 0, "Credited amount must be positive: %s", amount);
+        AtomicLong balance = balances.get(accountId);
+        Preconditions.checkArgument(balance != null, "Unknown account %s", accountId);
+
+        balance.addAndGet(toHundredths(amount));
+    }
+
+    /**
+     * @return account balance or null if account does not exist
+     */
+    public BigDecimal balance(String accountId) {
+        AtomicLong balance = balances.get(accountId);
+        return balance == null ? null : toAmount(balance.get());
+    }
+
+    /**
+     * @return true if debit with passed id is remembered as approved
+     */
+    public boolean isDebited(String debitId) {
+        return approvedDebits.containsKey(debitId);
+    }
+
+    /**
+     * Takes amount from account, unless debit with the same id was already approved.
+     *
+     * @param debitId unique id of debit, repeated debits with the same id are applied once
+     * @return record of this debit or record of already approved debit with the same id
+     * @see #debit(String, String, BigDecimal, String)
+     */
+    public DebitRecord debit(String debitId, String accountId, BigDecimal amount) {
+        return debit(debitId, accountId, amount, null);
+    }
+
+    /**
+     * Takes amount from account for passed payment, unless debit with the same id was already approved.
+     *
+     * @param debitId          unique id of debit, repeated debits with the same id are applied once
+     * @param paymentReference payment debit is made for, i.e. transaction of vending machine, debit repeated
+     *                         for other payment is declined as duplicate
+     * @return record of this debit, record of already approved debit with the same id if this debit is its
+     * retry or duplicate record otherwise
+     */
+    public DebitRecord debit(String debitId, String accountId, BigDecimal amount, String paymentReference) {
+        Preconditions.checkNotNull(debitId);
+        Preconditions.checkNotNull(accountId);
+        Preconditions.checkArgument(amount.signum() > 0, "Debited amount must be positive: %s", amount);
+
+        long hundredths = toHundredths(amount);
+        DebitRecord approved = approvedDebits.get(debitId);
+        if (approved == null) {
+            DebitRecord[] applied = new DebitRecord[1];
+            // debit id is locked only while its own debit runs, declined debit is not put into map
+            approved = approvedDebits.computeIfAbsent(debitId, id -> {
+                applied[0] = apply(id, accountId, hundredths, paymentReference);
+                return applied[0].isApproved() ? applied[0] : null;
+            });
+            if (applied[0] != null) {
+                if (applied[0].isApproved()) {
+                    remember(debitId);
+                }
+                return applied[0];
+            }
+        }
+        if (approved.isRetriedBy(accountId, hundredths, paymentReference)) {
+            return approved;
+        }
+        AtomicLong balance = balances.get(accountId);
+        return journal(debitId, accountId, hundredths, DebitStatus.DUPLICATE, paymentReference,
+            balance == null ? -1 : balance.get());
+    }
+
+    private DebitRecord apply(String debitId, String accountId, long amount, String paymentReference) {
+        AtomicLong balance = balances.get(accountId);
+        if (balance == null) {
+            return journal(debitId, accountId, amount, DebitStatus.UNKNOWN_ACCOUNT, paymentReference, -1);
+        }
+
+        long current;
+        do {
+            current = balance.get();
+            if (current < amount) {
+                return journal(debitId, accountId, amount, DebitStatus.INSUFFICIENT_FUNDS, paymentReference,
+                    current);
+            }
+        } while (!balance.compareAndSet(current, current - amount));
+
+        return journal(debitId, accountId, amount, DebitStatus.APPROVED, paymentReference, current - amount);
+    }
+
+    /**
+     * Remembers approved debit id and forgets the oldest one when there are too many of them.
+     */
+    private void remember(String debitId) {
+        approvedOrder.add(debitId);
+        if (approvedCount.incrementAndGet() > rememberedDebits) {
+            String oldest = approvedOrder.poll();
+            if (oldest != null) {
+                approvedDebits.remove(oldest);
+                approvedCount.decrementAndGet();
+            }
+        }
+    }
+
+    private DebitRecord journal(String debitId, String accountId, long amount, DebitStatus status,
+                                String paymentReference, long balanceAfter) {
+        DebitRecord record = new DebitRecord(sequence.incrementAndGet(), debitId, accountId, amount, status,
+            paymentReference, balanceAfter);
+        journal.put(record.getSequence(), record);
+        return record;
+    }
+
+    /**
+     * @return snapshot of journaled debits ordered by sequence
+     */
+    public List<DebitRecord> journal() {
+        return Lists.newArrayList(journal.values());
+    }
+
+    /**
+     * Takes oldest records out of journal, i.e. to persist them.
+     *
+     * @param maxRecords maximal number of drained records
+     * @return drained records ordered by sequence, empty list when journal is empty
+     */
+    public List<DebitRecord> drainJournal(int maxRecords) {
+        Preconditions.checkArgument(maxRecords > 0, "Max records must be positive: %s", maxRecords);
+
+        List<DebitRecord> drained = Lists.newArrayListWithCapacity(Math.min(maxRecords, 1024));
+        Map.Entry<Long, DebitRecord> oldest;
+        while (drained.size() < maxRecords && (oldest = journal.pollFirstEntry()) != null) {
+            drained.add(oldest.getValue());
+        }
+        return drained;
+    }
+
+    static long toHundredths(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+
+    static BigDecimal toAmount(long hundredths) {
+        return BigDecimal.valueOf(hundredths, 2);
+    }
+}
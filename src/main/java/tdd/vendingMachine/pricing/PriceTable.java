@@ -0,0 +1,74 @@
+package tdd.vendingMachine.pricing;
+
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.MinuteOfDay;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Effective prices precomputed from {@link PricingRules} for every shelve and every segment of the day.
+ * Segment is a range of minutes with the same time multiplier, so looking price up costs two array reads.
+ *
+ * Table is immutable and does not depend on time zone, prices are looked up by local minute of day.
+ *
+ * @author Łukasz Gadawski
+ */
+final class PriceTable {
+
+    /** Segment index for every minute of day */
+    private final short[] segmentOfMinute;
+
+    /** Number of shelves in table, shelves with greater numbers are not priced */
+    private final int shelves;
+
+    /** Prices indexed by segment * shelves + shelve number, null for shelves not priced by rules */
+    private final BigDecimal[] prices;
+
+    private PriceTable(short[] segmentOfMinute, int shelves, BigDecimal[] prices) {
+        this.segmentOfMinute = segmentOfMinute;
+        this.shelves = shelves;
+        this.prices = prices;
+    }
+
+    static PriceTable build(PricingRules rules) {
+        short[] segmentOfMinute = new short[MinuteOfDay.MINUTES_PER_DAY];
+        BigDecimal[] segmentMultipliers = new BigDecimal[MinuteOfDay.MINUTES_PER_DAY];
+        int segments = 0;
+        BigDecimal previous = null;
+        for (int minute = 0; minute < MinuteOfDay.MINUTES_PER_DAY; minute++) {
+            BigDecimal multiplier = rules.getTimeMultiplier(minute);
+            if (previous == null || multiplier.compareTo(previous) != 0) {
+                segmentMultipliers[segments++] = multiplier;
+                previous = multiplier;
+            }
+            segmentOfMinute[minute] = (short) (segments - 1);
+        }
+
+        int shelves = 0;
+        for (Integer shelveNumber : rules.getBasePrices().keySet()) {
+            shelves = Math.max(shelves, shelveNumber + 1);
+        }
+
+        BigDecimal[] prices = new BigDecimal[segments * shelves];
+        for (Map.Entry<Integer, BigDecimal> entry : rules.getBasePrices().entrySet()) {
+            BigDecimal demandPrice = entry.getValue().multiply(rules.getDemandMultiplier(entry.getKey()));
+            for (int segment = 0; segment < segments; segment++) {
+                prices[segment * shelves + entry.getKey()] = CoinDenomination.roundToSmallestCoin(
+                    demandPrice.multiply(segmentMultipliers[segment]));
+            }
+        }
+
+        return new PriceTable(segmentOfMinute, shelves, prices);
+    }
+
+    /**
+     * @return effective price or null if shelve is not priced by rules
+     */
+    BigDecimal price(int shelveNumber, int minuteOfDay) {
+        if (shelveNumber < 0 || shelveNumber >= shelves) {
+            return null;
+        }
+        return prices[segmentOfMinute[minuteOfDay] * shelves + shelveNumber];
+    }
+}
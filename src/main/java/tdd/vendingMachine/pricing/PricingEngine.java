@@ -0,0 +1,83 @@
+package tdd.vendingMachine.pricing;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.MinuteOfDay;
+import tdd.vendingMachine.products.Product;
+
+import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Resolves effective price of products on shelves. Prices are looked up in precomputed {@link PriceTable},
+ * which is rebuilt in background whenever rules change and swapped atomically, so purchase path never waits
+ * for rebuild and always sees consistent table. Time of day bands are resolved in local time of passed price
+ * lookup, so they follow daylight saving time changes and clock of machine, also virtual one.
+ *
+ * Engine is thread safe and can be shared by many vending machines with the same pricing.
+ *
+ * @author Łukasz Gadawski
+ */
+public class PricingEngine {
+
+    private final MinuteOfDay minuteOfDay;
+
+    private final Executor rebuildExecutor;
+
+    private volatile PriceTable table;
+
+    /** Version of last submitted rules, prevents older rebuild from replacing newer one */
+    private long submittedVersion;
+
+    private long installedVersion;
+
+    /**
+     * @param rules           initial pricing rules, table for them is built in calling thread
+     * @param zone            time zone of time of day bands
+     * @param rebuildExecutor executor rebuilding tables when rules change
+     */
+    public PricingEngine(PricingRules rules, ZoneId zone, Executor rebuildExecutor) {
+        Preconditions.checkNotNull(rules);
+        Preconditions.checkNotNull(zone);
+        Preconditions.checkNotNull(rebuildExecutor);
+
+        this.minuteOfDay = new MinuteOfDay(zone);
+        this.rebuildExecutor = rebuildExecutor;
+        this.table = PriceTable.build(rules);
+    }
+
+    /**
+     * Rebuilds price table for passed rules in background. Prices from previous rules are used until
+     * rebuild completes.
+     *
+     * @return future completed when new rules are in use
+     */
+    public CompletableFuture<Void> updateRules(PricingRules rules) {
+        Preconditions.checkNotNull(rules);
+
+        long version;
+        synchronized (this) {
+            version = ++submittedVersion;
+        }
+        return CompletableFuture.runAsync(() -> {
+            PriceTable rebuilt = PriceTable.build(rules);
+            synchronized (this) {
+                if (version > installedVersion) {
+                    installedVersion = version;
+                    table = rebuilt;
+                }
+            }
+        }, rebuildExecutor);
+    }
+
+    /**
+     * @param epochMillis time of purchase by clock of machine
+     * @return effective price of product on passed shelve at passed time, product own price if shelve is not
+     * priced by rules
+     */
+    public BigDecimal priceOf(int shelveNumber, Product product, long epochMillis) {
+        BigDecimal price = table.price(shelveNumber, minuteOfDay.of(epochMillis));
+        return price != null ? price : product.getPrice();
+    }
+}
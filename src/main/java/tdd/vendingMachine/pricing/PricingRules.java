@@ -0,0 +1,119 @@
+package tdd.vendingMachine.pricing;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rules resolving effective price of products on shelves. Effective price is base price of shelve multiplied
+ * by multiplier of time of day band and by demand multiplier of shelve.
+ *
+ * Shelves without base price are not priced by rules, product own price is used for them.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class PricingRules {
+
+    private final Map<Integer, BigDecimal> basePrices;
+
+    private final List<TimeBand> timeBands;
+
+    private final Map<Integer, BigDecimal> demandMultipliers;
+
+    private PricingRules(Builder builder) {
+        this.basePrices = ImmutableMap.copyOf(builder.basePrices);
+        this.timeBands = ImmutableList.copyOf(builder.timeBands);
+        this.demandMultipliers = ImmutableMap.copyOf(builder.demandMultipliers);
+    }
+
+    Map<Integer, BigDecimal> getBasePrices() {
+        return basePrices;
+    }
+
+    BigDecimal getDemandMultiplier(int shelveNumber) {
+        return demandMultipliers.getOrDefault(shelveNumber, BigDecimal.ONE);
+    }
+
+    /**
+     * @return multiplier of last band containing passed minute of day, one if there is no such band
+     */
+    BigDecimal getTimeMultiplier(int minuteOfDay) {
+        BigDecimal multiplier = BigDecimal.ONE;
+        for (TimeBand band : timeBands) {
+            if (band.contains(minuteOfDay)) {
+                multiplier = band.multiplier;
+            }
+        }
+        return multiplier;
+    }
+
+    private static final class TimeBand {
+
+        private final int fromMinute;
+        private final int toMinute;
+        private final BigDecimal multiplier;
+
+        private TimeBand(int fromMinute, int toMinute, BigDecimal multiplier) {
+            this.fromMinute = fromMinute;
+            this.toMinute = toMinute;
+            this.multiplier = multiplier;
+        }
+
+        private boolean contains(int minuteOfDay) {
+            if (fromMinute <= toMinute) {
+                return minuteOfDay >= fromMinute && minuteOfDay < toMinute;
+            }
+            // band crossing midnight
+            return minuteOfDay >= fromMinute || minuteOfDay < toMinute;
+        }
+    }
+
+    public static class Builder {
+
+        private final Map<Integer, BigDecimal> basePrices = Maps.newHashMap();
+        private final List<TimeBand> timeBands = Lists.newArrayList();
+        private final Map<Integer, BigDecimal> demandMultipliers = Maps.newHashMap();
+
+        public Builder basePrice(int shelveNumber, BigDecimal price) {
+            Preconditions.checkArgument(shelveNumber >= 0);
+            Preconditions.checkArgument(price.signum() > 0);
+
+            basePrices.put(shelveNumber, price);
+            return this;
+        }
+
+        /**
+         * Adds time of day band, from inclusive and to exclusive. Band with to before from crosses midnight.
+         * When bands overlap, band added later wins.
+         */
+        public Builder timeBand(LocalTime from, LocalTime to, BigDecimal multiplier) {
+            Preconditions.checkArgument(!from.equals(to));
+            Preconditions.checkArgument(multiplier.signum() > 0);
+
+            timeBands.add(new TimeBand(minuteOfDay(from), minuteOfDay(to), multiplier));
+            return this;
+        }
+
+        public Builder demandMultiplier(int shelveNumber, BigDecimal multiplier) {
+            Preconditions.checkArgument(multiplier.signum() > 0);
+
+            demandMultipliers.put(shelveNumber, multiplier);
+            return this;
+        }
+
+        public PricingRules build() {
+            return new PricingRules(this);
+        }
+
+        private static int minuteOfDay(LocalTime time) {
+            return time.getHour() * 60 + time.getMinute();
+        }
+    }
+}
@@ -8,16 +8,50 @@ import java.math.BigDecimal;
  */
 public abstract class Product implements Serializable {
 
+    /** Expiry of products which can be sold for unlimited time */
+    public static final long NEVER_EXPIRES = Long.MAX_VALUE;
+
     private final BigDecimal price;
 
+    /** Epoch millis since which product cannot be sold. Expiry is attribute of batch, not part of equality. */
+    private final long expiresAt;
+
     public Product(BigDecimal price) {
+        this(price, NEVER_EXPIRES);
+    }
+
+    public Product(BigDecimal price, long expiresAt) {
         this.price = price;
+        this.expiresAt = expiresAt;
     }
 
     public BigDecimal getPrice() {
         return price;
     }
 
+    /**
+     * @return epoch millis since which product cannot be sold or {@link #NEVER_EXPIRES}
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpiredAt(long epochMillis) {
+        return epochMillis >= expiresAt;
+    }
+
+    public abstract ProductCategory getCategory();
+
+    /**
+     * @return product type, one of types of product category
+     */
+    public abstract Enum<?> getType();
+
+    /**
+     * @return size of product in unit of its category, capacity of liquids and weight of snacks
+     */
+    public abstract double getMeasure();
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,111 @@
+package tdd.vendingMachine.products;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.products.liquid.LiquidType;
+import tdd.vendingMachine.products.snack.SnackType;
+
+/**
+ * Category of products together with product types belonging to it.
+ *
+ * Every product type of every category has its own index, dense from 0 to {@link #typeCount()}, so per type
+ * data can be kept in arrays.
+ *
+ * @author Łukasz Gadawski
+ */
+public enum ProductCategory {
+
+    LIQUID(LiquidType.class),
+    SNACK(SnackType.class);
+
+    private final Class<? extends Enum<?>> typeClass;
+
+    private final Enum<?>[] types;
+
+    /** Index of first type of this category */
+    private int typeOffset;
+
+    private static final ProductCategory[] CATEGORIES = values();
+
+    private static final int TYPE_COUNT;
+
+    static {
+        int offset = 0;
+        for (ProductCategory category : CATEGORIES) {
+            category.typeOffset = offset;
+            offset += category.types.length;
+        }
+        TYPE_COUNT = offset;
+    }
+
+    ProductCategory(Class<? extends Enum<?>> typeClass) {
+        this.typeClass = typeClass;
+        this.types = typeClass.getEnumConstants();
+    }
+
+    /**
+     * @return index of first product type of this category
+     */
+    public int firstTypeIndex() {
+        return typeOffset;
+    }
+
+    /**
+     * @return index following index of last product type of this category
+     */
+    public int endTypeIndex() {
+        return typeOffset + types.length;
+    }
+
+    /**
+     * @return number of product types of all categories
+     */
+    public static int typeCount() {
+        return TYPE_COUNT;
+    }
+
+    /**
+     * @return index of product type, unique among types of all categories
+     */
+    public static int typeIndex(Enum<?> type) {
+        return of(type).typeOffset + type.ordinal();
+    }
+
+    /**
+     * @return category of product type
+     */
+    public static ProductCategory of(Enum<?> type) {
+        Preconditions.checkNotNull(type);
+        for (ProductCategory category : CATEGORIES) {
+            if (category.typeClass == type.getDeclaringClass()) {
+                return category;
+            }
+        }
+        throw new IllegalArgumentException("Unknown product type " + type);
+    }
+
+    /**
+     * @return product type of passed index
+     */
+    public static Enum<?> typeOfIndex(int index) {
+        for (ProductCategory category : CATEGORIES) {
+            if (index >= category.typeOffset && index < category.typeOffset + category.types.length) {
+                return category.types[index - category.typeOffset];
+            }
+        }
+        throw new IllegalArgumentException("Unknown product type index " + index);
+    }
+
+    /**
+     * @return product type of any category with passed name or null if there is no such type
+     */
+    public static Enum<?> typeOf(String name) {
+        for (ProductCategory category : CATEGORIES) {
+            for (Enum<?> type : category.types) {
+                if (type.name().equals(name)) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+}
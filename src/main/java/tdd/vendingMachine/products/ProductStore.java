@@ -0,0 +1,185 @@
+package tdd.vendingMachine.products;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+import tdd.vendingMachine.products.snack.Snack;
+import tdd.vendingMachine.products.snack.SnackType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Columnar store of products of large catalogs, i.e. products of whole fleet. Every product attribute is kept
+ * in its own primitive array indexed by product id, so queries scan contiguous memory instead of following
+ * references to product objects and their boxed prices.
+ *
+ * Products are read through {@link View}, lightweight cursor which can be moved over many products without
+ * allocating. {@link #product(int)} builds ordinary {@link Product} when one is needed, i.e. to put it on shelve.
+ *
+ * Store is not thread safe for adding products, queries can run concurrently once store is loaded.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class ProductStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int size;
+
+    /** Prices in hundredths */
+    private long[] prices;
+
+    /** Product type indexes, see {@link ProductCategory#typeIndex(Enum)} */
+    private short[] types;
+
+    /** Capacities of liquids and weights of snacks */
+    private double[] measures;
+
+    public ProductStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public ProductStore(int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0);
+
+        int capacity = Math.max(expectedSize, 1);
+        this.prices = new long[capacity];
+        this.types = new short[capacity];
+        this.measures = new double[capacity];
+    }
+
+    /**
+     * @return id of added product
+     */
+    public int add(Product product) {
+        Preconditions.checkNotNull(product);
+
+        if (size == prices.length) {
+            int capacity = size * 2;
+            prices = Arrays.copyOf(prices, capacity);
+            types = Arrays.copyOf(types, capacity);
+            measures = Arrays.copyOf(measures, capacity);
+        }
+        prices[size] = product.getPrice().movePointRight(2).longValueExact();
+        types[size] = (short) ProductCategory.typeIndex(product.getType());
+        measures[size] = product.getMeasure();
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return cursor positioned at first product
+     */
+    public View view() {
+        return new View();
+    }
+
+    /**
+     * @return product object built from stored attributes, price has scale of two decimal places
+     */
+    public Product product(int id) {
+        checkId(id);
+
+        BigDecimal price = BigDecimal.valueOf(prices[id], 2);
+        Enum<?> type = ProductCategory.typeOfIndex(types[id]);
+        switch (ProductCategory.of(type)) {
+            case LIQUID:
+                return new Liquid.Builder().type((LiquidType) type).price(price).capacity(measures[id]).build();
+            case SNACK:
+                return new Snack.Builder().type((SnackType) type).price(price).weight(measures[id]).build();
+            default:
+                throw new IllegalStateException("Unknown product category of " + type);
+        }
+    }
+
+    /**
+     * @return ids of products of passed category cheaper than passed price, in ascending order
+     */
+    public int[] cheaperThan(ProductCategory category, BigDecimal price) {
+        long maxPrice = price.movePointRight(2).setScale(0, RoundingMode.CEILING).longValueExact();
+        int fromType = category.firstTypeIndex();
+        int toType = category.endTypeIndex();
+
+        int[] result = new int[16];
+        int found = 0;
+        for (int id = 0; id < size; id++) {
+            if (prices[id] < maxPrice && types[id] >= fromType && types[id] < toType) {
+                if (found == result.length) {
+                    result = Arrays.copyOf(result, found * 2);
+                }
+                result[found++] = id;
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
+
+    /**
+     * @return number of products of passed type
+     */
+    public int count(Enum<?> type) {
+        short typeIndex = (short) ProductCategory.typeIndex(type);
+        int count = 0;
+        for (int id = 0; id < size; id++) {
+            if (types[id] == typeIndex) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void checkId(int id) {
+        Preconditions.checkElementIndex(id, size);
+    }
+
+    /**
+     * Cursor reading attributes of one stored product at a time.
+     */
+    public final class View {
+
+        private int id;
+
+        private View() {
+        }
+
+        /**
+         * Moves cursor to product of passed id.
+         */
+        public View moveTo(int id) {
+            checkId(id);
+            this.id = id;
+            return this;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return price in hundredths
+         */
+        public long getPriceMinor() {
+            return prices[id];
+        }
+
+        public BigDecimal getPrice() {
+            return BigDecimal.valueOf(prices[id], 2);
+        }
+
+        public Enum<?> getType() {
+            return ProductCategory.typeOfIndex(types[id]);
+        }
+
+        public ProductCategory getCategory() {
+            return ProductCategory.of(getType());
+        }
+
+        public double getMeasure() {
+            return measures[id];
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package tdd.vendingMachine.products.liquid;
 
 import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.ProductCategory;
 
 import java.math.BigDecimal;
 
@@ -13,7 +14,7 @@ public class Liquid extends Product {
     private final double capacity;
 
     private Liquid(Builder builder) {
-        super(builder.price);
+        super(builder.price, builder.expiresAt);
         this.type = builder.type;
         this.capacity = builder.capacity;
     }
@@ -22,15 +23,27 @@ public class Liquid extends Product {
         return capacity;
     }
 
+    @Override
+    public double getMeasure() {
+        return capacity;
+    }
+
+    @Override
     public LiquidType getType() {
         return type;
     }
 
+    @Override
+    public ProductCategory getCategory() {
+        return ProductCategory.LIQUID;
+    }
+
     public static class Builder {
 
         private LiquidType type;
         private BigDecimal price;
         private double capacity;
+        private long expiresAt = NEVER_EXPIRES;
 
         public Builder type(LiquidType type) {
             this.type = type;
@@ -47,6 +60,14 @@ public class Liquid extends Product {
             return this;
         }
 
+        /**
+         * Sets epoch millis since which product cannot be sold, products never expire by default.
+         */
+        public Builder expiresAt(long expiresAt) {
+            this.expiresAt = expiresAt;
+            return this;
+        }
+
         public Product build() {
             return new Liquid(this);
         }
@@ -1,6 +1,7 @@
 package tdd.vendingMachine.products.snack;
 
 import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.ProductCategory;
 
 import java.math.BigDecimal;
 
@@ -13,7 +14,7 @@ public class Snack extends Product {
     private final SnackType snackType;
 
     private Snack(Builder builder) {
-        super(builder.price);
+        super(builder.price, builder.expiresAt);
         this.weight = builder.weight;
         this.snackType = builder.type;
     }
@@ -26,11 +27,27 @@ public class Snack extends Product {
         return snackType;
     }
 
+    @Override
+    public double getMeasure() {
+        return weight;
+    }
+
+    @Override
+    public SnackType getType() {
+        return snackType;
+    }
+
+    @Override
+    public ProductCategory getCategory() {
+        return ProductCategory.SNACK;
+    }
+
     public static class Builder {
 
         private SnackType type;
         private BigDecimal price;
         private double weight;
+        private long expiresAt = NEVER_EXPIRES;
 
         public Builder type(SnackType type) {
             this.type = type;
@@ -47,6 +64,14 @@ public class Snack extends Product {
             return this;
         }
 
+        /**
+         * Sets epoch millis since which product cannot be sold, products never expire by default.
+         */
+        public Builder expiresAt(long expiresAt) {
+            this.expiresAt = expiresAt;
+            return this;
+        }
+
         public Product build() {
             return new Snack(this);
         }
@@ -0,0 +1,211 @@
+package tdd.vendingMachine.promotions;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.MinuteOfDay;
+import tdd.vendingMachine.products.ProductCategory;
+
+/**
+ * Single promotion rule: percent discount for products of target, optionally limited to time of day window
+ * and to n-th item of target bought within one customer session.
+ *
+ * Rules are interpreted directly only when {@link Promotions} table is compiled, purchase path uses
+ * compiled table.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class PromotionRule {
+
+    /** Which products rule applies to */
+    public enum Scope {
+        ANY,
+        CATEGORY,
+        TYPE
+    }
+
+    private final int percent;
+
+    private final Scope scope;
+
+    /** Target category, null for {@link Scope#ANY} */
+    private final ProductCategory category;
+
+    /** Target product type, null unless {@link Scope#TYPE} */
+    private final Enum<?> type;
+
+    /** Time window, from inclusive and to exclusive, both -1 when rule is active all day */
+    private final int fromMinute;
+    private final int toMinute;
+
+    /** Number of item of target in session rule applies to, 0 when rule applies to every item */
+    private final int item;
+
+    private PromotionRule(Builder builder) {
+        this.percent = builder.percent;
+        this.scope = builder.scope;
+        this.category = builder.category;
+        this.type = builder.type;
+        this.fromMinute = builder.fromMinute;
+        this.toMinute = builder.toMinute;
+        this.item = builder.item;
+    }
+
+    public int getPercent() {
+        return percent;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public int getItem() {
+        return item;
+    }
+
+    /**
+     * @return true if rule is active in passed minute of day
+     */
+    public boolean isActiveAt(int minuteOfDay) {
+        if (fromMinute == -1) {
+            return true;
+        }
+        if (fromMinute <= toMinute) {
+            return minuteOfDay >= fromMinute && minuteOfDay < toMinute;
+        }
+        // window crossing midnight
+        return minuteOfDay >= fromMinute || minuteOfDay < toMinute;
+    }
+
+    /**
+     * @return true if rule targets products of passed type
+     */
+    public boolean targets(Enum<?> productType) {
+        switch (scope) {
+            case ANY:
+                return true;
+            case CATEGORY:
+                return ProductCategory.of(productType) == category;
+            default:
+                return type == productType;
+        }
+    }
+
+    /**
+     * Interprets rule for single purchase.
+     *
+     * @param priorOfType     number of products of the same type already bought in session
+     * @param priorOfCategory number of products of the same category already bought in session
+     * @param priorAll        number of all products already bought in session
+     */
+    public boolean matches(int minuteOfDay, Enum<?> productType, int priorOfType, int priorOfCategory,
+                           int priorAll) {
+        return isActiveAt(minuteOfDay) && matchesItem(productType, priorOfType, priorOfCategory, priorAll);
+    }
+
+    /**
+     * Same as {@link #matches(int, Enum, int, int, int)}, but ignoring time window.
+     */
+    public boolean matchesItem(Enum<?> productType, int priorOfType, int priorOfCategory, int priorAll) {
+        if (!targets(productType)) {
+            return false;
+        }
+        if (item == 0) {
+            return true;
+        }
+        switch (scope) {
+            case ANY:
+                return priorAll + 1 == item;
+            case CATEGORY:
+                return priorOfCategory + 1 == item;
+            default:
+                return priorOfType + 1 == item;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(percent).append("% off ");
+        sb.append(scope == Scope.ANY ? "ANY" : scope == Scope.CATEGORY ? category.name() : type.name());
+        if (fromMinute != -1) {
+            sb.append(" between ").append(time(fromMinute)).append(" and ").append(time(toMinute));
+        }
+        if (item != 0) {
+            sb.append(" on item ").append(item).append(" in session");
+        }
+        return sb.toString();
+    }
+
+    private static String time(int minuteOfDay) {
+        return String.format("%02d:%02d", minuteOfDay / 60, minuteOfDay % 60);
+    }
+
+    public static class Builder {
+
+        private int percent;
+        private Scope scope = Scope.ANY;
+        private ProductCategory category;
+        private Enum<?> type;
+        private int fromMinute = -1;
+        private int toMinute = -1;
+        private int item;
+
+        /**
+         * @param percent discount from 1 to 99%, products are never free, since discounted price is rounded to
+         *                at least smallest coin machine accepts
+         */
+        public Builder percent(int percent) {
+            Preconditions.checkArgument(percent > 0 && percent < 100, "Discount must be 1-99 percent: %s", percent);
+            this.percent = percent;
+            return this;
+        }
+
+        public Builder anyProduct() {
+            this.scope = Scope.ANY;
+            this.category = null;
+            this.type = null;
+            return this;
+        }
+
+        public Builder category(ProductCategory category) {
+            Preconditions.checkNotNull(category);
+            this.scope = Scope.CATEGORY;
+            this.category = category;
+            this.type = null;
+            return this;
+        }
+
+        public Builder type(Enum<?> type) {
+            this.scope = Scope.TYPE;
+            this.category = ProductCategory.of(type);
+            this.type = type;
+            return this;
+        }
+
+        /**
+         * Limits rule to time of day window, from inclusive and to exclusive. Window with to before from
+         * crosses midnight.
+         */
+        public Builder between(int fromMinuteOfDay, int toMinuteOfDay) {
+            Preconditions.checkArgument(fromMinuteOfDay >= 0 && fromMinuteOfDay < MinuteOfDay.MINUTES_PER_DAY);
+            Preconditions.checkArgument(toMinuteOfDay >= 0 && toMinuteOfDay < MinuteOfDay.MINUTES_PER_DAY);
+            Preconditions.checkArgument(fromMinuteOfDay != toMinuteOfDay, "Empty time window");
+            this.fromMinute = fromMinuteOfDay;
+            this.toMinute = toMinuteOfDay;
+            return this;
+        }
+
+        /**
+         * Limits rule to n-th item of rule target bought within one customer session.
+         */
+        public Builder onItem(int item) {
+            Preconditions.checkArgument(item > 0, "Item number must be positive: %s", item);
+            this.item = item;
+            return this;
+        }
+
+        public PromotionRule build() {
+            Preconditions.checkState(percent > 0, "Discount percent not set");
+            return new PromotionRule(this);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package tdd.vendingMachine.promotions;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import tdd.vendingMachine.products.ProductCategory;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses promotion rules written one per line:
+ * <pre>
+ * # comment
+ * 10% off COKE between 14:00 and 16:00
+ * 50% off SNACK on item 2 in session
+ * 5% off ANY
+ * </pre>
+ * Target is ANY, name of {@link ProductCategory} or name of product type.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class PromotionRuleParser {
+
+    private static final Pattern RULE = Pattern.compile(
+        "(\\d{1,3})%\\s+off\\s+(\\w+)"
+            + "(?:\\s+between\\s+(\\d{1,2}):(\\d{2})\\s+and\\s+(\\d{1,2}):(\\d{2}))?"
+            + "(?:\\s+on\\s+item\\s+(\\d+)\\s+in\\s+session)?");
+
+    private PromotionRuleParser() {
+    }
+
+    /**
+     * @throws IllegalArgumentException when any line is not valid rule, message contains line number
+     */
+    public static List<PromotionRule> parse(String text) {
+        Preconditions.checkNotNull(text);
+
+        List<PromotionRule> rules = Lists.newArrayList();
+        String[] lines = text.split("\\r?\\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                rules.add(parseRule(line));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                throw new IllegalArgumentException("Invalid promotion rule at line " + (i + 1) + ": " + line, e);
+            }
+        }
+        return rules;
+    }
+
+    private static PromotionRule parseRule(String line) {
+        Matcher matcher = RULE.matcher(line);
+        Preconditions.checkArgument(matcher.matches(), "Unrecognized rule");
+
+        PromotionRule.Builder builder = new PromotionRule.Builder()
+            .percent(Integer.parseInt(matcher.group(1)));
+
+        String target = matcher.group(2);
+        if ("ANY".equals(target)) {
+            builder.anyProduct();
+        } else if (isCategory(target)) {
+            builder.category(ProductCategory.valueOf(target));
+        } else {
+            Enum<?> type = ProductCategory.typeOf(target);
+            Preconditions.checkArgument(type != null, "Unknown target: %s", target);
+            builder.type(type);
+        }
+
+        if (matcher.group(3) != null) {
+            builder.between(minuteOfDay(matcher.group(3), matcher.group(4)),
+                minuteOfDay(matcher.group(5), matcher.group(6)));
+        }
+        if (matcher.group(7) != null) {
+            builder.onItem(Integer.parseInt(matcher.group(7)));
+        }
+        return builder.build();
+    }
+
+    private static boolean isCategory(String name) {
+        for (ProductCategory category : ProductCategory.values()) {
+            if (category.name().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int minuteOfDay(String hour, String minute) {
+        int h = Integer.parseInt(hour);
+        int m = Integer.parseInt(minute);
+        Preconditions.checkArgument(h < 24 && m < 60, "Invalid time %s:%s", hour, minute);
+        return h * 60 + m;
+    }
+}
@@ -0,0 +1,89 @@
+package tdd.vendingMachine.promotions;
+
+import tdd.vendingMachine.products.ProductCategory;
+
+import java.util.Arrays;
+
+/**
+ * Products bought by single customer session. Session ends when no product is bought for longer than session
+ * timeout of {@link Promotions}.
+ *
+ * Session is not thread safe, it is owned by single vending machine.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class PromotionSession {
+
+    /** Bought products indexed by product type index */
+    private final int[] typeCounts = new int[ProductCategory.typeCount()];
+
+    /** Bought products indexed by category ordinal */
+    private final int[] categoryCounts = new int[ProductCategory.values().length];
+
+    private int count;
+
+    private long lastSaleMillis;
+
+    public PromotionSession() {
+        // empty
+    }
+
+    private PromotionSession(PromotionSession source) {
+        System.arraycopy(source.typeCounts, 0, typeCounts, 0, typeCounts.length);
+        System.arraycopy(source.categoryCounts, 0, categoryCounts, 0, categoryCounts.length);
+        this.count = source.count;
+        this.lastSaleMillis = source.lastSaleMillis;
+    }
+
+    /**
+     * @return independent copy of session
+     */
+    public PromotionSession copy() {
+        return new PromotionSession(this);
+    }
+
+    /**
+     * Starts new session if last sale was longer than timeout before passed time.
+     */
+    public void expireIfIdle(long epochMillis, long timeoutMillis) {
+        if (count > 0 && epochMillis - lastSaleMillis > timeoutMillis) {
+            Arrays.fill(typeCounts, 0);
+            Arrays.fill(categoryCounts, 0);
+            count = 0;
+        }
+    }
+
+    public void recordSale(Enum<?> productType, long epochMillis) {
+        typeCounts[ProductCategory.typeIndex(productType)]++;
+        categoryCounts[ProductCategory.of(productType).ordinal()]++;
+        count++;
+        lastSaleMillis = epochMillis;
+    }
+
+    /**
+     * Removes product recorded by {@link #recordSale(Enum, long)}, when its sale did not complete.
+     */
+    public void revertSale(Enum<?> productType) {
+        int typeIndex = ProductCategory.typeIndex(productType);
+        if (typeCounts[typeIndex] > 0) {
+            typeCounts[typeIndex]--;
+            categoryCounts[ProductCategory.of(productType).ordinal()]--;
+            count--;
+        }
+    }
+
+    public int countOfType(int typeIndex) {
+        return typeCounts[typeIndex];
+    }
+
+    public int countOfCategory(ProductCategory category) {
+        return categoryCounts[category.ordinal()];
+    }
+
+    /**
+     * @return number of all products bought in session
+     */
+    public int count() {
+        return count;
+    }
+}
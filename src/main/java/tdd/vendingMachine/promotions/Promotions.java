@@ -0,0 +1,181 @@
+package tdd.vendingMachine.promotions;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.MinuteOfDay;
+import tdd.vendingMachine.products.ProductCategory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Promotion rules compiled into decision table. Table holds best discount for every combination of day segment,
+ * product type and numbers of products already bought in customer session, so evaluating promotions at purchase
+ * time costs a few array reads, regardless of number of rules.
+ *
+ * Day segment is a range of minutes with the same set of active rules. Session counts are clamped to highest
+ * item number used by rules, since rules cannot tell apart greater counts. When more rules match, the highest
+ * discount wins, discounts do not stack.
+ *
+ * Table is immutable and can be shared by many vending machines. Time windows are resolved in local time
+ * of evaluated purchase, so they follow daylight saving time changes.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class Promotions {
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final List<PromotionRule> rules;
+
+    private final long sessionTimeoutMillis;
+
+    private final MinuteOfDay minuteOfDay;
+
+    /** Segment index for every minute of day */
+    private final short[] segmentOfMinute;
+
+    /** Sizes of session count dimensions: same type, same category and all products */
+    private final int typeDim;
+    private final int categoryDim;
+    private final int allDim;
+
+    /** Discount percents indexed by segment, type index and clamped session counts */
+    private final byte[] discounts;
+
+    private Promotions(List<PromotionRule> rules, long sessionTimeoutMillis, MinuteOfDay minuteOfDay,
+                       short[] segmentOfMinute, int typeDim, int categoryDim, int allDim, byte[] discounts) {
+        this.rules = rules;
+        this.sessionTimeoutMillis = sessionTimeoutMillis;
+        this.minuteOfDay = minuteOfDay;
+        this.segmentOfMinute = segmentOfMinute;
+        this.typeDim = typeDim;
+        this.categoryDim = categoryDim;
+        this.allDim = allDim;
+        this.discounts = discounts;
+    }
+
+    /**
+     * Parses and compiles rules.
+     *
+     * @see PromotionRuleParser
+     */
+    public static Promotions compile(String rules, ZoneId zone, Duration sessionTimeout) {
+        return compile(PromotionRuleParser.parse(rules), zone, sessionTimeout);
+    }
+
+    /**
+     * @param zone           time zone of rule time windows
+     * @param sessionTimeout idle time after which next purchase starts new customer session
+     */
+    public static Promotions compile(List<PromotionRule> rules, ZoneId zone, Duration sessionTimeout) {
+        Preconditions.checkNotNull(rules);
+        Preconditions.checkNotNull(zone);
+        Preconditions.checkArgument(!sessionTimeout.isNegative());
+
+        // minutes with the same set of active rules share segment
+        short[] segmentOfMinute = new short[MinuteOfDay.MINUTES_PER_DAY];
+        Map<BitSet, Integer> segmentIndexes = Maps.newLinkedHashMap();
+        for (int minute = 0; minute < MinuteOfDay.MINUTES_PER_DAY; minute++) {
+            BitSet active = new BitSet(rules.size());
+            for (int i = 0; i < rules.size(); i++) {
+                active.set(i, rules.get(i).isActiveAt(minute));
+            }
+            Integer segment = segmentIndexes.get(active);
+            if (segment == null) {
+                segment = segmentIndexes.size();
+                segmentIndexes.put(active, segment);
+            }
+            segmentOfMinute[minute] = segment.shortValue();
+        }
+
+        int typeDim = maxItem(rules, PromotionRule.Scope.TYPE) + 1;
+        int categoryDim = maxItem(rules, PromotionRule.Scope.CATEGORY) + 1;
+        int allDim = maxItem(rules, PromotionRule.Scope.ANY) + 1;
+        int types = ProductCategory.typeCount();
+
+        byte[] discounts = new byte[segmentIndexes.size() * types * typeDim * categoryDim * allDim];
+        int index = 0;
+        for (BitSet active : segmentIndexes.keySet()) {
+            for (int typeIndex = 0; typeIndex < types; typeIndex++) {
+                Enum<?> type = ProductCategory.typeOfIndex(typeIndex);
+                for (int ofType = 0; ofType < typeDim; ofType++) {
+                    for (int ofCategory = 0; ofCategory < categoryDim; ofCategory++) {
+                        for (int all = 0; all < allDim; all++) {
+                            discounts[index++] = (byte) bestDiscount(rules, active, type, ofType, ofCategory, all);
+                        }
+                    }
+                }
+            }
+        }
+
+        return new Promotions(ImmutableList.copyOf(rules), sessionTimeout.toMillis(), new MinuteOfDay(zone),
+            segmentOfMinute, typeDim, categoryDim, allDim, discounts);
+    }
+
+    /**
+     * @return highest item number of rules of passed scope, 0 if no such rule is limited to n-th item
+     */
+    private static int maxItem(List<PromotionRule> rules, PromotionRule.Scope scope) {
+        int max = 0;
+        for (PromotionRule rule : rules) {
+            if (rule.getScope() == scope) {
+                max = Math.max(max, rule.getItem());
+            }
+        }
+        return max;
+    }
+
+    private static int bestDiscount(List<PromotionRule> rules, BitSet active, Enum<?> type, int ofType,
+                                    int ofCategory, int all) {
+        int best = 0;
+        for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i + 1)) {
+            PromotionRule rule = rules.get(i);
+            // time window is already resolved by segment
+            if (rule.getPercent() > best && rule.matchesItem(type, ofType, ofCategory, all)) {
+                best = rule.getPercent();
+            }
+        }
+        return best;
+    }
+
+    public List<PromotionRule> getRules() {
+        return rules;
+    }
+
+    public long getSessionTimeoutMillis() {
+        return sessionTimeoutMillis;
+    }
+
+    /**
+     * @return discount percent for product of passed type bought at passed time within passed session,
+     * 0 if no promotion applies
+     */
+    public int discountPercent(Enum<?> productType, long epochMillis, PromotionSession session) {
+        int typeIndex = ProductCategory.typeIndex(productType);
+
+        int index = segmentOfMinute[minuteOfDay.of(epochMillis)] * ProductCategory.typeCount() + typeIndex;
+        index = index * typeDim + Math.min(session.countOfType(typeIndex), typeDim - 1);
+        index = index * categoryDim + Math.min(session.countOfCategory(ProductCategory.of(productType)),
+            categoryDim - 1);
+        index = index * allDim + Math.min(session.count(), allDim - 1);
+        return discounts[index];
+    }
+
+    /**
+     * @return price lowered by discount percent, rounded to smallest coin
+     */
+    public static BigDecimal discountedPrice(BigDecimal price, int percent) {
+        if (percent == 0) {
+            return price;
+        }
+        return CoinDenomination.roundToSmallestCoin(
+            price.multiply(BigDecimal.valueOf(100 - percent)).divide(HUNDRED));
+    }
+}
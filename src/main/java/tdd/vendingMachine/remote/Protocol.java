@@ -0,0 +1,87 @@
+package tdd.vendingMachine.remote;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary protocol of remote vending machine facades.
+ *
+ * Every frame starts with int length of the rest of the frame. Request frame continues with int request id,
+ * byte operation code, int machine id and operation payload. Response frame continues with int request id,
+ * byte status and result payload. Responses are sent in order of requests, so client can send many requests
+ * without waiting for responses.
+ *
+ * Amounts are sent as long number of hundredths, -1 means no amount. Coin denominations and outcomes are
+ * sent as byte ordinals, strings as short length followed by UTF-8 bytes.
+ *
+ * @author Łukasz Gadawski
+ */
+final class Protocol {
+
+    /** Maximum length of frame, without length field. */
+    static final int MAX_FRAME_LENGTH = 16 * 1024;
+
+    /** Maximum length of encoded string, longer strings are truncated. */
+    static final int MAX_STRING_LENGTH = 4 * 1024;
+
+    static final int LENGTH_FIELD = 4;
+    static final int REQUEST_HEADER = 4 + 1 + 4;
+    static final int RESPONSE_HEADER = 4 + 1;
+
+    /** Payload: int shelve number. Result: long price of product on shelve or -1 if there is no product. */
+    static final byte SELECT_SHELVE = 1;
+    /** Payload: byte coin denomination. Result: byte insert coin outcome. */
+    static final byte INSERT_COIN = 2;
+    /** No payload, no result. */
+    static final byte CANCEL = 3;
+    /** No payload. Result: string display message. */
+    static final byte GET_DISPLAY_MESSAGE = 4;
+    /** No payload. Result: int count of returned coins of each denomination, in denomination order. */
+    static final byte GET_RETURNED_CHANGE = 5;
+    /** Payload: int number of coins. No result. */
+    static final byte FEED_WITH_COIN_EACH_TYPE = 6;
+    /**
+     * Payload: int target level of each denomination, -1 leaves denomination untouched.
+     * Result: int number of added coins of each denomination.
+     */
+    static final byte RESTOCK_COINS = 7;
+
+    static final byte STATUS_OK = 0;
+    /** Result: string error message. */
+    static final byte STATUS_ERROR = 1;
+    static final byte STATUS_UNKNOWN_MACHINE = 2;
+
+    private static final int AMOUNT_SCALE = 2;
+
+    private Protocol() {}
+
+    static long encodeAmount(BigDecimal amount) {
+        return amount == null ? -1 : amount.movePointRight(AMOUNT_SCALE).longValueExact();
+    }
+
+    static BigDecimal decodeAmount(long amount) {
+        return amount < 0 ? null : BigDecimal.valueOf(amount, AMOUNT_SCALE);
+    }
+
+    static void putString(ByteBuffer buffer, String s) {
+        if (s == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_STRING_LENGTH);
+        buffer.putShort((short) length);
+        buffer.put(bytes, 0, length);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
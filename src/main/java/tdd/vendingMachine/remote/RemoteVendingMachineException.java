@@ -0,0 +1,17 @@
+package tdd.vendingMachine.remote;
+
+/**
+ * Exception telling that remote vending machine operation failed on server side.
+ *
+ * @author Łukasz Gadawski
+ */
+public class RemoteVendingMachineException extends RuntimeException {
+
+    public RemoteVendingMachineException(String message) {
+        super(message);
+    }
+
+    public RemoteVendingMachineException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,246 @@
+package tdd.vendingMachine.remote;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.InsertCoinOutcome;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Client of {@link VendingMachineServer}. Every operation sends request immediately and returns future
+ * completed when response arrives, so many requests can be pipelined over single connection.
+ * Responses are read by dedicated thread, futures are completed on that thread.
+ *
+ * Client is thread safe.
+ *
+ * @author Łukasz Gadawski
+ */
+public class VendingMachineClient implements Closeable {
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+    private static final InsertCoinOutcome[] OUTCOMES = InsertCoinOutcome.values();
+
+    private final SocketChannel channel;
+
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(Protocol.LENGTH_FIELD + Protocol.MAX_FRAME_LENGTH);
+
+    private final ByteBuffer readBuffer =
+        ByteBuffer.allocateDirect(4 * (Protocol.LENGTH_FIELD + Protocol.MAX_FRAME_LENGTH));
+
+    /** Requests waiting for response, in order of sending */
+    private final Queue<PendingRequest<?>> pending = new ConcurrentLinkedQueue<>();
+
+    private final Thread readerThread;
+
+    private int nextRequestId;
+
+    private volatile boolean closed;
+
+    private VendingMachineClient(SocketChannel channel) {
+        this.channel = channel;
+        this.readerThread = new Thread(this::readResponses, "vending-machine-client");
+        this.readerThread.setDaemon(true);
+    }
+
+    public static VendingMachineClient connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+
+        VendingMachineClient client = new VendingMachineClient(channel);
+        client.readerThread.start();
+        return client;
+    }
+
+    /**
+     * @return future of selected product price, completed with null if there is no product on shelve
+     */
+    public CompletableFuture<BigDecimal> selectShelveNumber(int machineId, int shelveNumber) {
+        return send(machineId, Protocol.SELECT_SHELVE, request -> request.putInt(shelveNumber),
+            response -> Protocol.decodeAmount(response.getLong()));
+    }
+
+    public CompletableFuture<InsertCoinOutcome> insertCoin(int machineId, CoinDenomination cd) {
+        Preconditions.checkNotNull(cd);
+        return send(machineId, Protocol.INSERT_COIN, request -> request.put((byte) cd.ordinal()),
+            response -> OUTCOMES[response.get()]);
+    }
+
+    public CompletableFuture<Void> cancel(int machineId) {
+        return send(machineId, Protocol.CANCEL, request -> {}, response -> null);
+    }
+
+    public CompletableFuture<String> getDisplayMessage(int machineId) {
+        return send(machineId, Protocol.GET_DISPLAY_MESSAGE, request -> {}, Protocol::getString);
+    }
+
+    public CompletableFuture<Map<CoinDenomination, Integer>> getReturnedChange(int machineId) {
+        return send(machineId, Protocol.GET_RETURNED_CHANGE, request -> {}, VendingMachineClient::readCoins);
+    }
+
+    public CompletableFuture<Void> feedWithCoinEachType(int machineId, int coinNumber) {
+        return send(machineId, Protocol.FEED_WITH_COIN_EACH_TYPE, request -> request.putInt(coinNumber),
+            response -> null);
+    }
+
+    /**
+     * Tops up coins to passed levels, denominations missing in passed map are left untouched.
+     *
+     * @return future of number of added coins
+     */
+    public CompletableFuture<Map<CoinDenomination, Integer>> restockCoins(int machineId,
+                                                                          Map<CoinDenomination, Integer> levels) {
+        Preconditions.checkNotNull(levels);
+        return send(machineId, Protocol.RESTOCK_COINS, request -> {
+            for (CoinDenomination cd : COINS) {
+                request.putInt(levels.getOrDefault(cd, -1));
+            }
+        }, VendingMachineClient::readCoins);
+    }
+
+    private static Map<CoinDenomination, Integer> readCoins(ByteBuffer response) {
+        Map<CoinDenomination, Integer> coins = new EnumMap<>(CoinDenomination.class);
+        for (CoinDenomination cd : COINS) {
+            int count = response.getInt();
+            if (count != 0) {
+                coins.put(cd, count);
+            }
+        }
+        return Collections.unmodifiableMap(coins);
+    }
+
+    private <T> CompletableFuture<T> send(int machineId, byte operation, Consumer<ByteBuffer> payload,
+                                          Function<ByteBuffer, T> decoder) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        synchronized (writeBuffer) {
+            if (closed) {
+                future.completeExceptionally(new IOException("Client closed"));
+                return future;
+            }
+
+            int requestId = nextRequestId++;
+            writeBuffer.clear();
+            writeBuffer.putInt(0);
+            writeBuffer.putInt(requestId);
+            writeBuffer.put(operation);
+            writeBuffer.putInt(machineId);
+            payload.accept(writeBuffer);
+            writeBuffer.putInt(0, writeBuffer.position() - Protocol.LENGTH_FIELD);
+            writeBuffer.flip();
+
+            pending.add(new PendingRequest<>(requestId, decoder, future));
+            try {
+                while (writeBuffer.hasRemaining()) {
+                    channel.write(writeBuffer);
+                }
+            } catch (IOException e) {
+                failPending(e);
+            }
+        }
+        return future;
+    }
+
+    private void readResponses() {
+        try {
+            while (!closed) {
+                if (channel.read(readBuffer) < 0) {
+                    throw new IOException("Connection closed by server");
+                }
+                readBuffer.flip();
+                while (readBuffer.remaining() >= Protocol.LENGTH_FIELD) {
+                    int frameStart = readBuffer.position();
+                    int length = readBuffer.getInt(frameStart);
+                    if (length < Protocol.RESPONSE_HEADER || length > Protocol.MAX_FRAME_LENGTH) {
+                        throw new IOException("Invalid frame length: " + length);
+                    }
+                    if (readBuffer.remaining() < Protocol.LENGTH_FIELD + length) {
+                        break;
+                    }
+                    int frameEnd = frameStart + Protocol.LENGTH_FIELD + length;
+                    readBuffer.position(frameStart + Protocol.LENGTH_FIELD);
+                    complete(readBuffer);
+                    readBuffer.position(frameEnd);
+                }
+                readBuffer.compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            failPending(e);
+        }
+    }
+
+    private void complete(ByteBuffer response) throws IOException {
+        int requestId = response.getInt();
+        byte status = response.get();
+
+        PendingRequest<?> request = pending.poll();
+        if (request == null || request.requestId != requestId) {
+            throw new IOException("Unexpected response " + requestId);
+        }
+
+        switch (status) {
+            case Protocol.STATUS_OK:
+                request.complete(response);
+                break;
+            case Protocol.STATUS_ERROR:
+                request.future.completeExceptionally(new RemoteVendingMachineException(Protocol.getString(response)));
+                break;
+            case Protocol.STATUS_UNKNOWN_MACHINE:
+                request.future.completeExceptionally(new RemoteVendingMachineException("Unknown machine"));
+                break;
+            default:
+                throw new IOException("Unknown status " + status);
+        }
+    }
+
+    private void failPending(Throwable cause) {
+        synchronized (writeBuffer) {
+            closed = true;
+            for (PendingRequest<?> request = pending.poll(); request != null; request = pending.poll()) {
+                request.future.completeExceptionally(new RemoteVendingMachineException("Connection failed", cause));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+        try {
+            readerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending(new IOException("Client closed"));
+    }
+
+    private static final class PendingRequest<T> {
+
+        private final int requestId;
+
+        private final Function<ByteBuffer, T> decoder;
+
+        private final CompletableFuture<T> future;
+
+        private PendingRequest(int requestId, Function<ByteBuffer, T> decoder, CompletableFuture<T> future) {
+            this.requestId = requestId;
+            this.decoder = decoder;
+            this.future = future;
+        }
+
+        private void complete(ByteBuffer response) {
+            future.complete(decoder.apply(response));
+        }
+    }
+}
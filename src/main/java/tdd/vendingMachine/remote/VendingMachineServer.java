@@ -0,0 +1,320 @@
+package tdd.vendingMachine.remote;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.RestockPlan;
+import tdd.vendingMachine.RestockReport;
+import tdd.vendingMachine.facade.admin.AdminVendingMachineFacade;
+import tdd.vendingMachine.facade.user.UserVendingMachineFacade;
+import tdd.vendingMachine.products.Product;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Non blocking server exposing user and administration facades of registered vending machines
+ * with {@link Protocol binary protocol}.
+ *
+ * All connections are served by single selector thread, which also executes facade operations, so registered
+ * machines must not be used by any other thread while server is running. Clients can pipeline requests, every
+ * complete request found in read buffer is executed and its response is appended to connection write buffer.
+ * Connection stops reading when its write buffer is full, until client reads responses.
+ *
+ * @author Łukasz Gadawski
+ */
+public class VendingMachineServer implements Closeable {
+
+    private static final int READ_BUFFER_SIZE = 4 * (Protocol.LENGTH_FIELD + Protocol.MAX_FRAME_LENGTH);
+    private static final int WRITE_BUFFER_SIZE = 4 * (Protocol.LENGTH_FIELD + Protocol.MAX_FRAME_LENGTH);
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+
+    private final Map<Integer, Machine> machines = new ConcurrentHashMap<>();
+
+    private final InetSocketAddress address;
+
+    private Selector selector;
+
+    private ServerSocketChannel serverChannel;
+
+    private Thread selectorThread;
+
+    private volatile boolean running;
+
+    /**
+     * @param address address to bind to, port 0 binds to any free port
+     */
+    public VendingMachineServer(InetSocketAddress address) {
+        Preconditions.checkNotNull(address);
+        this.address = address;
+    }
+
+    /**
+     * Registers vending machine under passed id, should be called before server is started.
+     */
+    public void register(int machineId, UserVendingMachineFacade user, AdminVendingMachineFacade admin) {
+        Preconditions.checkNotNull(user);
+        Preconditions.checkNotNull(admin);
+        Preconditions.checkState(!running, "Machines must be registered before server is started");
+
+        machines.put(machineId, new Machine(user, admin));
+    }
+
+    public synchronized void start() throws IOException {
+        Preconditions.checkState(selectorThread == null, "Server already started");
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(address);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this::serve, "vending-machine-server");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * @return address server is bound to
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        Preconditions.checkState(serverChannel != null, "Server not started");
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (selectorThread == null) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+        selectorThread = null;
+    }
+
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isWritable()) {
+                                connection.write();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read();
+                            }
+                        }
+                    } catch (IOException e) {
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            running = false;
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    private final class Connection {
+
+        private final SocketChannel channel;
+
+        private final SelectionKey key;
+
+        /** Buffer in fill mode, holds received but not executed requests */
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+        /** Buffer in fill mode, holds responses not written to channel yet */
+        private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+        private Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        private void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                throw new IOException("Connection closed by client");
+            }
+            processRequests();
+            write();
+        }
+
+        private void write() throws IOException {
+            writeBuffer.flip();
+            channel.write(writeBuffer);
+            writeBuffer.compact();
+
+            boolean pendingWrite = writeBuffer.position() > 0;
+            if (!pendingWrite) {
+                // write buffer drained, requests waiting for space can be executed now
+                processRequests();
+                writeBuffer.flip();
+                channel.write(writeBuffer);
+                writeBuffer.compact();
+                pendingWrite = writeBuffer.position() > 0;
+            }
+
+            int interestOps = pendingWrite ? SelectionKey.OP_WRITE : 0;
+            if (hasSpaceForResponse()) {
+                interestOps |= SelectionKey.OP_READ;
+            }
+            key.interestOps(interestOps);
+        }
+
+        private boolean hasSpaceForResponse() {
+            return writeBuffer.remaining() >= Protocol.LENGTH_FIELD + Protocol.MAX_FRAME_LENGTH;
+        }
+
+        private void processRequests() throws IOException {
+            readBuffer.flip();
+            while (readBuffer.remaining() >= Protocol.LENGTH_FIELD && hasSpaceForResponse()) {
+                int frameStart = readBuffer.position();
+                int length = readBuffer.getInt(frameStart);
+                if (length < Protocol.REQUEST_HEADER || length > Protocol.MAX_FRAME_LENGTH) {
+                    throw new IOException("Invalid frame length: " + length);
+                }
+                if (readBuffer.remaining() < Protocol.LENGTH_FIELD + length) {
+                    break;
+                }
+
+                int frameEnd = frameStart + Protocol.LENGTH_FIELD + length;
+                int limit = readBuffer.limit();
+                readBuffer.position(frameStart + Protocol.LENGTH_FIELD);
+                readBuffer.limit(frameEnd);
+
+                processRequest(readBuffer, writeBuffer);
+
+                readBuffer.limit(limit);
+                readBuffer.position(frameEnd);
+            }
+            readBuffer.compact();
+        }
+    }
+
+    private void processRequest(ByteBuffer request, ByteBuffer response) {
+        int requestId = request.getInt();
+        byte operation = request.get();
+        int machineId = request.getInt();
+
+        int frameStart = response.position();
+        response.putInt(0);
+        response.putInt(requestId);
+
+        Machine machine = machines.get(machineId);
+        if (machine == null) {
+            response.put(Protocol.STATUS_UNKNOWN_MACHINE);
+        } else {
+            int statusPosition = response.position();
+            response.put(Protocol.STATUS_OK);
+            try {
+                execute(operation, machine, request, response);
+            } catch (RuntimeException e) {
+                response.position(statusPosition);
+                response.put(Protocol.STATUS_ERROR);
+                Protocol.putString(response, e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+
+        response.putInt(frameStart, response.position() - frameStart - Protocol.LENGTH_FIELD);
+    }
+
+    private static void execute(byte operation, Machine machine, ByteBuffer request, ByteBuffer response) {
+        switch (operation) {
+            case Protocol.SELECT_SHELVE:
+                Product product = machine.user.selectShelveNumber(request.getInt());
+                BigDecimal price = product == null ? null : machine.user.getSelectedProductPrice();
+                response.putLong(Protocol.encodeAmount(price));
+                break;
+            case Protocol.INSERT_COIN:
+                response.put((byte) machine.user.insertCoin(COINS[request.get()]).ordinal());
+                break;
+            case Protocol.CANCEL:
+                machine.user.cancel();
+                break;
+            case Protocol.GET_DISPLAY_MESSAGE:
+                Protocol.putString(response, machine.user.getDisplayMessage());
+                break;
+            case Protocol.GET_RETURNED_CHANGE:
+                Map<CoinDenomination, Integer> change = machine.user.getReturnedChange();
+                for (CoinDenomination cd : COINS) {
+                    response.putInt(change.getOrDefault(cd, 0));
+                }
+                break;
+            case Protocol.FEED_WITH_COIN_EACH_TYPE:
+                machine.admin.feedWithCoinEachType(request.getInt());
+                break;
+            case Protocol.RESTOCK_COINS:
+                RestockPlan.Builder plan = new RestockPlan.Builder();
+                for (CoinDenomination cd : COINS) {
+                    int level = request.getInt();
+                    if (level >= 0) {
+                        plan.coinLevel(cd, level);
+                    }
+                }
+                RestockReport report = machine.admin.restock(plan.build());
+                for (CoinDenomination cd : COINS) {
+                    response.putInt(report.getAddedCoins(cd));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    private static final class Machine {
+
+        private final UserVendingMachineFacade user;
+
+        private final AdminVendingMachineFacade admin;
+
+        private Machine(UserVendingMachineFacade user, AdminVendingMachineFacade admin) {
+            this.user = user;
+            this.admin = admin;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package tdd.vendingMachine.replay;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.CoinDenomination;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Observable outcome of single user operation: displayed message key or amount, price of vended product
+ * and coins returned by machine during the operation.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class EventOutcome {
+
+    static final String NONE = "-";
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+
+    private final String display;
+
+    private final BigDecimal vendedProductPrice;
+
+    /** Number of returned coins indexed by coin denomination ordinal */
+    private final int[] returnedChange;
+
+    /**
+     * @param display            displayed message key or displayed amount
+     * @param vendedProductPrice price charged for vended product or null if product was not vended
+     * @param returnedChange     number of returned coins indexed by coin denomination ordinal
+     */
+    public EventOutcome(String display, BigDecimal vendedProductPrice, int[] returnedChange) {
+        Preconditions.checkNotNull(display);
+        Preconditions.checkArgument(returnedChange.length == COINS.length);
+
+        this.display = display;
+        this.vendedProductPrice = vendedProductPrice;
+        this.returnedChange = returnedChange.clone();
+    }
+
+    public String getDisplay() {
+        return display;
+    }
+
+    public BigDecimal getVendedProductPrice() {
+        return vendedProductPrice;
+    }
+
+    public int getReturnedCoinCount(CoinDenomination cd) {
+        return returnedChange[cd.ordinal()];
+    }
+
+    /**
+     * Parses outcome written in recording format: display, vended product price and returned coins
+     * separated by '|', i.e. {@code hello | 2.5 | TWO:1,HALF:1}. Missing product or coins are written as '-'.
+     */
+    static EventOutcome parse(String text) {
+        String[] fields = text.split("\\|");
+        Preconditions.checkArgument(fields.length == 3, "Expected display, product and change: %s", text);
+
+        String display = fields[0].trim();
+        String price = fields[1].trim();
+        String change = fields[2].trim();
+
+        int[] returnedChange = new int[COINS.length];
+        if (!NONE.equals(change)) {
+            for (String coin : change.split(",")) {
+                String[] denominationAndCount = coin.trim().split(":");
+                Preconditions.checkArgument(denominationAndCount.length == 2, "Invalid coins: %s", change);
+                returnedChange[CoinDenomination.valueOf(denominationAndCount[0]).ordinal()] +=
+                    Integer.parseInt(denominationAndCount[1]);
+            }
+        }
+
+        return new EventOutcome(display, NONE.equals(price) ? null : new BigDecimal(price), returnedChange);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EventOutcome)) return false;
+
+        EventOutcome that = (EventOutcome) o;
+
+        if (!display.equals(that.display)) return false;
+        if (vendedProductPrice == null
+            ? that.vendedProductPrice != null
+            : that.vendedProductPrice == null || vendedProductPrice.compareTo(that.vendedProductPrice) != 0) {
+            return false;
+        }
+        return Arrays.equals(returnedChange, that.returnedChange);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = display.hashCode();
+        result = 31 * result + (vendedProductPrice != null ? vendedProductPrice.stripTrailingZeros().hashCode() : 0);
+        result = 31 * result + Arrays.hashCode(returnedChange);
+        return result;
+    }
+
+    /**
+     * @return outcome in recording format
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(display)
+            .append(" | ")
+            .append(vendedProductPrice == null ? NONE : vendedProductPrice.toPlainString())
+            .append(" | ");
+
+        int length = sb.length();
+        for (CoinDenomination cd : COINS) {
+            if (returnedChange[cd.ordinal()] != 0) {
+                if (sb.length() > length) {
+                    sb.append(',');
+                }
+                sb.append(cd.name()).append(':').append(returnedChange[cd.ordinal()]);
+            }
+        }
+        if (sb.length() == length) {
+            sb.append(NONE);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package tdd.vendingMachine.replay;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+
+/**
+ * Result of replaying demand trace against machine changed by {@link WhatIfPlan}.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class PlanEvaluation {
+
+    /** Orders evaluations from the best one: higher revenue first, then fewer change failures and stock-outs */
+    public static final Comparator<PlanEvaluation> RANKING = Comparator
+        .comparing(PlanEvaluation::getRevenue).reversed()
+        .thenComparingInt(PlanEvaluation::getChangeFailures)
+        .thenComparingInt(PlanEvaluation::getStockOuts);
+
+    private final WhatIfPlan plan;
+
+    private final BigDecimal revenue;
+
+    private final int sales;
+
+    private final int changeFailures;
+
+    private final int stockOuts;
+
+    PlanEvaluation(WhatIfPlan plan, BigDecimal revenue, int sales, int changeFailures, int stockOuts) {
+        this.plan = plan;
+        this.revenue = revenue;
+        this.sales = sales;
+        this.changeFailures = changeFailures;
+        this.stockOuts = stockOuts;
+    }
+
+    public WhatIfPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return value of coins kept by machine for completed sales
+     */
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public int getSales() {
+        return sales;
+    }
+
+    /**
+     * @return number of transactions refunded because machine could not return change
+     */
+    public int getChangeFailures() {
+        return changeFailures;
+    }
+
+    /**
+     * @return number of selections of empty shelves
+     */
+    public int getStockOuts() {
+        return stockOuts;
+    }
+}
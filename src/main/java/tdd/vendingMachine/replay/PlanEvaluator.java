@@ -0,0 +1,159 @@
+package tdd.vendingMachine.replay;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.InsertCoinOutcome;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.VendingMachineConfig;
+import tdd.vendingMachine.VirtualClock;
+import tdd.vendingMachine.display.DisplayMessages;
+import tdd.vendingMachine.facade.user.PurchaseScript;
+import tdd.vendingMachine.facade.user.UserVendingMachineFacade;
+import tdd.vendingMachine.facade.user.UserVendingMachineFacadeImpl;
+import tdd.vendingMachine.pricing.PricingEngine;
+
+import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates what-if plans against state of live machine and ranks them.
+ *
+ * Every plan is applied to its own fork of machine, so live machine is not disturbed, and demand trace is replayed
+ * against the fork through {@link UserVendingMachineFacade}, so forks behave exactly as production machine would.
+ * Fork runs on {@link VirtualClock} moved to timestamp of each event and without prepaid ledger of machine, forks
+ * have no event listener. Open transaction of machine is canceled on forks before plan is applied. Customers
+ * collect returned coins after every operation. Forks are independent, so plans are evaluated in parallel.
+ *
+ * @author Łukasz Gadawski
+ */
+public class PlanEvaluator {
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+
+    private final ZoneId zone;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param zone time zone of pricing rules of evaluated plans
+     * @param pool pool evaluating plans
+     */
+    public PlanEvaluator(ZoneId zone, ForkJoinPool pool) {
+        Preconditions.checkNotNull(zone);
+        Preconditions.checkNotNull(pool);
+
+        this.zone = zone;
+        this.pool = pool;
+    }
+
+    /**
+     * Forks machine in calling thread, which must be the thread using machine, and evaluates plans in pool.
+     *
+     * @param trace demand replayed against every plan
+     * @return evaluations of all plans, the best one first
+     */
+    public List<PlanEvaluation> evaluate(VendingMachine machine, RecordedSession trace, List<WhatIfPlan> plans) {
+        Preconditions.checkNotNull(machine);
+        Preconditions.checkNotNull(trace);
+
+        List<VendingMachine> forks = Lists.newArrayListWithCapacity(plans.size());
+        for (int i = 0; i < plans.size(); i++) {
+            forks.add(machine.fork());
+        }
+        long start = trace.getEvents().isEmpty()
+            ? machine.getConfig().getClock().millis()
+            : trace.getEvents().get(0).getTimestamp();
+
+        List<PlanEvaluation> evaluations = pool.submit(() -> IntStream.range(0, plans.size()).parallel()
+            .mapToObj(i -> evaluate(forks.get(i), start, trace, plans.get(i)))
+            .collect(Collectors.toList())).join();
+        evaluations.sort(PlanEvaluation.RANKING);
+        return evaluations;
+    }
+
+    private PlanEvaluation evaluate(VendingMachine fork, long start, RecordedSession trace, WhatIfPlan plan) {
+        VirtualClock clock = new VirtualClock(start, zone);
+        UserVendingMachineFacade facade = new UserVendingMachineFacadeImpl(fork);
+        // configuration of fork with open transaction is replaced when transaction is canceled
+        fork.reconfigure(config(fork, clock, plan));
+        facade.cancel();
+        facade.collectReturnedChange();
+        apply(fork, plan);
+
+        BigDecimal revenue = BigDecimal.ZERO;
+        BigDecimal inserted = BigDecimal.ZERO;
+        int sales = 0;
+        int changeFailures = 0;
+        int stockOuts = 0;
+        for (RecordedEvent event : trace.getEvents()) {
+            clock.advanceTo(event.getTimestamp());
+            switch (event.getOperation()) {
+                case PurchaseScript.SELECT_SHELVE:
+                    if (facade.selectShelveNumber(event.getArgument()) == null
+                        && DisplayMessages.NO_PRODUCTS_ON_SHELVE.equals(fork.getDisplayMessageKey())) {
+                        stockOuts++;
+                    }
+                    break;
+                case PurchaseScript.INSERT_COIN:
+                    CoinDenomination coin = COINS[event.getArgument()];
+                    InsertCoinOutcome outcome = facade.insertCoin(coin);
+                    BigDecimal returned = value(facade.collectReturnedChange());
+                    if (outcome == InsertCoinOutcome.ACCEPTED) {
+                        inserted = inserted.add(coin.getValue());
+                        break;
+                    }
+                    if (outcome == InsertCoinOutcome.SALE_COMPLETED) {
+                        revenue = revenue.add(inserted).add(coin.getValue()).subtract(returned);
+                        sales++;
+                    } else if (outcome == InsertCoinOutcome.REFUNDED_NO_CHANGE) {
+                        changeFailures++;
+                    }
+                    inserted = BigDecimal.ZERO;
+                    break;
+                case PurchaseScript.CANCEL:
+                    facade.cancel();
+                    facade.collectReturnedChange();
+                    inserted = BigDecimal.ZERO;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation: " + event.getOperation());
+            }
+        }
+        return new PlanEvaluation(plan, revenue, sales, changeFailures, stockOuts);
+    }
+
+    private VendingMachineConfig config(VendingMachine fork, VirtualClock clock, WhatIfPlan plan) {
+        VendingMachineConfig.Builder config = new VendingMachineConfig.Builder(fork.getConfig())
+            .setClock(clock)
+            .setPrepaidLedger(null);
+        if (plan.getPricingRules() != null) {
+            config.setPricingEngine(new PricingEngine(plan.getPricingRules(), zone, Runnable::run));
+        }
+        return config.build();
+    }
+
+    private void apply(VendingMachine fork, WhatIfPlan plan) {
+        if (plan.getRestockPlan() != null) {
+            fork.restock(plan.getRestockPlan());
+        }
+        for (CoinDenomination cd : COINS) {
+            if (plan.getCoinLimit(cd) != WhatIfPlan.UNCHANGED) {
+                fork.reduceCoinLevel(cd, plan.getCoinLimit(cd));
+            }
+        }
+    }
+
+    private static BigDecimal value(Map<CoinDenomination, Integer> coins) {
+        BigDecimal value = BigDecimal.ZERO;
+        for (Map.Entry<CoinDenomination, Integer> entry : coins.entrySet()) {
+            value = value.add(entry.getKey().getValue().multiply(BigDecimal.valueOf(entry.getValue())));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,48 @@
+package tdd.vendingMachine.replay;
+
+import tdd.vendingMachine.facade.user.PurchaseScript;
+
+/**
+ * Single user operation captured from the field together with its observed outcome.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class RecordedEvent {
+
+    private final long timestamp;
+
+    private final int operation;
+
+    private final int argument;
+
+    private final EventOutcome expected;
+
+    /**
+     * @param timestamp epoch millis when operation happened
+     * @param operation operation code, one of {@link PurchaseScript} operation codes
+     * @param argument  shelve number or coin denomination ordinal, depending on operation
+     * @param expected  outcome observed in the field
+     */
+    public RecordedEvent(long timestamp, int operation, int argument, EventOutcome expected) {
+        this.timestamp = timestamp;
+        this.operation = operation;
+        this.argument = argument;
+        this.expected = expected;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getOperation() {
+        return operation;
+    }
+
+    public int getArgument() {
+        return argument;
+    }
+
+    public EventOutcome getExpected() {
+        return expected;
+    }
+}
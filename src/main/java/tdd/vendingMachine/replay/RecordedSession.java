@@ -0,0 +1,40 @@
+package tdd.vendingMachine.replay;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Recorded sequence of user operations on one vending machine, ordered by time.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class RecordedSession {
+
+    private final String id;
+
+    private final List<RecordedEvent> events;
+
+    public RecordedSession(String id, List<RecordedEvent> events) {
+        Preconditions.checkNotNull(id);
+
+        long previous = Long.MIN_VALUE;
+        for (RecordedEvent event : events) {
+            Preconditions.checkArgument(event.getTimestamp() >= previous,
+                "Events of session %s are not ordered by time", id);
+            previous = event.getTimestamp();
+        }
+
+        this.id = id;
+        this.events = ImmutableList.copyOf(events);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<RecordedEvent> getEvents() {
+        return events;
+    }
+}
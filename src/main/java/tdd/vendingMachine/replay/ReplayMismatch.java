@@ -0,0 +1,43 @@
+package tdd.vendingMachine.replay;
+
+/**
+ * Difference between recorded and replayed outcome of single event.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class ReplayMismatch {
+
+    private final int eventIndex;
+
+    private final RecordedEvent event;
+
+    private final EventOutcome actual;
+
+    ReplayMismatch(int eventIndex, RecordedEvent event, EventOutcome actual) {
+        this.eventIndex = eventIndex;
+        this.event = event;
+        this.actual = actual;
+    }
+
+    public int getEventIndex() {
+        return eventIndex;
+    }
+
+    public RecordedEvent getEvent() {
+        return event;
+    }
+
+    public EventOutcome getExpected() {
+        return event.getExpected();
+    }
+
+    public EventOutcome getActual() {
+        return actual;
+    }
+
+    @Override
+    public String toString() {
+        return "event " + eventIndex + " at " + event.getTimestamp()
+            + ": expected [" + event.getExpected() + "] but was [" + actual + "]";
+    }
+}
@@ -0,0 +1,54 @@
+package tdd.vendingMachine.replay;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Result of replaying one recorded session.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class ReplayReport {
+
+    private final String sessionId;
+
+    private final int replayedEvents;
+
+    private final List<ReplayMismatch> mismatches;
+
+    private final long elapsedNanos;
+
+    ReplayReport(String sessionId, int replayedEvents, List<ReplayMismatch> mismatches, long elapsedNanos) {
+        this.sessionId = sessionId;
+        this.replayedEvents = replayedEvents;
+        this.mismatches = ImmutableList.copyOf(mismatches);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public int getReplayedEvents() {
+        return replayedEvents;
+    }
+
+    /**
+     * @return events which replayed outcome differs from recorded one, in order of occurrence
+     */
+    public List<ReplayMismatch> getMismatches() {
+        return mismatches;
+    }
+
+    public boolean isMatching() {
+        return mismatches.isEmpty();
+    }
+
+    /**
+     * @return wall clock time of replay
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,120 @@
+package tdd.vendingMachine.replay;
+
+import com.google.common.collect.Lists;
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.facade.user.PurchaseScript;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Reads recorded sessions from text file. Every session starts with {@code session <id>} line and ends with
+ * {@code end} line. Between them each line holds one event: epoch millis, operation with argument and
+ * observed outcome after {@code =>}, for example:
+ *
+ * <pre>
+ * session machine-7
+ * 1000 SELECT 0 => 2.5 | - | -
+ * 1800 INSERT FIVE => hello | 2.5 | TWO:1,HALF:1
+ * 2500 CANCEL => hello | - | -
+ * end
+ * </pre>
+ *
+ * Empty lines and lines starting with '#' are skipped.
+ *
+ * @author Łukasz Gadawski
+ */
+public class SessionRecordingReader {
+
+    private static final String SESSION = "session";
+    private static final String END = "end";
+    private static final String OUTCOME_SEPARATOR = "=>";
+
+    private SessionRecordingReader() {}
+
+    public static List<RecordedSession> read(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when recording is malformed, message contains line number
+     */
+    public static List<RecordedSession> read(Reader source) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader
+            ? (BufferedReader) source : new BufferedReader(source);
+
+        List<RecordedSession> sessions = Lists.newArrayList();
+        String sessionId = null;
+        List<RecordedEvent> events = null;
+
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            try {
+                if (line.startsWith(SESSION + " ")) {
+                    checkFormat(sessionId == null, "session started before previous one ended");
+                    sessionId = line.substring(SESSION.length()).trim();
+                    events = Lists.newArrayList();
+                } else if (line.equals(END)) {
+                    checkFormat(sessionId != null, "end without session");
+                    sessions.add(new RecordedSession(sessionId, events));
+                    sessionId = null;
+                    events = null;
+                } else {
+                    checkFormat(sessionId != null, "event outside of session");
+                    events.add(parseEvent(line));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid recording at line " + lineNumber + ": " + line, e);
+            }
+        }
+        checkFormat(sessionId == null, "session " + sessionId + " not ended");
+
+        return sessions;
+    }
+
+    private static RecordedEvent parseEvent(String line) {
+        int separator = line.indexOf(OUTCOME_SEPARATOR);
+        checkFormat(separator > 0, "missing outcome");
+
+        String[] tokens = line.substring(0, separator).trim().split("\\s+");
+        checkFormat(tokens.length >= 2, "missing operation");
+
+        long timestamp = Long.parseLong(tokens[0]);
+        EventOutcome expected = EventOutcome.parse(line.substring(separator + OUTCOME_SEPARATOR.length()));
+
+        switch (tokens[1]) {
+            case "SELECT":
+                checkFormat(tokens.length == 3, "SELECT takes shelve number");
+                return new RecordedEvent(timestamp, PurchaseScript.SELECT_SHELVE, Integer.parseInt(tokens[2]),
+                    expected);
+            case "INSERT":
+                checkFormat(tokens.length == 3, "INSERT takes coin denomination");
+                return new RecordedEvent(timestamp, PurchaseScript.INSERT_COIN,
+                    CoinDenomination.valueOf(tokens[2]).ordinal(), expected);
+            case "CANCEL":
+                checkFormat(tokens.length == 2, "CANCEL takes no argument");
+                return new RecordedEvent(timestamp, PurchaseScript.CANCEL, 0, expected);
+            default:
+                throw new IllegalArgumentException("unknown operation " + tokens[1]);
+        }
+    }
+
+    private static void checkFormat(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
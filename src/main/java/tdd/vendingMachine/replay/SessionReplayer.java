@@ -0,0 +1,143 @@
+package tdd.vendingMachine.replay;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.InsertCoinOutcome;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.VirtualClock;
+import tdd.vendingMachine.facade.user.PurchaseScript;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Replays recorded sessions against fresh vending machines and compares outcomes with recorded ones.
+ *
+ * Every session is replayed on its own machine driven by {@link VirtualClock}, which is moved to timestamp
+ * of each event before it is replayed, so replay runs as fast as possible and does not depend on wall clock.
+ * Sessions are independent, so they can be replayed in parallel.
+ *
+ * @author Łukasz Gadawski
+ */
+public class SessionReplayer {
+
+    private static final CoinDenomination[] COINS = CoinDenomination.values();
+
+    private final Function<Clock, VendingMachine> machineFactory;
+
+    private final ZoneId zone;
+
+    /**
+     * @param machineFactory creates machine in state in which recorded session started, using passed clock
+     * @param zone           time zone of machine which session was recorded
+     */
+    public SessionReplayer(Function<Clock, VendingMachine> machineFactory, ZoneId zone) {
+        Preconditions.checkNotNull(machineFactory);
+        Preconditions.checkNotNull(zone);
+
+        this.machineFactory = machineFactory;
+        this.zone = zone;
+    }
+
+    public ReplayReport replay(RecordedSession session) {
+        Preconditions.checkNotNull(session);
+
+        long start = System.nanoTime();
+
+        List<RecordedEvent> events = session.getEvents();
+        VirtualClock clock = new VirtualClock(events.isEmpty() ? 0 : events.get(0).getTimestamp(), zone);
+        VendingMachine machine = machineFactory.apply(clock);
+        Preconditions.checkNotNull(machine);
+
+        List<ReplayMismatch> mismatches = Lists.newArrayList();
+        int[] returnedBefore = new int[COINS.length];
+        int[] returnedAfter = new int[COINS.length];
+
+        for (int i = 0; i < events.size(); i++) {
+            RecordedEvent event = events.get(i);
+            clock.advanceTo(event.getTimestamp());
+
+            returnedCoinCounts(machine, returnedBefore);
+            // price charged for selected product, machine resets it when sale completes
+            BigDecimal chargedPrice = machine.getSelectedProductPrice();
+            BigDecimal vendedPrice = apply(machine, event) == InsertCoinOutcome.SALE_COMPLETED ? chargedPrice : null;
+            returnedCoinCounts(machine, returnedAfter);
+            for (int j = 0; j < returnedAfter.length; j++) {
+                returnedAfter[j] -= returnedBefore[j];
+            }
+
+            EventOutcome actual = new EventOutcome(display(machine), vendedPrice, returnedAfter);
+            if (!actual.equals(event.getExpected())) {
+                mismatches.add(new ReplayMismatch(i, event, actual));
+            }
+        }
+
+        return new ReplayReport(session.getId(), events.size(), mismatches, System.nanoTime() - start);
+    }
+
+    /**
+     * Replays sessions one after another in calling thread.
+     *
+     * @return reports in order of passed sessions
+     */
+    public List<ReplayReport> replayAll(List<RecordedSession> sessions) {
+        List<ReplayReport> reports = Lists.newArrayListWithCapacity(sessions.size());
+        for (RecordedSession session : sessions) {
+            reports.add(replay(session));
+        }
+        return reports;
+    }
+
+    /**
+     * Replays sessions in parallel on passed executor, each session on its own machine.
+     *
+     * @return reports in order of passed sessions
+     */
+    public List<ReplayReport> replayAll(List<RecordedSession> sessions, Executor executor) {
+        Preconditions.checkNotNull(executor);
+
+        List<CompletableFuture<ReplayReport>> futures = Lists.newArrayListWithCapacity(sessions.size());
+        for (RecordedSession session : sessions) {
+            futures.add(CompletableFuture.supplyAsync(() -> replay(session), executor));
+        }
+
+        List<ReplayReport> reports = Lists.newArrayListWithCapacity(sessions.size());
+        for (CompletableFuture<ReplayReport> future : futures) {
+            reports.add(future.join());
+        }
+        return reports;
+    }
+
+    /**
+     * @return outcome of inserted coin or null if event is not coin insertion
+     */
+    private static InsertCoinOutcome apply(VendingMachine machine, RecordedEvent event) {
+        switch (event.getOperation()) {
+            case PurchaseScript.SELECT_SHELVE:
+                machine.selectShelveNumber(event.getArgument());
+                return null;
+            case PurchaseScript.INSERT_COIN:
+                return machine.insertCoin(COINS[event.getArgument()]);
+            case PurchaseScript.CANCEL:
+                machine.cancel();
+                return null;
+            default:
+                throw new IllegalStateException("Unknown operation: " + event.getOperation());
+        }
+    }
+
+    private static String display(VendingMachine machine) {
+        String key = machine.getDisplayMessageKey();
+        return key != null ? key : machine.getDisplayMessage();
+    }
+
+    private static void returnedCoinCounts(VendingMachine machine, int[] counts) {
+        machine.getCoinTray().copyCounts(counts);
+    }
+}
@@ -0,0 +1,105 @@
+package tdd.vendingMachine.replay;
+
+import com.google.common.base.Preconditions;
+import tdd.vendingMachine.CoinDenomination;
+import tdd.vendingMachine.RestockPlan;
+import tdd.vendingMachine.pricing.PricingRules;
+
+import java.util.Arrays;
+
+/**
+ * Candidate change of machine evaluated by {@link PlanEvaluator}: restock, coins taken out of machine and pricing
+ * rules, i.e. "reprice shelve 3 and remove 0.1 coins". Parts which are not set leave machine as it is.
+ *
+ * @author Łukasz Gadawski
+ */
+public final class WhatIfPlan {
+
+    static final int UNCHANGED = -1;
+
+    private final String name;
+
+    private final RestockPlan restockPlan;
+
+    /** Highest number of coins left in machine indexed by coin denomination ordinal, {@link #UNCHANGED} if any */
+    private final int[] coinLimits;
+
+    private final PricingRules pricingRules;
+
+    private WhatIfPlan(Builder builder) {
+        this.name = builder.name;
+        this.restockPlan = builder.restockPlan;
+        this.coinLimits = builder.coinLimits.clone();
+        this.pricingRules = builder.pricingRules;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return restock applied before coins are taken out or null if machine is not restocked
+     */
+    public RestockPlan getRestockPlan() {
+        return restockPlan;
+    }
+
+    /**
+     * @return highest number of coins left in machine or {@link #UNCHANGED} if coins are not taken out
+     */
+    int getCoinLimit(CoinDenomination cd) {
+        return coinLimits[cd.ordinal()];
+    }
+
+    /**
+     * @return pricing rules replacing machine pricing or null if machine pricing is kept
+     */
+    public PricingRules getPricingRules() {
+        return pricingRules;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public static class Builder {
+
+        private final String name;
+        private RestockPlan restockPlan;
+        private final int[] coinLimits = new int[CoinDenomination.values().length];
+        private PricingRules pricingRules;
+
+        public Builder(String name) {
+            Preconditions.checkNotNull(name);
+
+            this.name = name;
+            Arrays.fill(coinLimits, UNCHANGED);
+        }
+
+        public Builder restock(RestockPlan restockPlan) {
+            this.restockPlan = Preconditions.checkNotNull(restockPlan);
+            return this;
+        }
+
+        /**
+         * Plans taking coins of passed denomination out of machine down to passed level.
+         */
+        public Builder coinLimit(CoinDenomination cd, int level) {
+            Preconditions.checkNotNull(cd);
+            Preconditions.checkArgument(level >= 0);
+
+            coinLimits[cd.ordinal()] = level;
+            return this;
+        }
+
+        public Builder pricing(PricingRules pricingRules) {
+            this.pricingRules = Preconditions.checkNotNull(pricingRules);
+            return this;
+        }
+
+        public WhatIfPlan build() {
+            return new WhatIfPlan(this);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package tdd.vendingMachine;
 import com.google.common.collect.ImmutableMap;
 import org.junit.Before;
 import org.junit.Test;
+import tdd.vendingMachine.exceptions.MaximumCoinCapacityExceedException;
 import tdd.vendingMachine.facade.admin.AdminVendingMachineFacadeImpl;
 import tdd.vendingMachine.products.Product;
 import tdd.vendingMachine.products.liquid.Liquid;
@@ -14,6 +15,7 @@ import java.util.Map;
 
 import static junit.framework.TestCase.assertFalse;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for administration tasks on vending machine.
@@ -68,4 +70,200 @@ public class AdminVendingMachineFacadeTest {
         assertThat(firstShelve.get(0)).isEqualTo(p);
     }
 
+    @Test
+    public void testFeedingMachineOverCapacityLeavesCoinsUntouched() {
+        admin.restock(new RestockPlan.Builder().coinLevel(CoinDenomination.HALF, 9).build());
+
+        try {
+            admin.feedWithCoinEachType(2);
+            fail("Expected MaximumCoinCapacityExceedException");
+        } catch (MaximumCoinCapacityExceedException e) {
+            // expected
+        }
+
+        assertThat(machine.coins().get(CoinDenomination.FIVE)).isEqualTo(0);
+        assertThat(machine.coins().get(CoinDenomination.HALF)).isEqualTo(9);
+    }
+
+    @Test
+    public void testRestockingToTargetLevels() {
+        Product p = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        admin.feedWithCoinEachType(3);
+
+        RestockReport report = admin.restock(new RestockPlan.Builder()
+            .coinLevel(CoinDenomination.ONE, 8)
+            .coinLevel(CoinDenomination.HALF, 2)
+            .shelveLevel(1, p, 3)
+            .build());
+
+        assertThat(report.getAddedCoins(CoinDenomination.ONE)).isEqualTo(5);
+        assertThat(report.getAddedCoins(CoinDenomination.HALF)).isEqualTo(0);
+        assertThat(report.getAddedCoins(CoinDenomination.FIVE)).isEqualTo(0);
+        assertThat(report.getAddedProducts()).isEqualTo(ImmutableMap.of(1, 3));
+        assertThat(machine.coins().get(CoinDenomination.ONE)).isEqualTo(8);
+        assertThat(machine.coins().get(CoinDenomination.HALF)).isEqualTo(3);
+        assertThat(machine.shelves().get(0)).isEmpty();
+        assertThat(machine.shelves().get(1)).containsExactly(p, p, p);
+
+        machine.selectShelveNumber(1);
+        machine.insertCoin(CoinDenomination.TWO);
+        machine.insertCoin(CoinDenomination.HALF);
+
+        report = admin.restock(new RestockPlan.Builder().shelveLevel(1, p, 4).build());
+        assertThat(report.getAddedProducts(1)).isEqualTo(2);
+        assertThat(machine.getNumberOfProductsOnShelve(1)).isEqualTo(4);
+    }
+
+    @Test
+    public void testInvalidRestockPlanLeavesMachineUntouched() {
+        Product coke = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        Product water = new Liquid.Builder()
+            .type(LiquidType.WATER)
+            .price(BigDecimal.valueOf(1.5))
+            .capacity(0.33)
+            .build();
+        admin.restock(new RestockPlan.Builder().shelveLevel(0, coke, 2).build());
+
+        try {
+            admin.restock(new RestockPlan.Builder()
+                .coinLevelEachType(5)
+                .shelveLevel(0, water, 4)
+                .build());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        assertThat(machine.coins().get(CoinDenomination.FIVE)).isEqualTo(0);
+        assertThat(machine.shelves().get(0)).containsExactly(coke, coke);
+    }
+
+    @Test
+    public void testReconfiguringMachineKeepsStockAndCoins() {
+        Product p = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        admin.feedWithProducts(ImmutableMap.of(0, p));
+        admin.feedWithCoinEachType(10);
+        List<Product> firstShelve = machine.shelves().get(0);
+
+        assertThat(admin.reconfigure(config(5, 6, 20))).isTrue();
+
+        assertThat(machine.shelves()).hasSize(5);
+        assertThat(machine.shelves().get(0)).isSameAs(firstShelve);
+        assertThat(machine.coins().get(CoinDenomination.FIVE)).isEqualTo(10);
+        admin.feedWithCoinEachType(10);
+        RestockReport report = admin.restock(new RestockPlan.Builder().shelveLevel(0, p, 6).shelveLevel(4, p, 6)
+            .build());
+        assertThat(report.getAddedProducts()).isEqualTo(ImmutableMap.of(0, 2, 4, 6));
+    }
+
+    @Test
+    public void testInvalidReconfigurationLeavesMachineUntouched() {
+        Product p = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        admin.restock(new RestockPlan.Builder().coinLevelEachType(8).shelveLevel(2, p, 3).build());
+
+        for (VendingMachineConfig config : new VendingMachineConfig[]{config(2, 4, 10), config(3, 2, 10),
+            config(3, 4, 5)}) {
+            try {
+                admin.reconfigure(config);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        assertThat(machine.shelves()).hasSize(3);
+        assertThat(machine.getConfig().getMaxProductsOnShelve()).isEqualTo(4);
+    }
+
+    @Test
+    public void testRemovingEmptyShelvesKeepsStockOfRemainingOnes() {
+        Product p = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        admin.restock(new RestockPlan.Builder().shelveLevel(0, p, 4).shelveLevel(1, p, 2).build());
+
+        assertThat(admin.reconfigure(config(2, 4, 10))).isTrue();
+
+        assertThat(machine.shelves()).hasSize(2);
+        assertThat(machine.shelves().get(0)).hasSize(4);
+        assertThat(machine.shelves().get(1)).hasSize(2);
+    }
+
+    @Test
+    public void testReconfigurationDuringTransactionIsAppliedWhenTransactionCloses() {
+        Product p = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        admin.restock(new RestockPlan.Builder().coinLevelEachType(8).shelveLevel(2, p, 1).build());
+        machine.selectShelveNumber(2);
+        machine.insertCoin(CoinDenomination.HALF);
+
+        try {
+            admin.reconfigure(config(2, 4, 10));
+            fail("Expected IllegalArgumentException, product reserved from removed shelve");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        VendingMachineConfig config = config(4, 1, 10);
+        assertThat(admin.reconfigure(config)).isFalse();
+        assertThat(machine.shelves()).hasSize(3);
+
+        machine.cancel();
+
+        assertThat(machine.getConfig()).isSameAs(config);
+        assertThat(machine.shelves()).hasSize(4);
+        assertThat(machine.shelves().get(2)).containsExactly(p);
+    }
+
+    @Test
+    public void testCoinsInsertedWhileConfigurationIsPendingFitItsTubes() {
+        Product p = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        admin.restock(new RestockPlan.Builder().coinLevelEachType(8).shelveLevel(0, p, 2).build());
+        machine.selectShelveNumber(0);
+        machine.insertCoin(CoinDenomination.HALF);
+
+        VendingMachineConfig config = config(3, 4, 9);
+        assertThat(admin.reconfigure(config)).isFalse();
+
+        assertThat(machine.insertCoin(CoinDenomination.ONE)).isEqualTo(InsertCoinOutcome.ACCEPTED);
+        assertThat(machine.insertCoin(CoinDenomination.ONE)).isEqualTo(InsertCoinOutcome.REJECTED_CAPACITY);
+
+        assertThat(machine.getConfig()).isSameAs(config);
+        assertThat(machine.coins().get(CoinDenomination.ONE)).isEqualTo(8);
+        assertThat(machine.collectReturnedChange())
+            .isEqualTo(ImmutableMap.of(CoinDenomination.HALF, 1, CoinDenomination.ONE, 2));
+    }
+
+    private static VendingMachineConfig config(int numberOfShelves, int maxProductsOnShelve, int maxCoins) {
+        return new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(maxCoins)
+            .setNumberOfShelves(numberOfShelves)
+            .setMaxProductsOnShelve(maxProductsOnShelve)
+            .setBundle("i18n.messages")
+            .build();
+    }
 }
@@ -0,0 +1,64 @@
+package tdd.vendingMachine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures bytes allocated by the current thread, based on HotSpot extension of {@link ThreadMXBean}.
+ *
+ * @author Łukasz Gadawski
+ */
+class AllocationMeter {
+
+    private final com.sun.management.ThreadMXBean threadMXBean;
+
+    private AllocationMeter(com.sun.management.ThreadMXBean threadMXBean) {
+        this.threadMXBean = threadMXBean;
+    }
+
+    /**
+     * @return meter instance or null if running JVM does not support per thread allocation measurement
+     */
+    static AllocationMeter createIfSupported() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        sunBean.setThreadAllocatedMemoryEnabled(true);
+
+        return new AllocationMeter(sunBean);
+    }
+
+    /**
+     * @return number of bytes allocated so far by current thread
+     */
+    long allocatedBytes() {
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Runs warm up cycles and then measures average number of bytes allocated by one measured cycle.
+     */
+    long averageBytesPerCycle(Runnable cycle, int warmUpCycles, int measuredCycles) {
+        for (int i = 0; i < warmUpCycles; i++) {
+            cycle.run();
+        }
+
+        // calibrates cost of measuring itself, getThreadAllocatedBytes may allocate
+        long calibrationStart = allocatedBytes();
+        long calibrationOverhead = allocatedBytes() - calibrationStart;
+
+        long start = allocatedBytes();
+        for (int i = 0; i < measuredCycles; i++) {
+            cycle.run();
+        }
+        long allocated = allocatedBytes() - start - calibrationOverhead;
+
+        return Math.max(0, allocated / measuredCycles);
+    }
+}
@@ -0,0 +1,174 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.fraud.Anomaly;
+import tdd.vendingMachine.fraud.AnomalyDetector;
+import tdd.vendingMachine.payment.PrepaidLedger;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of streaming anomaly detection on machine events.
+ *
+ * @author Łukasz Gadawski
+ */
+public class AnomalyDetectorTest {
+
+    private static final long START = 1_000_000L;
+    private static final long MINUTE = 60_000L;
+
+    private List<Anomaly> anomalies;
+    private AnomalyDetector detector;
+
+    @Before
+    public void init() {
+        anomalies = Lists.newArrayList();
+        detector = new AnomalyDetector.Builder()
+            .window(10 * MINUTE, 60)
+            .onAnomaly(anomalies::add)
+            .build();
+    }
+
+    @Test
+    public void testInsertThenCancelCyclesAreFlaggedOnce() {
+        VirtualClock clock = new VirtualClock(START, ZoneOffset.UTC);
+        VendingMachine machine = monitoredMachine(clock, null);
+
+        for (int i = 0; i < 8; i++) {
+            clock.advanceTo(START + i * 1000);
+            machine.selectShelveNumber(0);
+            machine.insertCoin(CoinDenomination.TWO);
+            machine.cancel();
+        }
+
+        assertThat(anomalies).extracting(Anomaly::getType).containsExactly(Anomaly.Type.CANCEL_AFTER_INSERT);
+        assertThat(anomalies.get(0).getEpochMillis()).isEqualTo(START + 4000);
+        assertThat(detector.getCancelRatio()).isEqualTo(1.0);
+
+        clock.advanceTo(START + 11 * MINUTE);
+        machine.selectShelveNumber(0);
+        machine.insertCoin(CoinDenomination.FIVE);
+        assertThat(detector.getCancelRatio()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void testCoinMixDriftIsFlaggedAgainstLongTermMix() {
+        long time = START;
+        for (int i = 0; i < 400; i++, time += 5000) {
+            CoinDenomination cd = i % 2 == 0 ? CoinDenomination.TWO : CoinDenomination.ONE;
+            detector.coinInserted(cd, InsertCoinOutcome.SALE_COMPLETED, time);
+        }
+        assertThat(anomalies).isEmpty();
+        assertThat(detector.getCoinMixDrift()).isLessThan(0.1);
+
+        time += 20 * MINUTE;
+        for (int i = 0; i < 40; i++, time += 1000) {
+            detector.coinInserted(CoinDenomination.ONE_TENTH, InsertCoinOutcome.ACCEPTED, time);
+        }
+
+        assertThat(anomalies).extracting(Anomaly::getType).containsExactly(Anomaly.Type.COIN_MIX_DRIFT);
+        assertThat(anomalies.get(0).getValue()).isGreaterThan(0.4);
+    }
+
+    @Test
+    public void testOnlyBurstOfRejectedReadingsIsFlagged() {
+        for (int i = 0; i < 20; i++) {
+            detector.coinRejected(START + i * 5 * MINUTE);
+        }
+        assertThat(anomalies).isEmpty();
+        assertThat(detector.getRejectedCoins()).isEqualTo(2);
+
+        long burst = START + 200 * MINUTE;
+        for (int i = 0; i < 6; i++) {
+            detector.coinRejected(burst + i * 100);
+        }
+
+        assertThat(anomalies).extracting(Anomaly::getType).containsExactly(Anomaly.Type.SLUG_BURST);
+        assertThat(anomalies.get(0).getValue()).isEqualTo(5);
+    }
+
+    @Test
+    public void testReadingsRejectedByCoinSlotAreFlagged() {
+        VirtualClock clock = new VirtualClock(START, ZoneOffset.UTC);
+        VendingMachine machine = monitoredMachine(clock, null);
+        CoinSlot slot = new CoinSlot(new CoinAcceptor.Builder().build(), machine);
+        CoinSpec two = CoinSpec.PLN.stream().filter(coin -> coin.getDenomination() == CoinDenomination.TWO)
+            .findFirst().get();
+
+        machine.selectShelveNumber(0);
+        assertThat(slot.insert(two.getDiameter(), two.getWeight(), two.getAlloy()))
+            .isEqualTo(InsertCoinOutcome.ACCEPTED);
+        for (int i = 0; i < 5; i++) {
+            clock.advanceTo(START + i * 100);
+            // slug of 2 zł coin size and weight
+            assertThat(slot.insert(two.getDiameter(), two.getWeight(), two.getAlloy() + 0.3)).isNull();
+        }
+
+        assertThat(anomalies).extracting(Anomaly::getType).containsExactly(Anomaly.Type.SLUG_BURST);
+        assertThat(anomalies.get(0).getEpochMillis()).isEqualTo(START + 400);
+        assertThat(machine.coins()).containsEntry(CoinDenomination.TWO, 11);
+    }
+
+    @Test
+    public void testPrepaidSaleEndsMonitoredTransaction() {
+        PrepaidLedger ledger = new PrepaidLedger();
+        ledger.openAccount("card-1");
+        ledger.credit("card-1", BigDecimal.valueOf(10));
+        VendingMachine machine = monitoredMachine(new VirtualClock(START, ZoneOffset.UTC), ledger);
+
+        machine.selectShelveNumber(0);
+        machine.insertCoin(CoinDenomination.TWO);
+        assertThat(machine.payFromBalance("card-1", "debit-1")).isEqualTo(CardPaymentOutcome.SALE_COMPLETED);
+        // basket without coins canceled after sale is not coin swapping
+        machine.addToBasket(0);
+        machine.cancel();
+
+        assertThat(detector.getCancelRatio()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void testForksAndMachinesOfTemplateAreNotMonitoredByListenerOfMachine() {
+        VendingMachine machine = monitoredMachine(new VirtualClock(START, ZoneOffset.UTC), null);
+        VendingMachine fork = machine.fork();
+        VendingMachine stamped = machine.toTemplate().newMachine();
+
+        for (VendingMachine other : ImmutableList.of(fork, stamped)) {
+            other.selectShelveNumber(0);
+            other.insertCoin(CoinDenomination.TWO);
+            other.cancel();
+            assertThat(other.getConfig().getEventListener()).isNull();
+        }
+
+        assertThat(detector.getCancelRatio()).isEqualTo(0.0);
+        assertThat(machine.getConfig().getEventListener()).isSameAs(detector);
+    }
+
+    private VendingMachine monitoredMachine(VirtualClock clock, PrepaidLedger ledger) {
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(100)
+            .setNumberOfShelves(1)
+            .setMaxProductsOnShelve(10)
+            .setBundle("i18n.messages")
+            .setClock(clock)
+            .setPrepaidLedger(ledger)
+            .setEventListener(detector)
+            .build());
+        machine.feedWithCoinsEachType(10);
+        machine.feedWithProducts(ImmutableMap.of(0, new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build()));
+        return machine;
+    }
+}
@@ -0,0 +1,107 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.facade.SerialExecutor;
+import tdd.vendingMachine.facade.admin.AdminVendingMachineFacadeImpl;
+import tdd.vendingMachine.facade.admin.AsyncAdminVendingMachineFacade;
+import tdd.vendingMachine.facade.admin.AsyncAdminVendingMachineFacadeImpl;
+import tdd.vendingMachine.facade.user.AsyncUserVendingMachineFacade;
+import tdd.vendingMachine.facade.user.AsyncUserVendingMachineFacadeImpl;
+import tdd.vendingMachine.facade.user.UserVendingMachineFacadeImpl;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for asynchronous user and administration facades.
+ *
+ * @author Łukasz Gadawski
+ */
+public class AsyncVendingMachineFacadeTest {
+
+    private static final int NUMBER_OF_MACHINES = 200;
+
+    private ExecutorService pool;
+    private Product product;
+
+    @Before
+    public void init() {
+        pool = Executors.newFixedThreadPool(4);
+        product = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+    }
+
+    @After
+    public void after() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testSerialExecutorKeepsSubmissionOrder() {
+        SerialExecutor executor = new SerialExecutor(pool);
+        List<Integer> executed = Collections.synchronizedList(Lists.newArrayList());
+
+        List<CompletableFuture<Void>> futures = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            int task = i;
+            futures.add(CompletableFuture.runAsync(() -> executed.add(task), executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        for (int i = 0; i < executed.size(); i++) {
+            assertThat(executed.get(i)).isEqualTo(i);
+        }
+        assertThat(executed).hasSize(1000);
+    }
+
+    @Test
+    public void testManyMachinesOnSmallPool() {
+        List<CompletableFuture<InsertCoinOutcome>> outcomes = Lists.newArrayList();
+        List<AsyncUserVendingMachineFacade> users = Lists.newArrayList();
+
+        for (int i = 0; i < NUMBER_OF_MACHINES; i++) {
+            VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+                .setMaxCoinNumberOfEachTypeInVendingMachine(10)
+                .setNumberOfShelves(1)
+                .setMaxProductsOnShelve(2)
+                .setBundle("i18n.messages")
+                .build());
+
+            SerialExecutor machineExecutor = new SerialExecutor(pool);
+            AsyncAdminVendingMachineFacade admin =
+                new AsyncAdminVendingMachineFacadeImpl(new AdminVendingMachineFacadeImpl(machine), machineExecutor);
+            AsyncUserVendingMachineFacade user =
+                new AsyncUserVendingMachineFacadeImpl(new UserVendingMachineFacadeImpl(machine), machineExecutor);
+
+            // not waiting for completion, ordering guarantees that machine is fed before purchase
+            admin.feedWithCoinEachType(5);
+            admin.feedWithProducts(ImmutableMap.of(0, product));
+            user.selectShelveNumber(0);
+            user.insertCoin(CoinDenomination.TWO);
+            outcomes.add(user.insertCoin(CoinDenomination.ONE));
+            users.add(user);
+        }
+
+        for (int i = 0; i < NUMBER_OF_MACHINES; i++) {
+            assertThat(outcomes.get(i).join()).isEqualTo(InsertCoinOutcome.SALE_COMPLETED);
+            assertThat(users.get(i).getReturnedProduct().join()).isEqualTo(product);
+            assertThat(users.get(i).getReturnedChange().join()).isEqualTo(ImmutableMap.of(CoinDenomination.HALF, 1));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+import tdd.vendingMachine.products.snack.Snack;
+import tdd.vendingMachine.products.snack.SnackType;
+import tdd.vendingMachine.promotions.Promotions;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of coin float planning for service visits.
+ *
+ * @author Łukasz Gadawski
+ */
+public class ChangeFloatPlannerTest {
+
+    private static final int TUBE_CAPACITY = 50;
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    public void testPlannedFloatMeetsTargetWithLessMoneyThanFullTubes() {
+        ChangeFloatPlan plan = planner(0.95, 39).plan();
+
+        assertThat(plan.isTargetMet()).as("served %s", plan.getServedFraction()).isTrue();
+        assertThat(plan.getServedFraction()).isGreaterThanOrEqualTo(0.95);
+        // change is always lower than last inserted coin, so highest coins are never needed
+        assertThat(plan.getLevel(CoinDenomination.FIVE)).isEqualTo(0);
+        assertThat(plan.getValue()).isLessThan(fullTubesValue());
+    }
+
+    @Test
+    public void testHigherTargetNeedsLargerFloat() {
+        ChangeFloatPlan lower = planner(0.8, 39).plan();
+        ChangeFloatPlan higher = planner(0.99, 39).plan();
+
+        assertThat(lower.getValue()).isLessThanOrEqualTo(higher.getValue());
+    }
+
+    @Test
+    public void testUnreachableTargetKeepsFullTubes() {
+        ChangeFloatPlan plan = new ChangeFloatPlanner.Builder()
+            .sale(BigDecimal.valueOf(0.1), 1)
+            .paymentCoin(CoinDenomination.FIVE, 1)
+            .paymentCoin(CoinDenomination.TWO, 0)
+            .paymentCoin(CoinDenomination.ONE, 0)
+            .paymentCoin(CoinDenomination.HALF, 0)
+            .paymentCoin(CoinDenomination.ONE_FIFTH, 0)
+            .paymentCoin(CoinDenomination.ONE_TENTH, 0)
+            .salesUntilNextVisit(100)
+            .tubeCapacity(TUBE_CAPACITY)
+            .build()
+            .plan();
+
+        assertThat(plan.isTargetMet()).isFalse();
+        for (CoinDenomination cd : CoinDenomination.values()) {
+            assertThat(plan.getLevel(cd)).isEqualTo(TUBE_CAPACITY);
+        }
+    }
+
+    @Test
+    public void testPlanAppliedOnServiceVisit() {
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(TUBE_CAPACITY)
+            .setNumberOfShelves(2)
+            .setMaxProductsOnShelve(5)
+            .setBundle("i18n.messages")
+            .build());
+        machine.feedWithProducts(ImmutableMap.of(
+            0, new Liquid.Builder().type(LiquidType.COKE).price(BigDecimal.valueOf(2.5)).capacity(0.25).build(),
+            1, new Snack.Builder().type(SnackType.CHOCOLATE_BAR).price(BigDecimal.valueOf(1.7)).weight(0.1).build()));
+
+        ChangeFloatPlan plan = new ChangeFloatPlanner.Builder()
+            .machine(machine, ImmutableMap.of(0, 30, 1, 10))
+            .salesUntilNextVisit(150)
+            .tubeCapacity(TUBE_CAPACITY)
+            .build()
+            .plan();
+        machine.restock(plan.toRestockPlan());
+
+        for (CoinDenomination cd : CoinDenomination.values()) {
+            assertThat(machine.coins().get(cd)).isEqualTo(plan.getLevel(cd));
+        }
+    }
+
+    @Test
+    public void testMachineSalesPricedByEffectivePrice() {
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(TUBE_CAPACITY)
+            .setNumberOfShelves(2)
+            .setMaxProductsOnShelve(5)
+            .setBundle("i18n.messages")
+            .setClock(new VirtualClock(14 * HOUR, ZoneOffset.UTC))
+            .setPromotions(Promotions.compile("10% off COKE between 14:00 and 16:00", ZoneOffset.UTC,
+                Duration.ofMinutes(2)))
+            .build());
+        machine.feedWithProducts(ImmutableMap.of(
+            0, new Liquid.Builder().type(LiquidType.COKE).price(BigDecimal.valueOf(2.5)).capacity(0.25).build(),
+            1, new Snack.Builder().type(SnackType.CHOCOLATE_BAR).price(BigDecimal.valueOf(1.7)).weight(0.1).build()));
+
+        ChangeFloatPlan fromMachine = new ChangeFloatPlanner.Builder()
+            .machine(machine, ImmutableMap.of(0, 30, 1, 10))
+            .salesUntilNextVisit(150)
+            .tubeCapacity(TUBE_CAPACITY)
+            .scenarios(50)
+            .build()
+            .plan();
+        ChangeFloatPlan fromPrices = new ChangeFloatPlanner.Builder()
+            .sale(BigDecimal.valueOf(2.3), 30)
+            .sale(BigDecimal.valueOf(1.7), 10)
+            .salesUntilNextVisit(150)
+            .tubeCapacity(TUBE_CAPACITY)
+            .scenarios(50)
+            .build()
+            .plan();
+
+        assertThat(machine.effectivePriceOf(0)).isEqualByComparingTo(BigDecimal.valueOf(2.3));
+        assertThat(levels(fromMachine)).isEqualTo(levels(fromPrices));
+        assertThat(fromMachine.getServedFraction()).isEqualTo(fromPrices.getServedFraction());
+    }
+
+    @Test
+    public void testFleetPlannedConcurrentlyMatchesSequentialPlans() {
+        List<ChangeFloatPlan> plans = IntStream.range(0, 4)
+            .mapToObj(i -> CompletableFuture.supplyAsync(() -> planner(0.95, i, 20).plan()))
+            .collect(Collectors.toList())
+            .stream()
+            .map(CompletableFuture::join)
+            .collect(Collectors.toList());
+
+        for (int i = 0; i < plans.size(); i++) {
+            ChangeFloatPlan sequential = planner(0.95, i, 20).plan();
+            assertThat(plans.get(i).isTargetMet()).isTrue();
+            assertThat(levels(plans.get(i))).isEqualTo(levels(sequential));
+            assertThat(plans.get(i).getServedFraction()).isEqualTo(sequential.getServedFraction());
+        }
+    }
+
+    private static ChangeFloatPlanner planner(double targetFraction, long seed) {
+        return planner(targetFraction, seed, 200);
+    }
+
+    private static ChangeFloatPlanner planner(double targetFraction, long seed, int scenarios) {
+        return new ChangeFloatPlanner.Builder()
+            .sale(BigDecimal.valueOf(2.5), 50)
+            .sale(BigDecimal.valueOf(1.7), 30)
+            .sale(BigDecimal.valueOf(3.2), 20)
+            .paymentCoin(CoinDenomination.ONE_TENTH, 0.2)
+            .paymentCoin(CoinDenomination.FIVE, 0.5)
+            .salesUntilNextVisit(150)
+            .tubeCapacity(TUBE_CAPACITY)
+            .targetFraction(targetFraction)
+            .seed(seed)
+            .scenarios(scenarios)
+            .build();
+    }
+
+    private static int[] levels(ChangeFloatPlan plan) {
+        return Arrays.stream(CoinDenomination.values()).mapToInt(plan::getLevel).toArray();
+    }
+
+    private static BigDecimal fullTubesValue() {
+        BigDecimal value = BigDecimal.ZERO;
+        for (CoinDenomination cd : CoinDenomination.values()) {
+            value = value.add(cd.getValue().multiply(BigDecimal.valueOf(TUBE_CAPACITY)));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,81 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of classifying coin acceptor readings.
+ *
+ * @author Łukasz Gadawski
+ */
+public class CoinAcceptorTest {
+
+    private final CoinAcceptor acceptor = new CoinAcceptor.Builder().build();
+
+    @Test
+    public void testReadingsWithinTolerancesAreClassified() {
+        for (CoinSpec coin : CoinSpec.PLN) {
+            assertThat(acceptor.classify(coin.getDiameter(), coin.getWeight(), coin.getAlloy()))
+                .isEqualTo(coin.getDenomination());
+            assertThat(acceptor.classify(coin.getDiameter() + 0.12, coin.getWeight() - 0.12, coin.getAlloy() + 0.03))
+                .isEqualTo(coin.getDenomination());
+        }
+    }
+
+    @Test
+    public void testForeignAndDamagedReadingsAreRejected() {
+        // 1 zł diameter with 2 zł weight
+        assertThat(acceptor.classify(23.0, 5.21, 0.2)).isNull();
+        // 5 zł coin of wrong alloy
+        assertThat(acceptor.classify(24.0, 6.54, 0.2)).isNull();
+        assertThat(acceptor.classify(16.5, 2.8, 0.2)).isNull();
+        assertThat(acceptor.classify(30.0, 6.54, 0.45)).isNull();
+        assertThat(acceptor.classify(Double.NaN, 6.54, 0.45)).isNull();
+        assertThat(acceptor.classify(-24.0, 6.54, 0.45)).isNull();
+    }
+
+    @Test
+    public void testOverlappingCoinsAreRejected() {
+        CoinAcceptor overlapping = new CoinAcceptor.Builder()
+            .coins(ImmutableList.of(
+                new CoinSpec(CoinDenomination.ONE, 23.0, 0.2, 5.0, 0.2, 0.2, 0.05),
+                new CoinSpec(CoinDenomination.TWO, 23.3, 0.2, 5.2, 0.2, 0.2, 0.05)))
+            .build();
+
+        assertThat(overlapping.classify(22.9, 4.9, 0.2)).isEqualTo(CoinDenomination.ONE);
+        assertThat(overlapping.classify(23.15, 5.1, 0.2)).isNull();
+        assertThat(overlapping.classify(23.45, 5.35, 0.2)).isEqualTo(CoinDenomination.TWO);
+    }
+
+    @Test
+    public void testBatchClassificationMatchesSingleReadings() {
+        Random random = new Random(11);
+        int count = 10_000;
+        double[] diameters = new double[count];
+        double[] weights = new double[count];
+        double[] alloys = new double[count];
+        for (int i = 0; i < count; i++) {
+            CoinSpec coin = CoinSpec.PLN.get(random.nextInt(CoinSpec.PLN.size()));
+            diameters[i] = coin.getDiameter() + random.nextGaussian() * 0.1;
+            weights[i] = coin.getWeight() + random.nextGaussian() * 0.1;
+            alloys[i] = coin.getAlloy() + random.nextGaussian() * 0.02;
+        }
+
+        CoinDenomination[] result = new CoinDenomination[count];
+        int accepted = acceptor.classifyAll(diameters, weights, alloys, count, result);
+
+        int expectedAccepted = 0;
+        for (int i = 0; i < count; i++) {
+            CoinDenomination expected = acceptor.classify(diameters[i], weights[i], alloys[i]);
+            assertThat(result[i]).isEqualTo(expected);
+            if (expected != null) {
+                expectedAccepted++;
+            }
+        }
+        assertThat(accepted).isEqualTo(expectedAccepted).isGreaterThan(count / 2).isLessThan(count);
+    }
+}
@@ -9,6 +9,7 @@ import tdd.vendingMachine.exceptions.NotEnoughCoinsToReturnException;
 import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Random;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -122,4 +123,51 @@ public class CoinReturningAlgorithmTest {
 
         assertTrue(expected.compareTo(changeValue) == 0);
     }
+
+    @Test
+    public void testFindChangeNotEnoughCoins() {
+        Map<CoinDenomination, Integer> map =
+            ImmutableMap.<CoinDenomination, Integer>builder()
+                .put(CoinDenomination.ONE_FIFTH, 5)
+                .build();
+
+        algorithm = new CoinReturningAlgorithm(map);
+
+        assertThat(algorithm.findChange(BigDecimal.valueOf(0.5))).isNull();
+    }
+
+    @Test
+    public void testTakeChangeMatchesFindChange() {
+        CoinDenomination[] coins = CoinDenomination.values();
+        int[] coinUnits = new int[coins.length];
+        for (CoinDenomination cd : coins) {
+            coinUnits[cd.ordinal()] = cd.getValue().movePointRight(2).intValueExact();
+        }
+        Random random = new Random(39);
+
+        for (int round = 0; round < 1000; round++) {
+            int[] counts = new int[coins.length];
+            Map<CoinDenomination, Integer> available = Maps.newHashMap();
+            for (CoinDenomination cd : coins) {
+                counts[cd.ordinal()] = random.nextInt(4);
+                available.put(cd, counts[cd.ordinal()]);
+            }
+            int amount = random.nextInt(100) * 10;
+            int[] taken = new int[coins.length];
+
+            Map<CoinDenomination, Integer> change = new CoinReturningAlgorithm(available)
+                .findChange(BigDecimal.valueOf(amount, 2));
+            boolean given = CoinReturningAlgorithm.takeChange(counts, coinUnits, amount, taken);
+
+            assertThat(given).isEqualTo(change != null);
+            for (CoinDenomination cd : coins) {
+                if (given) {
+                    assertThat(taken[cd.ordinal()]).isEqualTo(change.getOrDefault(cd, 0));
+                    assertThat(counts[cd.ordinal()]).isEqualTo(available.get(cd) - change.getOrDefault(cd, 0));
+                } else {
+                    assertThat(counts[cd.ordinal()]).isEqualTo(available.get(cd));
+                }
+            }
+        }
+    }
 }
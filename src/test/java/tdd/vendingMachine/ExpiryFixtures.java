@@ -0,0 +1,59 @@
+package tdd.vendingMachine;
+
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+
+/**
+ * Shared fixture of tests of perishable products: virtual clock and expiry wheel starting at the same time and
+ * products expiring at passed time.
+ *
+ * @author Łukasz Gadawski
+ */
+final class ExpiryFixtures {
+
+    static final long START = 1_000_000_000L;
+    static final long TICK = 1000;
+    static final long HOUR = 3_600_000L;
+
+    private ExpiryFixtures() {
+    }
+
+    static VirtualClock virtualClock() {
+        return new VirtualClock(START, ZoneOffset.UTC);
+    }
+
+    /**
+     * @return wheel ticking every {@link #TICK} since {@link #START}
+     */
+    static ExpiryWheel expiryWheel() {
+        return new ExpiryWheel(TICK, START);
+    }
+
+    /**
+     * @return coke for 2.5
+     */
+    static Product coke(long expiresAt) {
+        return new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .expiresAt(expiresAt)
+            .build();
+    }
+
+    /**
+     * @return water for 2
+     */
+    static Product water(long expiresAt) {
+        return new Liquid.Builder()
+            .type(LiquidType.WATER)
+            .price(BigDecimal.valueOf(2))
+            .capacity(0.5)
+            .expiresAt(expiresAt)
+            .build();
+    }
+}
@@ -0,0 +1,195 @@
+package tdd.vendingMachine;
+
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.products.Product;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tdd.vendingMachine.ExpiryFixtures.HOUR;
+import static tdd.vendingMachine.ExpiryFixtures.START;
+import static tdd.vendingMachine.ExpiryFixtures.TICK;
+import static tdd.vendingMachine.ExpiryFixtures.coke;
+import static tdd.vendingMachine.ExpiryFixtures.expiryWheel;
+import static tdd.vendingMachine.ExpiryFixtures.virtualClock;
+
+/**
+ * Tests of expiry wheel and of expiry aware shelves.
+ *
+ * @author Łukasz Gadawski
+ */
+public class ExpiryWheelTest {
+
+    private VirtualClock clock;
+    private ExpiryWheel wheel;
+
+    @Before
+    public void init() {
+        clock = virtualClock();
+        wheel = expiryWheel();
+    }
+
+    @Test
+    public void testCallbacksFireWithinOneTickAfterDeadline() {
+        Random random = new Random(41);
+        int callbacks = 5000;
+        long[] deadlines = new long[callbacks];
+        long[] firedAt = new long[callbacks];
+        long horizon = 2 * TICK * (1L << (ExpiryWheel.SLOTS_BITS * 3));
+        for (int i = 0; i < callbacks; i++) {
+            int callback = i;
+            // few deadlines are beyond range of all levels
+            long range = i % 100 == 0 ? 20 * horizon : horizon;
+            deadlines[i] = START + 1 + (long) (random.nextDouble() * range);
+            wheel.schedule(deadlines[i], () -> firedAt[callback] = clock.millis());
+        }
+        assertThat(wheel.size()).isEqualTo(callbacks);
+
+        long step = 7 * TICK + 13;
+        while (wheel.size() > 0) {
+            clock.advanceTo(clock.millis() + step);
+            wheel.advanceTo(clock.millis());
+        }
+
+        for (int i = 0; i < callbacks; i++) {
+            assertThat(firedAt[i]).isGreaterThanOrEqualTo(deadlines[i]);
+            assertThat(firedAt[i]).isLessThan(deadlines[i] + TICK + step);
+        }
+    }
+
+    @Test
+    public void testCanceledCallbackDoesNotFire() {
+        int[] fired = new int[1];
+        ExpiryWheel.Timeout canceled = wheel.schedule(START + HOUR, () -> fired[0]++);
+        wheel.schedule(START + HOUR, () -> fired[0]++);
+        wheel.schedule(START - 1, () -> fired[0] += 10);
+
+        assertThat(canceled.cancel()).isTrue();
+        assertThat(canceled.cancel()).isFalse();
+        assertThat(fired[0]).isEqualTo(10);
+
+        wheel.advanceTo(START + HOUR);
+
+        assertThat(fired[0]).isEqualTo(11);
+        assertThat(wheel.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testShelveVendsSoonestExpiringProductAndEvictsExpiredOnes() {
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(20)
+            .setNumberOfShelves(1)
+            .setMaxProductsOnShelve(4)
+            .setBundle("i18n.messages")
+            .setClock(clock)
+            .setExpiryWheel(wheel)
+            .build());
+        Product laterBatch = coke(START + 2 * HOUR);
+        Product soonerBatch = coke(START + HOUR);
+        machine.restock(new RestockPlan.Builder().coinLevelEachType(10).shelveLevel(0, laterBatch, 2).build());
+        machine.restock(new RestockPlan.Builder().shelveLevel(0, soonerBatch, 4).build());
+
+        assertThat(machine.selectShelveNumber(0).getExpiresAt()).isEqualTo(START + HOUR);
+        machine.insertCoin(CoinDenomination.FIVE);
+        assertThat(machine.getReturnedProduct().getExpiresAt()).isEqualTo(START + HOUR);
+
+        machine.selectShelveNumber(0);
+        machine.insertCoin(CoinDenomination.ONE);
+        clock.advanceTo(START + HOUR);
+        machine.cancel();
+
+        assertThat(machine.getNumberOfProductsOnShelve(0)).isEqualTo(2);
+        assertThat(machine.collectExpiredProducts()).extracting(Product::getExpiresAt).containsExactly(START + HOUR);
+
+        clock.advanceTo(START + 2 * HOUR - 1);
+        assertThat(machine.selectShelveNumber(0).getExpiresAt()).isEqualTo(START + 2 * HOUR);
+        machine.cancel();
+
+        clock.advanceTo(START + 2 * HOUR + TICK);
+        assertThat(machine.getNumberOfProductsOnShelve(0)).isEqualTo(0);
+        assertThat(machine.collectExpiredProducts()).hasSize(2);
+        assertThat(machine.collectExpiredProducts()).isEmpty();
+        assertThat(wheel.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testOneTimeoutPerShelveAndExpiryCanceledWhenShelveEmpties() {
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(20)
+            .setNumberOfShelves(2)
+            .setMaxProductsOnShelve(4)
+            .setBundle("i18n.messages")
+            .setClock(clock)
+            .setExpiryWheel(wheel)
+            .build());
+        machine.restock(new RestockPlan.Builder()
+            .coinLevelEachType(10)
+            .shelveLevel(0, coke(START + HOUR), 3)
+            .shelveLevel(1, coke(START + HOUR), 1)
+            .build());
+        machine.restock(new RestockPlan.Builder().shelveLevel(0, coke(START + HOUR), 4).build());
+
+        assertThat(wheel.size()).isEqualTo(2);
+
+        // reserved last product is returned on emptied shelve
+        machine.selectShelveNumber(1);
+        machine.insertCoin(CoinDenomination.ONE);
+        assertThat(wheel.size()).isEqualTo(1);
+        machine.cancel();
+        assertThat(wheel.size()).isEqualTo(2);
+
+        machine.selectShelveNumber(1);
+        machine.insertCoin(CoinDenomination.FIVE);
+        machine.clearProductsFromShelves();
+
+        assertThat(wheel.size()).isEqualTo(0);
+        clock.advanceTo(START + 2 * HOUR);
+        assertThat(machine.collectExpiredProducts()).isEmpty();
+    }
+
+    @Test
+    public void testProductExpiredWithinLastTickIsNotSold() {
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(20)
+            .setNumberOfShelves(1)
+            .setMaxProductsOnShelve(1)
+            .setBundle("i18n.messages")
+            .setClock(clock)
+            .setExpiryWheel(new ExpiryWheel(HOUR, START))
+            .build());
+        machine.feedWithProducts(Collections.singletonMap(0, coke(START + 10)));
+
+        clock.advanceTo(START + 10);
+
+        assertThat(machine.selectShelveNumber(0)).isNull();
+        assertThat(machine.collectExpiredProducts()).hasSize(1);
+    }
+
+    @Test
+    public void testDefaultWheelFollowsVirtualClock() {
+        VendingMachineConfig config = new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(20)
+            .setNumberOfShelves(1)
+            .setMaxProductsOnShelve(2)
+            .setBundle("i18n.messages")
+            .setClock(clock)
+            .build();
+        VendingMachine machine = new VendingMachine(config);
+        machine.feedWithProducts(Collections.singletonMap(0, coke(START + HOUR)));
+
+        assertThat(config.getExpiryWheel()).isNotSameAs(ExpiryWheel.shared());
+        assertThat(new VendingMachineConfig.Builder(config).build().getExpiryWheel())
+            .isSameAs(config.getExpiryWheel());
+        assertThat(new VendingMachineConfig.Builder(config).setClock(Clock.systemUTC()).build().getExpiryWheel())
+            .isSameAs(ExpiryWheel.shared());
+        assertThat(machine.getNumberOfProductsOnShelve(0)).isEqualTo(2);
+
+        clock.advanceTo(START + HOUR + TICK);
+
+        assertThat(machine.getNumberOfProductsOnShelve(0)).isEqualTo(0);
+        assertThat(machine.collectExpiredProducts()).hasSize(2);
+    }
+}
@@ -0,0 +1,144 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of int keyed open addressing map, persistent trie map and sparse shelves built on them.
+ *
+ * @author Łukasz Gadawski
+ */
+public class IntObjectMapTest {
+
+    @Test
+    public void testRandomPutsAndRemovesMatchHashMap() {
+        Random random = new Random(7);
+        IntObjectMap<String> map = new IntObjectMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(300);
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                String value = "v" + i;
+                assertThat(map.put(key, value)).isEqualTo(expected.put(key, value));
+            }
+            assertThat(map.size()).isEqualTo(expected.size());
+        }
+
+        for (int key = 0; key < 300; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+        assertThat(map.keys()).containsExactly(new TreeMap<>(expected).keySet().stream()
+            .mapToInt(Integer::intValue).toArray());
+        assertThat(map.get(-1)).isNull();
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        map.put(1, "one");
+        IntObjectMap<String> copy = map.copy();
+
+        map.put(2, "two");
+        map.remove(1);
+
+        assertThat(copy.keys()).containsExactly(1);
+        assertThat(copy.get(1)).isEqualTo("one");
+        assertThat(map.keys()).containsExactly(2);
+    }
+
+    @Test
+    public void testPersistentMapMatchesTreeMapAndKeepsOlderVersions() {
+        Random random = new Random(11);
+        PersistentIntMap<String> map = PersistentIntMap.empty();
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        List<PersistentIntMap<String>> versions = Lists.newArrayList();
+        List<TreeMap<Integer, String>> expectedVersions = Lists.newArrayList();
+
+        for (int i = 0; i < 20_000; i++) {
+            // keys of very different magnitude make trie grow by many levels
+            int key = random.nextInt(4) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(2000);
+            if (random.nextInt(3) == 0 && !expected.isEmpty()) {
+                key = random.nextBoolean() ? expected.firstKey() : key;
+                map = map.remove(key);
+                expected.remove(key);
+            } else {
+                map = map.put(key, "v" + i);
+                expected.put(key, "v" + i);
+            }
+            assertThat(map.size()).isEqualTo(expected.size());
+            if (i % 1000 == 0) {
+                versions.add(map);
+                expectedVersions.add(new TreeMap<>(expected));
+            }
+        }
+
+        for (int i = 0; i < versions.size(); i++) {
+            TreeMap<Integer, String> version = expectedVersions.get(i);
+            assertThat(versions.get(i).keys()).containsExactly(version.keySet().stream()
+                .mapToInt(Integer::intValue).toArray());
+            for (Map.Entry<Integer, String> entry : version.entrySet()) {
+                assertThat(versions.get(i).get(entry.getKey())).isEqualTo(entry.getValue());
+            }
+        }
+        assertThat(map.get(-1)).isNull();
+        assertThat(map.remove(-1)).isSameAs(map);
+    }
+
+    @Test
+    public void testPersistentMapGetsEmptyAfterLastRemove() {
+        PersistentIntMap<String> map = PersistentIntMap.<String>empty().put(Integer.MAX_VALUE, "max").put(0, "zero");
+
+        assertThat(map.keys()).containsExactly(0, Integer.MAX_VALUE);
+        assertThat(map.remove(0).remove(Integer.MAX_VALUE).isEmpty()).isTrue();
+        assertThat(map.remove(Integer.MAX_VALUE).keys()).containsExactly(0);
+        assertThat(map.get(Integer.MAX_VALUE)).isEqualTo("max");
+    }
+
+    @Test
+    public void testMachineWithManyShelvesStoresOnlyOccupiedOnes() {
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(100)
+            .setNumberOfShelves(100_000)
+            .setMaxProductsOnShelve(2)
+            .setBundle("i18n.messages")
+            .build());
+        Product water = new Liquid.Builder()
+            .type(LiquidType.WATER)
+            .price(BigDecimal.valueOf(2))
+            .capacity(0.5)
+            .build();
+        machine.feedWithCoinsEachType(10);
+        machine.feedWithProducts(ImmutableMap.of(5, water, 99_999, water));
+
+        ShelvesSnapshot snapshot = machine.shelves();
+        assertThat(snapshot).hasSize(100_000);
+        assertThat(snapshot.occupiedShelveNumbers()).containsExactly(5, 99_999);
+        assertThat(snapshot.get(99_999)).hasSize(2);
+        assertThat(snapshot.get(50_000)).isEmpty();
+        assertThat(snapshot.get(100_000)).isNull();
+
+        for (int i = 0; i < 2; i++) {
+            machine.selectShelveNumber(5);
+            machine.insertCoin(CoinDenomination.TWO);
+        }
+
+        assertThat(machine.shelves().occupiedShelveNumbers()).containsExactly(99_999);
+        assertThat(machine.shelvesOfType(LiquidType.WATER).stream().toArray()).containsExactly(99_999);
+    }
+}
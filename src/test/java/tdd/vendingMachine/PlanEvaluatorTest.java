@@ -0,0 +1,114 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.pricing.PricingRules;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+import tdd.vendingMachine.replay.PlanEvaluation;
+import tdd.vendingMachine.replay.PlanEvaluator;
+import tdd.vendingMachine.replay.RecordedSession;
+import tdd.vendingMachine.replay.SessionRecordingReader;
+import tdd.vendingMachine.replay.WhatIfPlan;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of evaluating what-if plans against demand trace.
+ *
+ * @author Łukasz Gadawski
+ */
+public class PlanEvaluatorTest {
+
+    private static final String TRACE =
+        "session trace\n"
+            + "1000 SELECT 1 => - | - | -\n"
+            + "1500 INSERT TWO => - | - | -\n"
+            + "2000 SELECT 1 => - | - | -\n"
+            + "2500 INSERT TWO => - | - | -\n"
+            + "3000 SELECT 0 => - | - | -\n"
+            + "3500 INSERT FIVE => - | - | -\n"
+            + "end\n";
+
+    private VendingMachine machine;
+    private Product water;
+    private RecordedSession trace;
+
+    @Before
+    public void init() throws IOException {
+        Product coke = liquid(LiquidType.COKE, 2.5);
+        water = liquid(LiquidType.WATER, 2);
+        machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(10)
+            .setNumberOfShelves(2)
+            .setMaxProductsOnShelve(4)
+            .setBundle("i18n.messages")
+            .build());
+        machine.feedWithCoinsEachType(5);
+        machine.feedWithProducts(ImmutableMap.of(0, coke));
+        machine.restock(new RestockPlan.Builder().shelveLevel(1, water, 1).build());
+        trace = SessionRecordingReader.read(new StringReader(TRACE)).get(0);
+    }
+
+    @Test
+    public void testPlansAreRankedByRevenueChangeFailuresAndStockOuts() {
+        WhatIfPlan asIs = new WhatIfPlan.Builder("as is").build();
+        WhatIfPlan restock = new WhatIfPlan.Builder("restock water")
+            .restock(new RestockPlan.Builder().shelveLevel(1, water, 3).build())
+            .build();
+        WhatIfPlan noSmallCoins = new WhatIfPlan.Builder("no small coins")
+            .coinLimit(CoinDenomination.HALF, 0)
+            .coinLimit(CoinDenomination.ONE_FIFTH, 0)
+            .coinLimit(CoinDenomination.ONE_TENTH, 0)
+            .build();
+        WhatIfPlan reprice = new WhatIfPlan.Builder("reprice coke")
+            .pricing(new PricingRules.Builder().basePrice(0, BigDecimal.valueOf(3)).build())
+            .build();
+
+        List<PlanEvaluation> ranking = new PlanEvaluator(ZoneOffset.UTC, ForkJoinPool.commonPool())
+            .evaluate(machine, trace, ImmutableList.of(asIs, restock, noSmallCoins, reprice));
+
+        assertThat(ranking).extracting(PlanEvaluation::getPlan).containsExactly(restock, reprice, asIs, noSmallCoins);
+        assertThat(ranking.get(0).getRevenue()).isEqualByComparingTo("6.5");
+        assertThat(ranking.get(0).getStockOuts()).isEqualTo(0);
+        assertThat(ranking.get(1).getRevenue()).isEqualByComparingTo("5");
+        assertThat(ranking.get(2).getStockOuts()).isEqualTo(1);
+        assertThat(ranking.get(3).getChangeFailures()).isEqualTo(1);
+        assertThat(ranking.get(3).getSales()).isEqualTo(1);
+
+        assertThat(machine.getNumberOfProductsOnShelve(1)).isEqualTo(1);
+        assertThat(machine.coins()).containsEntry(CoinDenomination.HALF, 5);
+        assertThat(machine.getConfig().getPricingEngine()).isNull();
+    }
+
+    @Test
+    public void testOpenTransactionOfMachineIsKept() {
+        machine.selectShelveNumber(0);
+        machine.insertCoin(CoinDenomination.TWO);
+
+        List<PlanEvaluation> ranking = new PlanEvaluator(ZoneOffset.UTC, ForkJoinPool.commonPool())
+            .evaluate(machine, trace, ImmutableList.of(new WhatIfPlan.Builder("as is").build()));
+
+        assertThat(ranking.get(0).getSales()).isEqualTo(2);
+        machine.insertCoin(CoinDenomination.HALF);
+        assertThat(machine.getReturnedProduct()).isNotNull();
+    }
+
+    private static Product liquid(LiquidType type, double price) {
+        return new Liquid.Builder()
+            .type(type)
+            .price(BigDecimal.valueOf(price))
+            .capacity(0.5)
+            .build();
+    }
+}
@@ -0,0 +1,212 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.payment.DebitRecord;
+import tdd.vendingMachine.payment.DebitStatus;
+import tdd.vendingMachine.payment.PrepaidLedger;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of prepaid accounts ledger and paying from prepaid balance.
+ *
+ * @author Łukasz Gadawski
+ */
+public class PrepaidLedgerTest {
+
+    private PrepaidLedger ledger;
+
+    @Before
+    public void init() {
+        ledger = new PrepaidLedger();
+        ledger.openAccount("card-1");
+        ledger.credit("card-1", BigDecimal.valueOf(10));
+    }
+
+    @Test
+    public void testDebitAppliedOncePerDebitId() {
+        DebitRecord first = ledger.debit("debit-1", "card-1", BigDecimal.valueOf(2.5));
+        DebitRecord retried = ledger.debit("debit-1", "card-1", BigDecimal.valueOf(2.5));
+
+        assertThat(first.getStatus()).isEqualTo(DebitStatus.APPROVED);
+        assertThat(retried).isSameAs(first);
+        assertThat(ledger.balance("card-1")).isEqualByComparingTo(BigDecimal.valueOf(7.5));
+        assertThat(ledger.journal()).containsExactly(first);
+    }
+
+    @Test
+    public void testDeclinedDebitsJournaledAndRetryable() {
+        DebitRecord declined = ledger.debit("debit-1", "card-1", BigDecimal.valueOf(12));
+        DebitRecord unknown = ledger.debit("debit-2", "card-2", BigDecimal.ONE);
+
+        assertThat(declined.getStatus()).isEqualTo(DebitStatus.INSUFFICIENT_FUNDS);
+        assertThat(unknown.getStatus()).isEqualTo(DebitStatus.UNKNOWN_ACCOUNT);
+
+        ledger.credit("card-1", BigDecimal.valueOf(2));
+        DebitRecord retried = ledger.debit("debit-1", "card-1", BigDecimal.valueOf(12));
+
+        assertThat(retried.getStatus()).isEqualTo(DebitStatus.APPROVED);
+        assertThat(retried.getBalanceAfter()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(ledger.journal()).containsExactly(declined, unknown, retried);
+    }
+
+    @Test
+    public void testDebitIdReusedForOtherDebitDeclinedAsDuplicate() {
+        DebitRecord first = ledger.debit("debit-1", "card-1", BigDecimal.valueOf(2.5), "payment-1");
+        ledger.openAccount("card-2");
+        ledger.credit("card-2", BigDecimal.valueOf(10));
+
+        DebitRecord otherPayment = ledger.debit("debit-1", "card-1", BigDecimal.valueOf(2.5), "payment-2");
+        DebitRecord otherAccount = ledger.debit("debit-1", "card-2", BigDecimal.valueOf(2.5), "payment-1");
+
+        assertThat(ledger.debit("debit-1", "card-1", BigDecimal.valueOf(2.5), "payment-1")).isSameAs(first);
+        assertThat(otherPayment.getStatus()).isEqualTo(DebitStatus.DUPLICATE);
+        assertThat(otherAccount.getStatus()).isEqualTo(DebitStatus.DUPLICATE);
+        assertThat(ledger.balance("card-1")).isEqualByComparingTo(BigDecimal.valueOf(7.5));
+        assertThat(ledger.balance("card-2")).isEqualByComparingTo(BigDecimal.TEN);
+    }
+
+    @Test
+    public void testOnlyLatestDebitsRememberedAndJournalDrained() {
+        PrepaidLedger smallLedger = new PrepaidLedger(2);
+        smallLedger.openAccount("card-1");
+        smallLedger.credit("card-1", BigDecimal.valueOf(10));
+
+        for (int i = 1; i <= 3; i++) {
+            smallLedger.debit("debit-" + i, "card-1", BigDecimal.ONE);
+        }
+
+        assertThat(smallLedger.isDebited("debit-1")).isFalse();
+        assertThat(smallLedger.isDebited("debit-2")).isTrue();
+        assertThat(smallLedger.isDebited("debit-3")).isTrue();
+
+        assertThat(smallLedger.drainJournal(2)).extracting(DebitRecord::getDebitId)
+            .containsExactly("debit-1", "debit-2");
+        assertThat(smallLedger.drainJournal(2)).extracting(DebitRecord::getDebitId).containsExactly("debit-3");
+        assertThat(smallLedger.drainJournal(2)).isEmpty();
+        assertThat(smallLedger.journal()).isEmpty();
+    }
+
+    @Test
+    public void testMachinePaysRestFromBalance() {
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(10)
+            .setNumberOfShelves(1)
+            .setMaxProductsOnShelve(2)
+            .setBundle("i18n.messages")
+            .setPrepaidLedger(ledger)
+            .build());
+        machine.feedWithProducts(ImmutableMap.of(0, new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build()));
+
+        assertThat(machine.payFromBalance("card-1", "debit-1")).isEqualTo(CardPaymentOutcome.NO_SELECTION);
+
+        machine.selectShelveNumber(0);
+        assertThat(machine.payFromBalance("card-2", "debit-1")).isEqualTo(CardPaymentOutcome.UNKNOWN_ACCOUNT);
+        assertThat(machine.getNumberOfProductsOnShelve(0)).isEqualTo(2);
+
+        machine.insertCoin(CoinDenomination.TWO);
+        assertThat(machine.payFromBalance("card-1", "debit-1")).isEqualTo(CardPaymentOutcome.SALE_COMPLETED);
+
+        assertThat(machine.getReturnedProduct()).isNotNull();
+        assertThat(machine.getReturnedChange()).isEmpty();
+        assertThat(machine.coins().get(CoinDenomination.TWO)).isEqualTo(1);
+        assertThat(ledger.balance("card-1")).isEqualByComparingTo(BigDecimal.valueOf(9.5));
+    }
+
+    @Test
+    public void testMachineDeclinesReusedDebitId() {
+        ledger.openAccount("card-2");
+        ledger.credit("card-2", BigDecimal.valueOf(10));
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(10)
+            .setNumberOfShelves(1)
+            .setMaxProductsOnShelve(3)
+            .setBundle("i18n.messages")
+            .setPrepaidLedger(ledger)
+            .build());
+        machine.feedWithProducts(ImmutableMap.of(0, new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build()));
+
+        machine.selectShelveNumber(0);
+        assertThat(machine.payFromBalance("card-1", "debit-1")).isEqualTo(CardPaymentOutcome.SALE_COMPLETED);
+
+        // the same id, account and amount used for next purchase
+        machine.selectShelveNumber(0);
+        assertThat(machine.payFromBalance("card-1", "debit-1")).isEqualTo(CardPaymentOutcome.DUPLICATE_DEBIT);
+        assertThat(machine.transaction().isOpen()).isFalse();
+        assertThat(machine.getNumberOfProductsOnShelve(0)).isEqualTo(2);
+
+        // the same id used with other account
+        machine.selectShelveNumber(0);
+        assertThat(machine.payFromBalance("card-2", "debit-1")).isEqualTo(CardPaymentOutcome.DUPLICATE_DEBIT);
+        assertThat(machine.getNumberOfProductsOnShelve(0)).isEqualTo(2);
+
+        assertThat(ledger.balance("card-1")).isEqualByComparingTo(BigDecimal.valueOf(7.5));
+        assertThat(ledger.balance("card-2")).isEqualByComparingTo(BigDecimal.TEN);
+        assertThat(machine.payFromBalance("card-2", "debit-2")).isEqualTo(CardPaymentOutcome.SALE_COMPLETED);
+        assertThat(machine.getNumberOfProductsOnShelve(0)).isEqualTo(1);
+    }
+
+    @Test
+    public void testConcurrentDebitsFromManyMachines() throws InterruptedException {
+        int accounts = 64;
+        int threads = 8;
+        int debitsPerThread = accounts * 1500;
+        for (int i = 0; i < accounts; i++) {
+            ledger.openAccount("account-" + i);
+            ledger.credit("account-" + i, BigDecimal.valueOf(1_000_000));
+        }
+
+        ExecutorService machines = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int machine = t;
+            machines.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < debitsPerThread; i++) {
+                    // every debit is sent twice, as if response was lost and machine retried
+                    String debitId = machine + "-" + i;
+                    String accountId = "account-" + (i % accounts);
+                    ledger.debit(debitId, accountId, BigDecimal.valueOf(0.5));
+                    ledger.debit(debitId, accountId, BigDecimal.valueOf(0.5));
+                }
+            });
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        machines.shutdown();
+        assertThat(machines.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        BigDecimal expectedPerAccount = BigDecimal.valueOf(1_000_000)
+            .subtract(BigDecimal.valueOf(0.5).multiply(BigDecimal.valueOf(threads * debitsPerThread / accounts)));
+        for (int i = 0; i < accounts; i++) {
+            assertThat(ledger.balance("account-" + i)).isEqualByComparingTo(expectedPerAccount);
+        }
+        assertThat(ledger.journal()).hasSize(threads * debitsPerThread);
+        System.out.printf("Prepaid debits per second: %.0f%n", 2.0 * threads * debitsPerThread * 1e9 / elapsedNanos);
+    }
+}
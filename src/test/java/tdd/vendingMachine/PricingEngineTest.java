@@ -0,0 +1,146 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.pricing.PricingEngine;
+import tdd.vendingMachine.pricing.PricingRules;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of dynamic pricing of products on shelves.
+ *
+ * @author Łukasz Gadawski
+ */
+public class PricingEngineTest {
+
+    private static final long HOUR = 3_600_000;
+
+    private VirtualClock clock;
+    private Product coke;
+    private PricingRules rules;
+
+    @Before
+    public void init() {
+        clock = new VirtualClock(10 * HOUR, ZoneOffset.UTC);
+        coke = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        rules = new PricingRules.Builder()
+            .basePrice(0, BigDecimal.valueOf(2))
+            .timeBand(LocalTime.of(14, 0), LocalTime.of(16, 0), BigDecimal.valueOf(1.5))
+            .timeBand(LocalTime.of(22, 0), LocalTime.of(2, 0), BigDecimal.valueOf(0.5))
+            .demandMultiplier(0, BigDecimal.valueOf(1.1))
+            .build();
+    }
+
+    @Test
+    public void testPriceLookups() {
+        PricingEngine engine = new PricingEngine(rules, ZoneOffset.UTC, Runnable::run);
+
+        assertThat(engine.priceOf(0, coke, 10 * HOUR)).isEqualByComparingTo(BigDecimal.valueOf(2.2));
+        assertThat(engine.priceOf(0, coke, 14 * HOUR)).isEqualByComparingTo(BigDecimal.valueOf(3.3));
+        assertThat(engine.priceOf(0, coke, 16 * HOUR)).isEqualByComparingTo(BigDecimal.valueOf(2.2));
+        assertThat(engine.priceOf(0, coke, 23 * HOUR)).isEqualByComparingTo(BigDecimal.valueOf(1.1));
+        assertThat(engine.priceOf(0, coke, 25 * HOUR)).isEqualByComparingTo(BigDecimal.valueOf(1.1));
+
+        // shelve not priced by rules
+        assertThat(engine.priceOf(1, coke, 14 * HOUR)).isEqualByComparingTo(coke.getPrice());
+    }
+
+    @Test
+    public void testTimeBandsFollowDaylightSavingTime() {
+        PricingEngine engine = new PricingEngine(rules, ZoneId.of("Europe/Warsaw"), Runnable::run);
+        long summer = Instant.parse("2026-07-15T12:30:00Z").toEpochMilli();
+        long winter = Instant.parse("2026-01-15T13:30:00Z").toEpochMilli();
+
+        // 14:30 local time in summer and in winter
+        assertThat(engine.priceOf(0, coke, summer)).isEqualByComparingTo(BigDecimal.valueOf(3.3));
+        assertThat(engine.priceOf(0, coke, winter)).isEqualByComparingTo(BigDecimal.valueOf(3.3));
+        // 16:30 local time in summer, 15:30 in winter
+        assertThat(engine.priceOf(0, coke, summer + 2 * HOUR)).isEqualByComparingTo(BigDecimal.valueOf(2.2));
+        assertThat(engine.priceOf(0, coke, winter + 2 * HOUR)).isEqualByComparingTo(BigDecimal.valueOf(2.2));
+        assertThat(engine.priceOf(0, coke, winter + HOUR)).isEqualByComparingTo(BigDecimal.valueOf(3.3));
+    }
+
+    @Test
+    public void testPricesRoundedToSmallestCoin() {
+        PricingEngine engine = new PricingEngine(new PricingRules.Builder()
+            .basePrice(0, BigDecimal.valueOf(2.5))
+            .demandMultiplier(0, BigDecimal.valueOf(0.9))
+            .build(), ZoneOffset.UTC, Runnable::run);
+
+        assertThat(engine.priceOf(0, coke, 0)).isEqualByComparingTo(BigDecimal.valueOf(2.3));
+    }
+
+    @Test
+    public void testRulesRebuiltInBackground() throws InterruptedException {
+        CountDownLatch rebuildAllowed = new CountDownLatch(1);
+        Executor blockedExecutor = task -> new Thread(() -> {
+            try {
+                rebuildAllowed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            task.run();
+        }).start();
+        PricingEngine engine = new PricingEngine(rules, ZoneOffset.UTC, blockedExecutor);
+
+        CompletableFuture<Void> update = engine.updateRules(new PricingRules.Builder()
+            .basePrice(0, BigDecimal.valueOf(4))
+            .build());
+
+        // old prices in use until rebuild completes
+        assertThat(engine.priceOf(0, coke, 10 * HOUR)).isEqualByComparingTo(BigDecimal.valueOf(2.2));
+
+        rebuildAllowed.countDown();
+        update.join();
+
+        assertThat(engine.priceOf(0, coke, 10 * HOUR)).isEqualByComparingTo(BigDecimal.valueOf(4));
+    }
+
+    @Test
+    public void testMachineSellsForEffectivePrice() {
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(10)
+            .setNumberOfShelves(1)
+            .setMaxProductsOnShelve(2)
+            .setBundle("i18n.messages")
+            .setClock(clock)
+            .setPricingEngine(new PricingEngine(rules, ZoneOffset.UTC, Runnable::run))
+            .build());
+        machine.feedWithCoinsEachType(5);
+        machine.feedWithProducts(ImmutableMap.of(0, coke));
+
+        clock.advanceTo(14 * HOUR);
+        machine.selectShelveNumber(0);
+
+        assertThat(machine.getSelectedProductPrice()).isEqualByComparingTo(BigDecimal.valueOf(3.3));
+        assertThat(machine.getDisplayMessage()).isEqualTo("3.3");
+
+        machine.insertCoin(CoinDenomination.TWO);
+        assertThat(machine.getDisplayMessage()).isEqualTo("1.3");
+
+        // price stays as displayed at selection time
+        clock.advanceTo(16 * HOUR);
+        assertThat(machine.insertCoin(CoinDenomination.ONE)).isEqualTo(InsertCoinOutcome.ACCEPTED);
+        assertThat(machine.insertCoin(CoinDenomination.HALF)).isEqualTo(InsertCoinOutcome.SALE_COMPLETED);
+        assertThat(CoinDenomination.ValueCounter.count(machine.getReturnedChange()))
+            .isEqualByComparingTo(BigDecimal.valueOf(0.2));
+    }
+}
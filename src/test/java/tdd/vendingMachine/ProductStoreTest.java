@@ -0,0 +1,98 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.ProductCategory;
+import tdd.vendingMachine.products.ProductStore;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+import tdd.vendingMachine.products.snack.Snack;
+import tdd.vendingMachine.products.snack.SnackType;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of columnar product store.
+ *
+ * @author Łukasz Gadawski
+ */
+public class ProductStoreTest {
+
+    private Product coke;
+    private Product water;
+    private Product chocolateBar;
+
+    @Before
+    public void init() {
+        coke = new Liquid.Builder().type(LiquidType.COKE).price(BigDecimal.valueOf(2.5)).capacity(0.25).build();
+        water = new Liquid.Builder().type(LiquidType.WATER).price(BigDecimal.valueOf(3)).capacity(0.5).build();
+        chocolateBar = new Snack.Builder().type(SnackType.CHOCOLATE_BAR).price(BigDecimal.valueOf(1.7))
+            .weight(0.1).build();
+    }
+
+    @Test
+    public void testViewsAndProductsReadStoredAttributes() {
+        ProductStore store = new ProductStore(1);
+        int cokeId = store.add(coke);
+        int chocolateBarId = store.add(chocolateBar);
+
+        ProductStore.View view = store.view().moveTo(chocolateBarId);
+        assertThat(view.getPriceMinor()).isEqualTo(170);
+        assertThat(view.getType()).isEqualTo(SnackType.CHOCOLATE_BAR);
+        assertThat(view.getCategory()).isEqualTo(ProductCategory.SNACK);
+        assertThat(view.getMeasure()).isEqualTo(0.1);
+
+        Product restored = store.product(cokeId);
+        assertThat(restored).isInstanceOf(Liquid.class);
+        assertThat(restored.getType()).isEqualTo(LiquidType.COKE);
+        assertThat(restored.getPrice()).isEqualByComparingTo(coke.getPrice());
+        assertThat(restored.getMeasure()).isEqualTo(0.25);
+        assertThat(store.product(chocolateBarId).getPrice()).isEqualByComparingTo(chocolateBar.getPrice());
+    }
+
+    @Test
+    public void testCheaperThanQuery() {
+        ProductStore store = new ProductStore();
+        store.add(coke);
+        store.add(water);
+        store.add(chocolateBar);
+        store.add(coke);
+
+        assertThat(store.cheaperThan(ProductCategory.LIQUID, BigDecimal.valueOf(3))).containsExactly(0, 3);
+        assertThat(store.cheaperThan(ProductCategory.SNACK, BigDecimal.valueOf(3))).containsExactly(2);
+        assertThat(store.count(LiquidType.COKE)).isEqualTo(2);
+    }
+
+    @Test
+    public void testCatalogQueryMatchesObjectScan() {
+        Random random = new Random(40);
+        List<Product> objects = Lists.newArrayList();
+        ProductStore store = new ProductStore();
+        for (int i = 0; i < 1000; i++) {
+            BigDecimal price = BigDecimal.valueOf(10 + random.nextInt(40), 1);
+            Product product = random.nextBoolean()
+                ? new Liquid.Builder().type(LiquidType.COKE).price(price).capacity(0.25).build()
+                : new Snack.Builder().type(SnackType.CHOCOLATE_BAR).price(price).weight(0.1).build();
+            objects.add(product);
+            store.add(product);
+        }
+        BigDecimal limit = BigDecimal.valueOf(3);
+
+        List<Integer> expected = Lists.newArrayList();
+        for (int i = 0; i < objects.size(); i++) {
+            Product product = objects.get(i);
+            if (product.getCategory() == ProductCategory.LIQUID && product.getPrice().compareTo(limit) < 0) {
+                expected.add(i);
+            }
+        }
+
+        assertThat(store.cheaperThan(ProductCategory.LIQUID, limit)).containsExactly(Ints.toArray(expected));
+    }
+}
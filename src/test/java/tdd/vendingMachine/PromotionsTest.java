@@ -0,0 +1,218 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.ProductCategory;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+import tdd.vendingMachine.products.snack.Snack;
+import tdd.vendingMachine.products.snack.SnackType;
+import tdd.vendingMachine.promotions.PromotionRule;
+import tdd.vendingMachine.promotions.PromotionRuleParser;
+import tdd.vendingMachine.promotions.PromotionSession;
+import tdd.vendingMachine.promotions.Promotions;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of promotion rules compiled into decision table.
+ *
+ * @author Łukasz Gadawski
+ */
+public class PromotionsTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+
+    private static final String RULES = ""
+        + "# afternoon drinks\n"
+        + "10% off COKE between 14:00 and 16:00\n"
+        + "5% off LIQUID between 22:00 and 02:00\n"
+        + "50% off SNACK on item 2 in session\n"
+        + "20% off ANY on item 3 in session\n";
+
+    private VirtualClock clock;
+    private Promotions promotions;
+    private Product coke;
+    private Product chocolateBar;
+
+    @Before
+    public void init() {
+        clock = new VirtualClock(10 * HOUR, ZoneOffset.UTC);
+        promotions = Promotions.compile(RULES, ZoneOffset.UTC, Duration.ofMinutes(2));
+        coke = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        chocolateBar = new Snack.Builder()
+            .type(SnackType.CHOCOLATE_BAR)
+            .price(BigDecimal.valueOf(2))
+            .weight(0.1)
+            .build();
+    }
+
+    @Test
+    public void testRulesParsed() {
+        assertThat(promotions.getRules()).extracting(Object::toString).containsExactly(
+            "10% off COKE between 14:00 and 16:00",
+            "5% off LIQUID between 22:00 and 02:00",
+            "50% off SNACK on item 2 in session",
+            "20% off ANY on item 3 in session");
+
+        assertThatThrownBy(() -> PromotionRuleParser.parse("10% off COKE\n10% off BEER"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("line 2");
+    }
+
+    @Test
+    public void testDiscountIsBelowFullPrice() {
+        assertThatThrownBy(() -> new PromotionRule.Builder().percent(100))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Discount must be 1-99 percent: 100");
+        assertThat(Promotions.discountedPrice(BigDecimal.valueOf(2.5), 99)).isEqualByComparingTo("0.1");
+    }
+
+    @Test
+    public void testTimeWindowDiscounts() {
+        PromotionSession session = new PromotionSession();
+
+        assertThat(promotions.discountPercent(LiquidType.COKE, 10 * HOUR, session)).isEqualTo(0);
+        assertThat(promotions.discountPercent(LiquidType.COKE, 15 * HOUR, session)).isEqualTo(10);
+        assertThat(promotions.discountPercent(LiquidType.WATER, 15 * HOUR, session)).isEqualTo(0);
+        assertThat(promotions.discountPercent(LiquidType.WATER, 23 * HOUR, session)).isEqualTo(5);
+        assertThat(promotions.discountPercent(LiquidType.WATER, HOUR + 59 * MINUTE, session)).isEqualTo(5);
+        assertThat(promotions.discountPercent(SnackType.CHOCOLATE_BAR, 23 * HOUR, session)).isEqualTo(0);
+    }
+
+    @Test
+    public void testTimeWindowsFollowDaylightSavingTime() {
+        Promotions local = Promotions.compile(RULES, ZoneId.of("Europe/Warsaw"), Duration.ofMinutes(2));
+        PromotionSession session = new PromotionSession();
+        long summer = Instant.parse("2026-07-15T12:30:00Z").toEpochMilli();
+        long winter = Instant.parse("2026-01-15T13:30:00Z").toEpochMilli();
+
+        // 14:30 local time in summer and in winter
+        assertThat(local.discountPercent(LiquidType.COKE, summer, session)).isEqualTo(10);
+        assertThat(local.discountPercent(LiquidType.COKE, winter, session)).isEqualTo(10);
+        // 16:30 local time in summer, 15:30 in winter
+        assertThat(local.discountPercent(LiquidType.COKE, summer + 2 * HOUR, session)).isEqualTo(0);
+        assertThat(local.discountPercent(LiquidType.COKE, winter + HOUR, session)).isEqualTo(10);
+    }
+
+    @Test
+    public void testSecondSnackInSessionHalfPrice() {
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(20)
+            .setNumberOfShelves(2)
+            .setMaxProductsOnShelve(5)
+            .setBundle("i18n.messages")
+            .setClock(clock)
+            .setPromotions(promotions)
+            .build());
+        machine.feedWithCoinsEachType(5);
+        machine.feedWithProducts(ImmutableMap.of(0, coke, 1, chocolateBar));
+
+        machine.selectShelveNumber(1);
+        assertThat(machine.getSelectedProductPrice()).isEqualByComparingTo(BigDecimal.valueOf(2));
+        assertThat(machine.insertCoin(CoinDenomination.TWO)).isEqualTo(InsertCoinOutcome.SALE_COMPLETED);
+
+        clock.advanceTo(10 * HOUR + MINUTE);
+        machine.selectShelveNumber(1);
+        assertThat(machine.getSelectedProductPrice()).isEqualByComparingTo(BigDecimal.valueOf(1));
+        assertThat(machine.insertCoin(CoinDenomination.ONE)).isEqualTo(InsertCoinOutcome.SALE_COMPLETED);
+
+        // third product of any kind
+        clock.advanceTo(10 * HOUR + 2 * MINUTE);
+        machine.selectShelveNumber(0);
+        assertThat(machine.getSelectedProductPrice()).isEqualByComparingTo(BigDecimal.valueOf(2));
+        machine.cancel();
+
+        // canceled selection does not count, idle session expires
+        clock.advanceTo(10 * HOUR + 5 * MINUTE);
+        machine.selectShelveNumber(1);
+        assertThat(machine.getSelectedProductPrice()).isEqualByComparingTo(BigDecimal.valueOf(2));
+    }
+
+    @Test
+    public void testCompiledTableMatchesNaiveInterpreter() {
+        Random random = new Random(34);
+        int samples = 1_000_000;
+        long[] times = new long[samples];
+        Enum<?>[] types = new Enum<?>[samples];
+        PromotionSession[] sessions = new PromotionSession[16];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = new PromotionSession();
+            for (int sale = random.nextInt(5); sale > 0; sale--) {
+                sessions[i].recordSale(ProductCategory.typeOfIndex(random.nextInt(ProductCategory.typeCount())), 0);
+            }
+        }
+        for (int i = 0; i < samples; i++) {
+            times[i] = random.nextInt(24 * 60) * MINUTE;
+            types[i] = ProductCategory.typeOfIndex(random.nextInt(ProductCategory.typeCount()));
+        }
+
+        NaiveInterpreter naive = new NaiveInterpreter(PromotionRuleParser.parse(RULES));
+        for (int i = 0; i < samples; i++) {
+            PromotionSession session = sessions[i % sessions.length];
+            assertThat(promotions.discountPercent(types[i], times[i], session))
+                .isEqualTo(naive.discountPercent(types[i], times[i], session));
+        }
+
+        long compiledNanos = Long.MAX_VALUE;
+        long naiveNanos = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < samples; i++) {
+                checksum += promotions.discountPercent(types[i], times[i], sessions[i % sessions.length]);
+            }
+            compiledNanos = Math.min(compiledNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < samples; i++) {
+                checksum -= naive.discountPercent(types[i], times[i], sessions[i % sessions.length]);
+            }
+            naiveNanos = Math.min(naiveNanos, System.nanoTime() - start);
+        }
+
+        assertThat(checksum).isEqualTo(0);
+        System.out.printf("Promotion evaluations per second: compiled %.0f, naive %.0f%n",
+            samples * 1e9 / compiledNanos, samples * 1e9 / naiveNanos);
+    }
+
+    /**
+     * Evaluates promotions by walking rule list, reference for compiled table.
+     */
+    private static class NaiveInterpreter {
+
+        private final List<PromotionRule> rules;
+
+        private NaiveInterpreter(List<PromotionRule> rules) {
+            this.rules = rules;
+        }
+
+        private int discountPercent(Enum<?> type, long epochMillis, PromotionSession session) {
+            int minute = (int) (epochMillis / MINUTE % (24 * 60));
+            int best = 0;
+            for (PromotionRule rule : rules) {
+                if (rule.matches(minute, type, session.countOfType(ProductCategory.typeIndex(type)),
+                    session.countOfCategory(ProductCategory.of(type)), session.count())) {
+                    best = Math.max(best, rule.getPercent());
+                }
+            }
+            return best;
+        }
+    }
+}
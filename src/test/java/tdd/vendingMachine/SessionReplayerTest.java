@@ -0,0 +1,167 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.pricing.PricingEngine;
+import tdd.vendingMachine.pricing.PricingRules;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+import tdd.vendingMachine.replay.RecordedSession;
+import tdd.vendingMachine.replay.ReplayMismatch;
+import tdd.vendingMachine.replay.ReplayReport;
+import tdd.vendingMachine.replay.SessionRecordingReader;
+import tdd.vendingMachine.replay.SessionReplayer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of replaying recorded customer sessions.
+ *
+ * @author Łukasz Gadawski
+ */
+public class SessionReplayerTest {
+
+    private static final String RECORDING =
+        "# two customers buying coke\n"
+            + "session first\n"
+            + "1000 SELECT 0 => 2.5 | - | -\n"
+            + "1800 INSERT TWO => 0.5 | - | -\n"
+            + "2300 INSERT ONE => hello | 2.5 | HALF:1\n"
+            + "end\n"
+            + "\n"
+            + "session second\n"
+            + "5000 INSERT ONE => hello | - | ONE:1\n"
+            + "6000 SELECT 0 => 2.5 | - | -\n"
+            + "6500 INSERT ONE => 1.5 | - | -\n"
+            + "7000 CANCEL => hello | - | ONE:1\n"
+            + "end\n";
+
+    private SessionReplayer replayer;
+
+    @Before
+    public void init() {
+        Product coke = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+
+        replayer = new SessionReplayer(clock -> {
+            VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+                .setMaxCoinNumberOfEachTypeInVendingMachine(10)
+                .setNumberOfShelves(2)
+                .setMaxProductsOnShelve(4)
+                .setBundle("i18n.messages")
+                .setClock(clock)
+                .build());
+            machine.feedWithCoinsEachType(5);
+            machine.feedWithProducts(ImmutableMap.of(0, coke, 1, coke));
+            return machine;
+        }, ZoneOffset.UTC);
+    }
+
+    @Test
+    public void testReadingRecording() throws IOException {
+        List<RecordedSession> sessions = SessionRecordingReader.read(new StringReader(RECORDING));
+
+        assertThat(sessions).hasSize(2);
+        assertThat(sessions.get(0).getId()).isEqualTo("first");
+        assertThat(sessions.get(0).getEvents()).hasSize(3);
+        assertThat(sessions.get(1).getEvents()).hasSize(4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadingMalformedRecording() throws IOException {
+        SessionRecordingReader.read(new StringReader("session broken\n1000 SELECT 0\nend\n"));
+    }
+
+    @Test
+    public void testReplayMatchingSessions() throws IOException {
+        List<ReplayReport> reports = replayer.replayAll(SessionRecordingReader.read(new StringReader(RECORDING)));
+
+        assertThat(reports).hasSize(2);
+        for (ReplayReport report : reports) {
+            assertThat(report.getMismatches()).isEmpty();
+        }
+        assertThat(reports.get(1).getReplayedEvents()).isEqualTo(4);
+    }
+
+    @Test
+    public void testReplayReportsMismatch() throws IOException {
+        String recording = "session changed-price\n"
+            + "1000 SELECT 0 => 2.0 | - | -\n"
+            + "1500 INSERT TWO => hello | 2.0 | -\n"
+            + "end\n";
+
+        ReplayReport report = replayer.replay(SessionRecordingReader.read(new StringReader(recording)).get(0));
+
+        assertThat(report.isMatching()).isFalse();
+        assertThat(report.getMismatches()).hasSize(2);
+
+        ReplayMismatch mismatch = report.getMismatches().get(1);
+        assertThat(mismatch.getEventIndex()).isEqualTo(1);
+        assertThat(mismatch.getActual().getDisplay()).isEqualTo("0.5");
+        assertThat(mismatch.getActual().getVendedProductPrice()).isNull();
+    }
+
+    @Test
+    public void testReplayComparesChargedPrice() throws IOException {
+        Product coke = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        SessionReplayer pricedReplayer = new SessionReplayer(clock -> {
+            VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+                .setMaxCoinNumberOfEachTypeInVendingMachine(10)
+                .setNumberOfShelves(1)
+                .setMaxProductsOnShelve(4)
+                .setBundle("i18n.messages")
+                .setClock(clock)
+                .setPricingEngine(new PricingEngine(new PricingRules.Builder()
+                    .basePrice(0, BigDecimal.valueOf(2))
+                    .build(), ZoneOffset.UTC, Runnable::run))
+                .build());
+            machine.feedWithCoinsEachType(5);
+            machine.feedWithProducts(ImmutableMap.of(0, coke));
+            return machine;
+        }, ZoneOffset.UTC);
+        String recording = "session priced\n"
+            + "1000 SELECT 0 => 2.0 | - | -\n"
+            + "1500 INSERT TWO => hello | 2.0 | -\n"
+            + "end\n";
+
+        ReplayReport report = pricedReplayer.replay(SessionRecordingReader.read(new StringReader(recording)).get(0));
+
+        assertThat(report.getMismatches()).isEmpty();
+    }
+
+    @Test
+    public void testParallelReplay() throws IOException {
+        List<RecordedSession> sessions = SessionRecordingReader.read(new StringReader(RECORDING));
+        List<RecordedSession> manySessions = Collections.nCopies(50, sessions.get(0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<ReplayReport> reports = replayer.replayAll(manySessions, executor);
+
+            assertThat(reports).hasSize(manySessions.size());
+            for (ReplayReport report : reports) {
+                assertThat(report.isMatching()).isTrue();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.display.DisplayMessages;
+import tdd.vendingMachine.facade.user.UserVendingMachineFacade;
+import tdd.vendingMachine.facade.user.UserVendingMachineFacadeImpl;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+import tdd.vendingMachine.products.snack.Snack;
+import tdd.vendingMachine.products.snack.SnackType;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of shelve indexes by product type and price.
+ *
+ * @author Łukasz Gadawski
+ */
+public class ShelveIndexTest {
+
+    private VendingMachine machine;
+    private Product expensiveCoke;
+    private Product coke;
+    private Product water;
+    private Product chocolateBar;
+
+    @Before
+    public void init() {
+        machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(1000)
+            .setNumberOfShelves(4)
+            .setMaxProductsOnShelve(2)
+            .setBundle("i18n.messages")
+            .build());
+        expensiveCoke = liquid(LiquidType.COKE, 3);
+        coke = liquid(LiquidType.COKE, 2.5);
+        water = liquid(LiquidType.WATER, 2.5);
+        chocolateBar = new Snack.Builder().type(SnackType.CHOCOLATE_BAR).price(BigDecimal.valueOf(1.7)).build();
+        machine.feedWithCoinsEachType(100);
+        machine.feedWithProducts(ImmutableMap.of(0, expensiveCoke, 1, coke, 2, water, 3, chocolateBar));
+    }
+
+    @Test
+    public void testSelectProductTypeSelectsCheapestShelveWithStock() {
+        UserVendingMachineFacade user = new UserVendingMachineFacadeImpl(machine);
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(user.selectProductType(LiquidType.COKE)).isEqualTo(coke);
+            assertThat(user.getSelectedShelveNumber()).isEqualTo(1);
+            user.insertCoin(CoinDenomination.FIVE);
+        }
+
+        assertThat(user.selectProductType(LiquidType.COKE)).isEqualTo(expensiveCoke);
+        assertThat(user.getSelectedShelveNumber()).isEqualTo(0);
+        assertThat(machine.shelvesOfType(LiquidType.COKE)).isEqualTo(BitSet.valueOf(new long[]{0b1}));
+
+        for (int i = 0; i < 2; i++) {
+            user.selectProductType(LiquidType.WATER);
+            user.insertCoin(CoinDenomination.FIVE);
+        }
+        assertThat(user.selectProductType(LiquidType.WATER)).isNull();
+        assertThat(user.getSelectedShelveNumber()).isEqualTo(-1);
+        assertThat(machine.getDisplayMessageKey()).isEqualTo(DisplayMessages.PRODUCT_TYPE_SOLD_OUT);
+    }
+
+    @Test
+    public void testPriceRangeQuery() {
+        assertThat(machine.shelvesInPriceRange(BigDecimal.valueOf(1.7), BigDecimal.valueOf(2.5)))
+            .isEqualTo(BitSet.valueOf(new long[]{0b1110}));
+        assertThat(machine.shelvesInPriceRange(BigDecimal.valueOf(1.71), BigDecimal.valueOf(2.99)))
+            .isEqualTo(BitSet.valueOf(new long[]{0b0110}));
+        assertThat(machine.shelvesInPriceRange(BigDecimal.valueOf(3.01), BigDecimal.valueOf(100)))
+            .isEqualTo(new BitSet());
+    }
+
+    @Test
+    public void testIndexesMatchShelvesAfterRandomOperations() {
+        Random random = new Random(42);
+        Product[] products = {expensiveCoke, coke, water, chocolateBar};
+        for (int operation = 0; operation < 2000; operation++) {
+            int shelveNumber = random.nextInt(4);
+            switch (random.nextInt(4)) {
+                case 0:
+                    machine.selectShelveNumber(shelveNumber);
+                    machine.insertCoin(CoinDenomination.FIVE);
+                    break;
+                case 1:
+                    machine.addToBasket(shelveNumber);
+                    break;
+                case 2:
+                    machine.cancel();
+                    break;
+                default:
+                    machine.cancel();
+                    Product product = machine.shelves().get(shelveNumber).isEmpty()
+                        ? products[random.nextInt(products.length)] : machine.shelves().get(shelveNumber).get(0);
+                    machine.restock(new RestockPlan.Builder().shelveLevel(shelveNumber, product, 2).build());
+            }
+
+            Map<Integer, List<Product>> shelves = machine.shelves();
+            for (Enum<?> type : new Enum<?>[]{LiquidType.COKE, LiquidType.WATER, SnackType.CHOCOLATE_BAR}) {
+                BitSet expected = new BitSet();
+                shelves.forEach((number, shelve) -> {
+                    if (!shelve.isEmpty() && shelve.get(0).getType() == type) {
+                        expected.set(number);
+                    }
+                });
+                assertThat(machine.shelvesOfType(type)).isEqualTo(expected);
+            }
+            BitSet expected = new BitSet();
+            shelves.forEach((number, shelve) -> {
+                if (!shelve.isEmpty() && shelve.get(0).getPrice().compareTo(BigDecimal.valueOf(2.5)) <= 0) {
+                    expected.set(number);
+                }
+            });
+            assertThat(machine.shelvesInPriceRange(BigDecimal.ZERO, BigDecimal.valueOf(2.5))).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testPriceBandsAreStoredOnlyForIndexedPrices() {
+        ShelveIndex index = new ShelveIndex();
+        index.update(0, liquid(LiquidType.COKE, 99_999));
+        index.update(1, coke);
+        ShelveIndex copy = index.copy();
+
+        index.update(0, null);
+
+        assertThat(index.shelvesInPriceRange(BigDecimal.ZERO, BigDecimal.valueOf(100_000)).stream().toArray())
+            .containsExactly(1);
+        assertThat(copy.shelvesInPriceRange(BigDecimal.valueOf(99_999), BigDecimal.valueOf(99_999)).stream()
+            .toArray()).containsExactly(0);
+        assertThat(copy.shelvesInPriceRange(new BigDecimal("2.501"), new BigDecimal("2.509")).isEmpty()).isTrue();
+        assertThat(copy.shelvesInPriceRange(BigDecimal.valueOf(-2), BigDecimal.valueOf(-1)).isEmpty()).isTrue();
+    }
+
+    private static Product liquid(LiquidType type, double price) {
+        return new Liquid.Builder().type(type).price(BigDecimal.valueOf(price)).capacity(0.33).build();
+    }
+}
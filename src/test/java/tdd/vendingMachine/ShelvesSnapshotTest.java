@@ -0,0 +1,113 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.products.Product;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tdd.vendingMachine.ExpiryFixtures.coke;
+import static tdd.vendingMachine.ExpiryFixtures.water;
+
+/**
+ * Tests of versioned shelves snapshots.
+ *
+ * @author Łukasz Gadawski
+ */
+public class ShelvesSnapshotTest {
+
+    private static final int PRODUCTS_ON_SHELVE = 500;
+
+    private VendingMachine machine;
+    private Product coke;
+    private Product water;
+
+    @Before
+    public void init() {
+        machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(10_000)
+            .setNumberOfShelves(2)
+            .setMaxProductsOnShelve(PRODUCTS_ON_SHELVE)
+            .setBundle("i18n.messages")
+            .build());
+        coke = coke(Product.NEVER_EXPIRES);
+        water = water(Product.NEVER_EXPIRES);
+        machine.feedWithCoinsEachType(1000);
+        machine.feedWithProducts(ImmutableMap.of(0, coke, 1, water));
+    }
+
+    @Test
+    public void testSnapshotDoesNotChangeAndSharesUnchangedShelves() {
+        ShelvesSnapshot before = machine.shelves();
+
+        machine.selectShelveNumber(0);
+        machine.insertCoin(CoinDenomination.FIVE);
+        ShelvesSnapshot after = machine.shelves();
+
+        assertThat(before.get(0)).hasSize(PRODUCTS_ON_SHELVE);
+        assertThat(after.get(0)).hasSize(PRODUCTS_ON_SHELVE - 1);
+        assertThat(after.getVersion()).isGreaterThan(before.getVersion());
+        assertThat(after.get(1)).isSameAs(before.get(1));
+        assertThat(after.shelve(0)).isSameAs(before.shelve(0).rest());
+        assertThat(machine.shelves()).isSameAs(after);
+    }
+
+    @Test
+    public void testInsertInExpiryOrderSharesTailBehindLastInsertedProduct() {
+        Product sooner = coke(100);
+        Product middle = coke(200);
+        Product later = coke(300);
+        ShelveList shelve = ShelveList.empty().insertInExpiryOrder(later).insertInExpiryOrder(sooner);
+
+        ShelveList merged = shelve.insertAllInExpiryOrder(ImmutableList.of(sooner, middle));
+
+        assertThat(merged).extracting(Product::getExpiresAt).containsExactly(100L, 100L, 200L, 300L);
+        assertThat(merged.rest().rest().rest()).isSameAs(shelve.rest());
+        assertThat(shelve).extracting(Product::getExpiresAt).containsExactly(100L, 300L);
+    }
+
+    @Test
+    public void testReaderSeesConsistentVersionsWhileMachineSells() throws Exception {
+        AtomicBoolean selling = new AtomicBoolean(true);
+        CompletableFuture<Integer> reader = CompletableFuture.supplyAsync(() -> {
+            int reads = 0;
+            long lastVersion = -1;
+            int lastProducts = Integer.MAX_VALUE;
+            while (selling.get() || reads == 0) {
+                ShelvesSnapshot snapshot = machine.shelves();
+                int products = 0;
+                for (List<Product> shelve : snapshot.values()) {
+                    int counted = 0;
+                    for (Product ignored : shelve) {
+                        counted++;
+                    }
+                    assertThat(counted).isEqualTo(shelve.size());
+                    products += counted;
+                }
+                assertThat(snapshot.getVersion()).isGreaterThanOrEqualTo(lastVersion);
+                assertThat(products).isLessThanOrEqualTo(lastProducts);
+                lastVersion = snapshot.getVersion();
+                lastProducts = products;
+                reads++;
+            }
+            return reads;
+        });
+
+        for (int i = 0; i < PRODUCTS_ON_SHELVE; i++) {
+            for (int shelve = 0; shelve < 2; shelve++) {
+                machine.selectShelveNumber(shelve);
+                machine.insertCoin(CoinDenomination.FIVE);
+            }
+        }
+        selling.set(false);
+
+        assertThat(reader.get()).isGreaterThan(0);
+        assertThat(machine.shelves().get(0)).isEmpty();
+        assertThat(machine.shelves().get(1)).isEmpty();
+    }
+}
@@ -6,6 +6,9 @@ import org.junit.Before;
 import org.junit.Test;
 import tdd.vendingMachine.facade.admin.AdminVendingMachineFacade;
 import tdd.vendingMachine.facade.admin.AdminVendingMachineFacadeImpl;
+import tdd.vendingMachine.display.DisplayMessages;
+import tdd.vendingMachine.facade.user.PurchaseResult;
+import tdd.vendingMachine.facade.user.PurchaseScript;
 import tdd.vendingMachine.facade.user.UserVendingMachineFacade;
 import tdd.vendingMachine.facade.user.UserVendingMachineFacadeImpl;
 import tdd.vendingMachine.products.Product;
@@ -119,4 +122,76 @@ public class UserVendingMachineFacadeTest {
             .isEqualTo(inserted.getValue().subtract(p.getPrice()));
     }
 
+    @Test
+    public void testExecuteScript() {
+        admin.feedWithCoinEachType(5);
+        Product p = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        admin.feedWithProducts(ImmutableMap.of(0, p));
+
+        PurchaseScript script = new PurchaseScript.Builder()
+            .selectShelve(0)
+            .insertCoin(CoinDenomination.TWO)
+            .insertCoin(CoinDenomination.ONE)
+            .build();
+        PurchaseResult result = user.execute(script);
+
+        assertThat(result.getVendedProduct()).isEqualTo(p);
+        assertThat(result.getVendedProductsCount()).isEqualTo(1);
+        assertThat(result.getReturnedChange()).isEqualTo(ImmutableMap.of(CoinDenomination.HALF, 1));
+        assertThat(result.getDisplayMessageKey()).isEqualTo(DisplayMessages.HELLO_MESSAGE);
+    }
+
+    @Test
+    public void testExecuteEncodedScriptWithCancel() {
+        admin.feedWithCoinEachType(5);
+        Product p = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        admin.feedWithProducts(ImmutableMap.of(0, p));
+
+        PurchaseScript script = PurchaseScript.of(
+            PurchaseScript.encodeSelectShelve(0),
+            PurchaseScript.encodeInsertCoin(CoinDenomination.ONE),
+            PurchaseScript.encodeInsertCoin(CoinDenomination.HALF),
+            PurchaseScript.encodeCancel());
+        PurchaseResult result = user.execute(script);
+
+        assertThat(result.getVendedProduct()).isNull();
+        assertThat(result.getVendedProductsCount()).isEqualTo(0);
+        assertThat(result.getReturnedCoinCount(CoinDenomination.ONE)).isEqualTo(1);
+        assertThat(result.getReturnedCoinCount(CoinDenomination.HALF)).isEqualTo(1);
+        assertThat(result.getDisplayMessageKey()).isEqualTo(DisplayMessages.HELLO_MESSAGE);
+    }
+
+    @Test
+    public void testExecuteScriptLeavesAmountOnDisplay() {
+        admin.feedWithCoinEachType(5);
+        Product p = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        admin.feedWithProducts(ImmutableMap.of(0, p));
+
+        PurchaseResult result = user.execute(new PurchaseScript.Builder()
+            .selectShelve(0)
+            .insertCoin(CoinDenomination.TWO)
+            .build());
+
+        assertThat(result.getVendedProduct()).isNull();
+        assertThat(result.getDisplayMessageKey()).isNull();
+        assertThat(user.getDisplayMessage()).isEqualTo(String.valueOf(BigDecimal.valueOf(0.5)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidEncodedScript() {
+        PurchaseScript.of(PurchaseScript.encodeCancel() + 1);
+    }
+
 }
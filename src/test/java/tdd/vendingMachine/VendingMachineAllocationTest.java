@@ -0,0 +1,106 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.facade.admin.AdminVendingMachineFacade;
+import tdd.vendingMachine.facade.admin.AdminVendingMachineFacadeImpl;
+import tdd.vendingMachine.facade.user.UserVendingMachineFacade;
+import tdd.vendingMachine.facade.user.UserVendingMachineFacadeImpl;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Allocation regression tests of steady state purchase cycles driven through user facade.
+ * Every test measures average number of bytes allocated by single cycle and fails when it exceeds budget.
+ * Budgets should be lowered whenever hot path allocations are reduced.
+ *
+ * @author Łukasz Gadawski
+ */
+public class VendingMachineAllocationTest {
+
+    private static final int WARM_UP_CYCLES = 2000;
+    private static final int MEASURED_CYCLES = 1000;
+
+    /** Maximum bytes allocated by purchase paid with single coin, returning change. */
+    private static final long PURCHASE_WITH_CHANGE_BUDGET = 2048;
+
+    /** Maximum bytes allocated by purchase paid with exact amount. */
+    private static final long PURCHASE_EXACT_AMOUNT_BUDGET = 1536;
+
+    /** Maximum bytes allocated by selecting shelve, inserting coin and canceling transaction. */
+    private static final long CANCELED_PURCHASE_BUDGET = 1280;
+
+    private AllocationMeter meter;
+    private UserVendingMachineFacade user;
+    private AdminVendingMachineFacade admin;
+    private VendingMachine vendingMachine;
+    private Product product;
+
+    @Before
+    public void init() {
+        meter = AllocationMeter.createIfSupported();
+        Assume.assumeNotNull(meter);
+
+        VendingMachineConfig config = new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(100_000)
+            .setNumberOfShelves(1)
+            .setMaxProductsOnShelve(WARM_UP_CYCLES + MEASURED_CYCLES)
+            .setBundle("i18n.messages")
+            .build();
+
+        vendingMachine = new VendingMachine(config);
+        user = new UserVendingMachineFacadeImpl(vendingMachine);
+        admin = new AdminVendingMachineFacadeImpl(vendingMachine);
+
+        product = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+
+        admin.feedWithCoinEachType(WARM_UP_CYCLES + MEASURED_CYCLES);
+        admin.feedWithProducts(ImmutableMap.of(0, product));
+    }
+
+    @Test
+    public void testPurchaseWithChangeAllocationBudget() {
+        long allocated = meter.averageBytesPerCycle(() -> {
+            user.selectShelveNumber(0);
+            user.insertCoin(CoinDenomination.FIVE);
+        }, WARM_UP_CYCLES, MEASURED_CYCLES);
+
+        assertThat(vendingMachine.getNumberOfProductsOnShelve(0)).isEqualTo(0);
+        assertThat(allocated).isLessThanOrEqualTo(PURCHASE_WITH_CHANGE_BUDGET);
+    }
+
+    @Test
+    public void testPurchaseExactAmountAllocationBudget() {
+        long allocated = meter.averageBytesPerCycle(() -> {
+            user.selectShelveNumber(0);
+            user.insertCoin(CoinDenomination.TWO);
+            user.insertCoin(CoinDenomination.HALF);
+        }, WARM_UP_CYCLES, MEASURED_CYCLES);
+
+        assertThat(vendingMachine.getNumberOfProductsOnShelve(0)).isEqualTo(0);
+        assertThat(allocated).isLessThanOrEqualTo(PURCHASE_EXACT_AMOUNT_BUDGET);
+    }
+
+    @Test
+    public void testCanceledPurchaseAllocationBudget() {
+        long allocated = meter.averageBytesPerCycle(() -> {
+            user.selectShelveNumber(0);
+            user.insertCoin(CoinDenomination.ONE);
+            user.cancel();
+        }, WARM_UP_CYCLES, MEASURED_CYCLES);
+
+        assertThat(vendingMachine.getNumberOfProductsOnShelve(0)).isEqualTo(WARM_UP_CYCLES + MEASURED_CYCLES);
+        assertThat(allocated).isLessThanOrEqualTo(CANCELED_PURCHASE_BUDGET);
+    }
+}
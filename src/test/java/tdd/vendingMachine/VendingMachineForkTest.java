@@ -0,0 +1,105 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.products.Product;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tdd.vendingMachine.ExpiryFixtures.HOUR;
+import static tdd.vendingMachine.ExpiryFixtures.START;
+import static tdd.vendingMachine.ExpiryFixtures.expiryWheel;
+import static tdd.vendingMachine.ExpiryFixtures.virtualClock;
+import static tdd.vendingMachine.ExpiryFixtures.water;
+
+/**
+ * Tests of forks of vending machine state.
+ *
+ * @author Łukasz Gadawski
+ */
+public class VendingMachineForkTest {
+
+    private VirtualClock clock;
+    private VendingMachine machine;
+
+    @Before
+    public void init() {
+        clock = virtualClock();
+        machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(100)
+            .setNumberOfShelves(2)
+            .setMaxProductsOnShelve(10)
+            .setBundle("i18n.messages")
+            .setClock(clock)
+            .setExpiryWheel(expiryWheel())
+            .build());
+        machine.feedWithCoinsEachType(10);
+        machine.feedWithProducts(ImmutableMap.of(0, water(Product.NEVER_EXPIRES), 1, water(START + HOUR)));
+    }
+
+    @Test
+    public void testForkContinuesOpenTransactionWithoutDisturbingMachine() {
+        machine.selectShelveNumber(0);
+        machine.insertCoin(CoinDenomination.ONE);
+        ShelvesSnapshot before = machine.shelves();
+
+        VendingMachine fork = machine.fork();
+        fork.insertCoin(CoinDenomination.ONE);
+
+        assertThat(fork.getReturnedProduct()).isNotNull();
+        assertThat(fork.getNumberOfProductsOnShelve(0)).isEqualTo(9);
+        assertThat(machine.getReturnedProduct()).isNull();
+        assertThat(machine.shelves()).isSameAs(before);
+
+        machine.cancel();
+        assertThat(machine.getReturnedChange()).containsEntry(CoinDenomination.ONE, 1);
+        assertThat(machine.getNumberOfProductsOnShelve(0)).isEqualTo(10);
+        assertThat(fork.getReturnedChange()).isEmpty();
+        assertThat(fork.coins()).containsEntry(CoinDenomination.ONE, 12);
+        assertThat(machine.coins()).containsEntry(CoinDenomination.ONE, 10);
+    }
+
+    @Test
+    public void testForksSimulateInParallel() {
+        int sold = IntStream.range(0, 2000).parallel().map(i -> {
+            VendingMachine fork = machine.fork();
+            int shelve = i % 2;
+            for (int n = 0; n <= i % 10; n++) {
+                fork.selectShelveNumber(shelve);
+                fork.insertCoin(CoinDenomination.TWO);
+            }
+            return 10 - fork.getNumberOfProductsOnShelve(shelve);
+        }).sum();
+
+        assertThat(sold).isEqualTo(2000 / 10 * (1 + 2 + 3 + 4 + 5 + 6 + 7 + 8 + 9 + 10));
+        assertThat(machine.getNumberOfProductsOnShelve(0)).isEqualTo(10);
+        assertThat(machine.getNumberOfProductsOnShelve(1)).isEqualTo(10);
+        assertThat(machine.coins()).containsEntry(CoinDenomination.TWO, 10);
+    }
+
+    @Test
+    public void testForkEvictsExpiredProductsWithoutExpiryWheel() {
+        VendingMachine fork = machine.fork();
+
+        clock.advanceTo(START + HOUR);
+
+        assertThat(fork.getNumberOfProductsOnShelve(1)).isEqualTo(0);
+        assertThat(fork.collectExpiredProducts()).hasSize(10);
+        assertThat(machine.getNumberOfProductsOnShelve(1)).isEqualTo(0);
+        assertThat(machine.collectExpiredProducts()).hasSize(10);
+    }
+
+    @Test
+    public void testForkSharesUncollectedExpiredProductsUntilEitherChangesThem() {
+        clock.advanceTo(START + HOUR);
+        assertThat(machine.getNumberOfProductsOnShelve(1)).isEqualTo(0);
+
+        VendingMachine fork = machine.fork();
+        fork.collectExpiredProducts().clear();
+
+        assertThat(fork.collectExpiredProducts()).isEmpty();
+        assertThat(machine.collectExpiredProducts()).hasSize(10);
+    }
+}
@@ -0,0 +1,156 @@
+package tdd.vendingMachine;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.facade.admin.AdminVendingMachineFacadeImpl;
+import tdd.vendingMachine.facade.user.UserVendingMachineFacadeImpl;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.liquid.Liquid;
+import tdd.vendingMachine.products.liquid.LiquidType;
+import tdd.vendingMachine.remote.RemoteVendingMachineException;
+import tdd.vendingMachine.remote.VendingMachineClient;
+import tdd.vendingMachine.remote.VendingMachineServer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of remote access to vending machine facades, including loopback load test.
+ *
+ * @author Łukasz Gadawski
+ */
+public class VendingMachineServerTest {
+
+    private static final int MACHINE_ID = 7;
+
+    private static final int LOAD_TEST_REQUESTS = 50_000;
+    private static final int LOAD_TEST_WINDOW = 256;
+
+    private VendingMachineServer server;
+    private VendingMachineClient client;
+    private VendingMachineConfig config;
+
+    @Before
+    public void init() throws IOException {
+        config = new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(10)
+            .setNumberOfShelves(2)
+            .setMaxProductsOnShelve(4)
+            .setBundle("i18n.messages")
+            .build();
+        VendingMachine machine = new VendingMachine(config);
+        Product coke = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(2.5))
+            .capacity(0.25)
+            .build();
+        machine.feedWithProducts(ImmutableMap.of(0, coke, 1, coke));
+
+        server = new VendingMachineServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.register(MACHINE_ID,
+            new UserVendingMachineFacadeImpl(machine), new AdminVendingMachineFacadeImpl(machine));
+        server.start();
+
+        client = VendingMachineClient.connect(server.getLocalAddress());
+    }
+
+    @After
+    public void after() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testRemotePurchase() {
+        client.feedWithCoinEachType(MACHINE_ID, 5);
+        CompletableFuture<BigDecimal> price = client.selectShelveNumber(MACHINE_ID, 0);
+        CompletableFuture<InsertCoinOutcome> first = client.insertCoin(MACHINE_ID, CoinDenomination.TWO);
+        CompletableFuture<InsertCoinOutcome> second = client.insertCoin(MACHINE_ID, CoinDenomination.ONE);
+        CompletableFuture<String> display = client.getDisplayMessage(MACHINE_ID);
+
+        assertThat(price.join()).isEqualByComparingTo(BigDecimal.valueOf(2.5));
+        assertThat(first.join()).isEqualTo(InsertCoinOutcome.ACCEPTED);
+        assertThat(second.join()).isEqualTo(InsertCoinOutcome.SALE_COMPLETED);
+        assertThat(display.join())
+            .isEqualTo(ResourceBundle.getBundle(config.getBundle()).getString("hello"));
+        assertThat(client.getReturnedChange(MACHINE_ID).join()).isEqualTo(ImmutableMap.of(CoinDenomination.HALF, 1));
+    }
+
+    @Test
+    public void testRemoteRestock() {
+        client.feedWithCoinEachType(MACHINE_ID, 2);
+
+        assertThat(client.restockCoins(MACHINE_ID, ImmutableMap.of(CoinDenomination.ONE, 6)).join())
+            .isEqualTo(ImmutableMap.of(CoinDenomination.ONE, 4));
+    }
+
+    @Test
+    public void testRemoteErrors() {
+        try {
+            client.feedWithCoinEachType(MACHINE_ID, config.getMaxCoinNumberOfEachTypeInVendingMachine() + 1).join();
+            fail("Expected RemoteVendingMachineException");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof RemoteVendingMachineException);
+        }
+
+        try {
+            client.cancel(MACHINE_ID + 1).join();
+            fail("Expected RemoteVendingMachineException");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof RemoteVendingMachineException);
+        }
+
+        // connection still usable after errors
+        assertThat(client.selectShelveNumber(MACHINE_ID, 5).join()).isNull();
+    }
+
+    @Test
+    public void testLoopbackLoad() throws InterruptedException {
+        long[] latencies = new long[LOAD_TEST_REQUESTS];
+        Semaphore window = new Semaphore(LOAD_TEST_WINDOW);
+        CountDownLatch done = new CountDownLatch(LOAD_TEST_REQUESTS);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < LOAD_TEST_REQUESTS; i++) {
+            window.acquire();
+            int request = i;
+            long sent = System.nanoTime();
+            client.selectShelveNumber(MACHINE_ID, i % 2).whenComplete((price, error) -> {
+                latencies[request] = System.nanoTime() - sent;
+                window.release();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("Loopback load: %d requests, %.0f requests/s, latency p50 %d us, p99 %d us, p99.9 %d us%n",
+            LOAD_TEST_REQUESTS,
+            LOAD_TEST_REQUESTS / (elapsed / 1e9),
+            percentile(latencies, 0.5) / 1000,
+            percentile(latencies, 0.99) / 1000,
+            percentile(latencies, 0.999) / 1000);
+
+        assertThat(client.selectShelveNumber(MACHINE_ID, 0).join()).isEqualByComparingTo(BigDecimal.valueOf(2.5));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,108 @@
+package tdd.vendingMachine;
+
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.products.Product;
+import tdd.vendingMachine.products.liquid.LiquidType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tdd.vendingMachine.ExpiryFixtures.HOUR;
+import static tdd.vendingMachine.ExpiryFixtures.START;
+import static tdd.vendingMachine.ExpiryFixtures.coke;
+import static tdd.vendingMachine.ExpiryFixtures.expiryWheel;
+import static tdd.vendingMachine.ExpiryFixtures.virtualClock;
+
+/**
+ * Tests of machines created from templates.
+ *
+ * @author Łukasz Gadawski
+ */
+public class VendingMachineTemplateTest {
+
+    private VirtualClock clock;
+    private ExpiryWheel wheel;
+    private VendingMachineTemplate template;
+
+    @Before
+    public void init() {
+        clock = virtualClock();
+        wheel = expiryWheel();
+        VendingMachine prototype = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(20)
+            .setNumberOfShelves(3)
+            .setMaxProductsOnShelve(4)
+            .setBundle("i18n.messages")
+            .setClock(clock)
+            .setExpiryWheel(wheel)
+            .build());
+        prototype.restock(new RestockPlan.Builder()
+            .coinLevelEachType(10)
+            .shelveLevel(0, coke(Product.NEVER_EXPIRES), 4)
+            .shelveLevel(1, coke(START + HOUR), 2)
+            .build());
+        template = prototype.toTemplate();
+
+        prototype.selectShelveNumber(0);
+        prototype.insertCoin(CoinDenomination.FIVE);
+    }
+
+    @Test
+    public void testMachinesDivergeFromTemplateIndependently() {
+        VendingMachine first = template.newMachine();
+        VendingMachine second = template.newMachine();
+
+        first.selectShelveNumber(0);
+        first.insertCoin(CoinDenomination.FIVE);
+
+        assertThat(first.getNumberOfProductsOnShelve(0)).isEqualTo(3);
+        assertThat(first.getReturnedChange()).isNotEmpty();
+        assertThat(second.getNumberOfProductsOnShelve(0)).isEqualTo(4);
+        assertThat(second.shelves().get(1)).isSameAs(template.shelves().get(1));
+        assertThat(second.coins()).containsEntry(CoinDenomination.TWO, 10);
+        assertThat(template.shelves().get(0)).hasSize(4);
+        assertThat(template.getCoinCount(CoinDenomination.ONE)).isEqualTo(10);
+
+        first.selectProductType(LiquidType.COKE);
+        assertThat(first.shelvesOfType(LiquidType.COKE).cardinality()).isEqualTo(2);
+        assertThat(second.shelvesOfType(LiquidType.COKE).cardinality()).isEqualTo(2);
+    }
+
+    @Test
+    public void testMachinesEvictProductsExpiredInTemplate() {
+        VendingMachine machine = template.newMachine();
+
+        clock.advanceTo(START + HOUR);
+
+        assertThat(machine.getNumberOfProductsOnShelve(1)).isEqualTo(0);
+        assertThat(machine.collectExpiredProducts()).hasSize(2);
+        assertThat(template.shelves().get(1)).hasSize(2);
+
+        VendingMachine late = template.newMachine();
+        assertThat(late.getNumberOfProductsOnShelve(1)).isEqualTo(0);
+        assertThat(late.getNumberOfProductsOnShelve(0)).isEqualTo(4);
+    }
+
+    @Test
+    public void testTemplateExpiryIsFollowedByMachineThreadOnly() {
+        VendingMachine machine = template.newMachine();
+        clock.advanceTo(START + HOUR);
+
+        // other machine sharing wheel moves it, expiry of this machine waits for its own thread
+        wheel.advanceTo(clock.millis());
+
+        assertThat(machine.shelves().get(1)).hasSize(2);
+        assertThat(machine.getNumberOfProductsOnShelve(1)).isEqualTo(0);
+        assertThat(machine.collectExpiredProducts()).hasSize(2);
+    }
+
+    @Test
+    public void testTemplateTimeoutIsCanceledWhenMachineStockIsGone() {
+        int scheduled = wheel.size();
+        VendingMachine machine = template.newMachine();
+        assertThat(wheel.size()).isEqualTo(scheduled + 1);
+
+        machine.clearProductsFromShelves();
+
+        assertThat(wheel.size()).isEqualTo(scheduled);
+    }
+}
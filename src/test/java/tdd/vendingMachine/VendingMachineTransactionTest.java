@@ -92,7 +92,8 @@ public class VendingMachineTransactionTest {
         }
 
         assertFalse(vendingMachine.transaction().isOpen());
-        assertThat(vendingMachine.getReturnedChange().get(cd)).isEqualTo(noCoinsToInsert);
+        // every inserted coin is returned, including the one rejected by full tube
+        assertThat(vendingMachine.getReturnedChange().get(cd)).isEqualTo(noCoinsToInsert + 1);
         assertThat(vendingMachine.getReturnedProduct()).isNull();
         assertThat(vendingMachine.getDisplayMessage())
             .isEqualTo(bundle.getString(DisplayMessages.MAX_MACHINE_COIN_CAPACITY_REACHED));
@@ -319,5 +320,197 @@ public class VendingMachineTransactionTest {
         assertTrue(CoinDenomination.ValueCounter.count(vendingMachine.getReturnedChange())
             .compareTo(insertedVal.subtract(productPrice)) == 0);
     }
-}
 
+    @Test
+    public void testInsertCoinOutcomes() {
+        assertThat(vendingMachine.insertCoin(CoinDenomination.ONE)).isEqualTo(InsertCoinOutcome.RETURNED_NO_SELECTION);
+
+        vendingMachine.selectShelveNumber(testedShelve);
+        assertThat(vendingMachine.insertCoin(CoinDenomination.TWO)).isEqualTo(InsertCoinOutcome.ACCEPTED);
+        assertThat(vendingMachine.insertCoin(CoinDenomination.ONE)).isEqualTo(InsertCoinOutcome.SALE_COMPLETED);
+    }
+
+    @Test
+    public void testRefundedNoChangeOutcomeLeavesMachineCoinsUntouched() {
+        vendingMachine = new VendingMachine(vendingMachineConfig);
+        vendingMachine.feedWithCoinsEachType(0);
+        vendingMachine.putRandomProductsOnShelves(Collections.singletonList(possibleProduct));
+        Map<CoinDenomination, Integer> coinsBeforeTransaction = vendingMachine.coins();
+
+        vendingMachine.selectShelveNumber(testedShelve);
+
+        assertThat(vendingMachine.insertCoin(CoinDenomination.FIVE)).isEqualTo(InsertCoinOutcome.REFUNDED_NO_CHANGE);
+        assertThat(vendingMachine.coins()).isEqualTo(coinsBeforeTransaction);
+    }
+
+    @Test
+    public void testRejectedCapacityOutcome() {
+        vendingMachine = new VendingMachine(vendingMachineConfig);
+        vendingMachine.feedWithCoinsEachType(vendingMachineConfig.getMaxCoinNumberOfEachTypeInVendingMachine());
+        vendingMachine.putRandomProductsOnShelves(Collections.singletonList(possibleProduct));
+
+        vendingMachine.selectShelveNumber(testedShelve);
+
+        assertThat(vendingMachine.insertCoin(CoinDenomination.ONE)).isEqualTo(InsertCoinOutcome.REJECTED_CAPACITY);
+        assertFalse(vendingMachine.transaction().isOpen());
+        assertThat(vendingMachine.getReturnedChange()).isEqualTo(ImmutableMap.of(CoinDenomination.ONE, 1));
+        assertThat(vendingMachine.getNumberOfProductsOnShelve(testedShelve))
+            .isEqualTo(vendingMachineConfig.getMaxProductsOnShelve());
+    }
+
+    @Test
+    public void testBasketPaidOnceWithSingleChange() {
+        assertThat(vendingMachine.addToBasket(0)).isEqualTo(possibleProduct);
+        assertThat(vendingMachine.addToBasket(1)).isEqualTo(possibleProduct);
+        assertThat(vendingMachine.addToBasket(1)).isEqualTo(possibleProduct);
+        assertThat(vendingMachine.getDisplayMessage()).isEqualTo("7.5");
+        assertThat(vendingMachine.getNumberOfProductsOnShelve(1))
+            .isEqualTo(vendingMachineConfig.getMaxProductsOnShelve() - 2);
+
+        assertThat(vendingMachine.insertCoin(CoinDenomination.FIVE)).isEqualTo(InsertCoinOutcome.ACCEPTED);
+        assertThat(vendingMachine.getDisplayMessage()).isEqualTo("2.5");
+        assertThat(vendingMachine.getReturnedChange()).isEmpty();
+        assertThat(vendingMachine.insertCoin(CoinDenomination.FIVE)).isEqualTo(InsertCoinOutcome.SALE_COMPLETED);
+
+        assertThat(vendingMachine.getReturnedProducts()).hasSize(3);
+        assertThat(vendingMachine.getReturnedChange()).isEqualTo(ImmutableMap.of(CoinDenomination.TWO, 1,
+            CoinDenomination.HALF, 1));
+        assertFalse(vendingMachine.transaction().isOpen());
+    }
+
+    @Test
+    public void testCanceledBasketReturnsAllProducts() {
+        vendingMachine.addToBasket(0);
+        vendingMachine.addToBasket(testedShelve);
+        vendingMachine.insertCoin(CoinDenomination.TWO);
+        vendingMachine.cancel();
+
+        assertThat(vendingMachine.getNumberOfProductsOnShelve(0))
+            .isEqualTo(vendingMachineConfig.getMaxProductsOnShelve());
+        assertThat(vendingMachine.getNumberOfProductsOnShelve(testedShelve))
+            .isEqualTo(vendingMachineConfig.getMaxProductsOnShelve());
+        assertThat(vendingMachine.getReturnedChange()).isEqualTo(ImmutableMap.of(CoinDenomination.TWO, 1));
+        assertThat(vendingMachine.getReturnedProducts()).isEmpty();
+        assertFalse(vendingMachine.transaction().isOpen());
+    }
+
+    @Test
+    public void testBasketRefundedWhenChangeCannotBeReturned() {
+        vendingMachine = new VendingMachine(vendingMachineConfig);
+        vendingMachine.feedWithCoinsEachType(0);
+        vendingMachine.putRandomProductsOnShelves(Collections.singletonList(possibleProduct));
+        Map<CoinDenomination, Integer> coinsBeforeTransaction = vendingMachine.coins();
+
+        vendingMachine.addToBasket(0);
+        vendingMachine.addToBasket(0);
+        vendingMachine.addToBasket(1);
+
+        // change of 2.5 cannot be returned with inserted coins only
+        assertThat(vendingMachine.insertCoin(CoinDenomination.FIVE)).isEqualTo(InsertCoinOutcome.ACCEPTED);
+        assertThat(vendingMachine.insertCoin(CoinDenomination.FIVE)).isEqualTo(InsertCoinOutcome.REFUNDED_NO_CHANGE);
+        assertThat(vendingMachine.coins()).isEqualTo(coinsBeforeTransaction);
+        assertThat(vendingMachine.getNumberOfProductsOnShelve(0))
+            .isEqualTo(vendingMachineConfig.getMaxProductsOnShelve());
+        assertThat(vendingMachine.getNumberOfProductsOnShelve(1))
+            .isEqualTo(vendingMachineConfig.getMaxProductsOnShelve());
+        assertThat(vendingMachine.getReturnedChange()).isEqualTo(ImmutableMap.of(CoinDenomination.FIVE, 2));
+    }
+
+    @Test
+    public void testCollectDrainsCoinTray() {
+        vendingMachine.insertCoin(CoinDenomination.ONE);
+        Map<CoinDenomination, Integer> returned = vendingMachine.getReturnedChange();
+
+        assertThat(vendingMachine.collectReturnedChange()).isEqualTo(ImmutableMap.of(CoinDenomination.ONE, 1));
+        assertThat(vendingMachine.getReturnedChange()).isEmpty();
+        assertThat(vendingMachine.getCoinTray().size()).isEqualTo(0);
+        // copies handed out before are not affected by later changes of tray
+        assertThat(returned).isEqualTo(ImmutableMap.of(CoinDenomination.ONE, 1));
+    }
+
+    @Test
+    public void testFullCoinTrayBlocksNewTransaction() {
+        vendingMachine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(100)
+            .setNumberOfShelves(5)
+            .setMaxProductsOnShelve(4)
+            .setCoinTrayCapacity(2)
+            .setBundle("i18n.messages")
+            .build());
+        vendingMachine.feedWithCoinsEachType(10);
+        vendingMachine.putRandomProductsOnShelves(Collections.singletonList(possibleProduct));
+
+        vendingMachine.selectShelveNumber(testedShelve);
+        vendingMachine.insertCoin(CoinDenomination.HALF);
+        vendingMachine.insertCoin(CoinDenomination.HALF);
+        vendingMachine.insertCoin(CoinDenomination.HALF);
+        vendingMachine.cancel();
+
+        // coins of started transaction are returned even though they exceed capacity
+        assertThat(vendingMachine.getCoinTray().size()).isEqualTo(3);
+        assertThat(vendingMachine.selectShelveNumber(testedShelve)).isNull();
+        assertThat(vendingMachine.getDisplayMessage()).isEqualTo(bundle.getString(DisplayMessages.COIN_TRAY_FULL));
+
+        vendingMachine.collectReturnedChange();
+        assertThat(vendingMachine.selectShelveNumber(testedShelve)).isEqualTo(possibleProduct);
+    }
+
+    @Test
+    public void testFullTubeRoutesCoinsToCashBox() {
+        possibleProduct = new Liquid.Builder()
+            .type(LiquidType.COKE)
+            .price(BigDecimal.valueOf(99999))
+            .capacity(0.25)
+            .build();
+        vendingMachine = routingMachine(10);
+        vendingMachine.selectShelveNumber(testedShelve);
+
+        int insertedCoins = vendingMachineConfig.getMaxCoinNumberOfEachTypeInVendingMachine();
+        for (int i = 0; i < insertedCoins; i++) {
+            assertThat(vendingMachine.insertCoin(CoinDenomination.ONE_TENTH)).isEqualTo(InsertCoinOutcome.ACCEPTED);
+        }
+
+        assertTrue(vendingMachine.transaction().isOpen());
+        assertThat(vendingMachine.coins().get(CoinDenomination.ONE_TENTH))
+            .isEqualTo(vendingMachineConfig.getMaxCoinNumberOfEachTypeInVendingMachine());
+        assertThat(vendingMachine.getCashBox()).isEqualTo(ImmutableMap.of(CoinDenomination.ONE_TENTH, 10));
+
+        vendingMachine.cancel();
+
+        assertThat(vendingMachine.coins().get(CoinDenomination.ONE_TENTH)).isEqualTo(10);
+        assertThat(vendingMachine.getCashBox()).isEmpty();
+        assertThat(vendingMachine.getReturnedChange()).isEqualTo(ImmutableMap.of(CoinDenomination.ONE_TENTH,
+            insertedCoins));
+    }
+
+    @Test
+    public void testHighestCoinsRoutedToCashBox() {
+        vendingMachine = routingMachine(10);
+
+        vendingMachine.selectShelveNumber(testedShelve);
+        assertThat(vendingMachine.insertCoin(CoinDenomination.FIVE)).isEqualTo(InsertCoinOutcome.SALE_COMPLETED);
+        vendingMachine.selectShelveNumber(testedShelve);
+        assertThat(vendingMachine.insertCoin(CoinDenomination.TWO)).isEqualTo(InsertCoinOutcome.ACCEPTED);
+        assertThat(vendingMachine.insertCoin(CoinDenomination.HALF)).isEqualTo(InsertCoinOutcome.SALE_COMPLETED);
+
+        assertThat(vendingMachine.coins().get(CoinDenomination.FIVE)).isEqualTo(10);
+        assertThat(vendingMachine.coins().get(CoinDenomination.TWO)).isEqualTo(10);
+        assertThat(vendingMachine.coins().get(CoinDenomination.HALF)).isEqualTo(10);
+        assertThat(vendingMachine.emptyCashBox()).isEqualTo(ImmutableMap.of(CoinDenomination.FIVE, 1));
+        assertThat(vendingMachine.getCashBox()).isEmpty();
+    }
+
+    private VendingMachine routingMachine(int coinsOfEachType) {
+        int maxCoins = vendingMachineConfig.getMaxCoinNumberOfEachTypeInVendingMachine();
+        VendingMachine machine = new VendingMachine(new VendingMachineConfig.Builder()
+            .setMaxCoinNumberOfEachTypeInVendingMachine(maxCoins)
+            .setNumberOfShelves(vendingMachineConfig.getNumberOfShelves())
+            .setMaxProductsOnShelve(vendingMachineConfig.getMaxProductsOnShelve())
+            .setCoinRoutingPolicy(new ChangePreservingRoutingPolicy(maxCoins))
+            .setBundle("i18n.messages")
+            .build());
+        machine.feedWithCoinsEachType(coinsOfEachType);
+        machine.putRandomProductsOnShelves(Collections.singletonList(possibleProduct));
+        return machine;
+    }
+}